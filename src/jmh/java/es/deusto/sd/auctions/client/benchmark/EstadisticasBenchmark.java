@@ -0,0 +1,60 @@
+package es.deusto.sd.auctions.client.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.estadisticas.ColumnasSesiones;
+import es.deusto.sd.auctions.client.estadisticas.ResumenSesiones;
+import es.deusto.sd.auctions.client.stub.DatosStub;
+
+/**
+ * Totals per sport of a list of sessions: grouping the Sesion records with a
+ * stream (boxed fields, one object per session) against the primitive columns of
+ * ColumnasSesiones, which go parallel above 65536 sessions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EstadisticasBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	private int elementos;
+
+	private List<Sesion> sesiones;
+	private ColumnasSesiones columnas;
+
+	@Setup
+	public void preparar() {
+		// Cien retos de los dos deportes; con un solo usuario, sus sesiones son todas
+		sesiones = new DatosStub(42, 100, elementos / 100, 1).sesionesDeUsuario(0, 0, elementos).toList();
+		columnas = ColumnasSesiones.de(sesiones);
+	}
+
+	@Benchmark
+	public Map<String, Double> porDeporteRegistros() {
+		return sesiones.stream().collect(Collectors.groupingBy(Sesion::deporte,
+			Collectors.summingDouble(Sesion::distancia)));
+	}
+
+	@Benchmark
+	public Map<String, ResumenSesiones> porDeporteColumnas() {
+		return columnas.porDeporte();
+	}
+
+	@Benchmark
+	public ColumnasSesiones construirColumnas() {
+		return ColumnasSesiones.de(sesiones);
+	}
+}
@@ -0,0 +1,101 @@
+package es.deusto.sd.auctions.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.Serializacion;
+import es.deusto.sd.auctions.client.stub.DatosStub;
+
+/**
+ * JSON against Smile for large lists of sessions and retos: parse time through the
+ * format-detecting readers used by the proxies, and encode time. The payload
+ * sizes, plain and gzipped, don't change between iterations, so they are printed
+ * once per trial in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatoDatosBenchmark {
+
+	@Param({"json", "smile"})
+	private String formato;
+
+	@Param({"1000", "100000"})
+	private int elementos;
+
+	private ObjectMapper objectMapper;
+	private ObjectReader lectorSesiones;
+	private ObjectReader lectorRetos;
+	private List<Sesion> sesiones;
+	private byte[] sesionesCodificadas;
+	private byte[] retosCodificados;
+
+	@Setup
+	public void preparar() throws IOException {
+		objectMapper = Serializacion.Formato.de(formato) == Serializacion.Formato.SMILE
+			? Serializacion.smile() : Serializacion.json();
+		lectorSesiones = Serializacion.lector(Sesion.class);
+		lectorRetos = Serializacion.lector(Reto.class);
+		DatosStub datos = new DatosStub(42, elementos, elementos, 1);
+		sesiones = datos.sesionesDeReto(0, 0, elementos).toList();
+		sesionesCodificadas = objectMapper.writeValueAsBytes(sesiones);
+		retosCodificados = objectMapper.writeValueAsBytes(datos.retos());
+
+		System.out.printf("%n%s, %d elementos: sesiones %d bytes (%d con gzip), retos %d bytes (%d con gzip)%n",
+			formato, elementos, sesionesCodificadas.length, gzip(sesionesCodificadas).length,
+			retosCodificados.length, gzip(retosCodificados).length);
+	}
+
+	private static byte[] gzip(byte[] datos) throws IOException {
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+			gzip.write(datos);
+		}
+		return salida.toByteArray();
+	}
+
+	private static <T> List<T> leer(ObjectReader lector, byte[] datos) throws IOException {
+		List<T> lista = new ArrayList<>();
+		try (MappingIterator<T> iterador = lector.readValues(new ByteArrayInputStream(datos))) {
+			while (iterador.hasNextValue()) {
+				lista.add(iterador.nextValue());
+			}
+		}
+		return lista;
+	}
+
+	@Benchmark
+	public List<Sesion> leerSesiones() throws IOException {
+		return leer(lectorSesiones, sesionesCodificadas);
+	}
+
+	@Benchmark
+	public List<Reto> leerRetos() throws IOException {
+		return leer(lectorRetos, retosCodificados);
+	}
+
+	@Benchmark
+	public byte[] escribirSesiones() throws IOException {
+		return objectMapper.writeValueAsBytes(sesiones);
+	}
+}
@@ -0,0 +1,109 @@
+package es.deusto.sd.auctions.client.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ConfiguracionHttp;
+import es.deusto.sd.auctions.client.proxies.FabricaClienteHttp;
+import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.stub.ServidorStub;
+
+/**
+ * Load test of the blocking proxy with many concurrent requests against a slow
+ * backend (ServidorStub with a fixed delay). Each invocation sends
+ * "concurrentes" calls to getDetallesDeReto and waits for all of them, either on a
+ * pool of 200 platform threads (Tomcat's default) or on one virtual thread per
+ * call. Throughput is concurrentes / time per invocation. The calls cycle over
+ * the retos of the stub, which listens on a free port.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class HilosVirtualesBenchmark {
+	private static final int RETOS = 10;
+	private static final int HILOS_PLATAFORMA = 200;
+
+	@Param({"plataforma", "virtual"})
+	private String hilos;
+
+	@Param({"1000", "5000"})
+	private int concurrentes;
+
+	@Param({"50"})
+	private long retardoMs;
+
+	private ServidorStub servidor;
+	private ExecutorService executor;
+	private ExecutorService executorHttp;
+	private IAuctionsServiceProxy proxy;
+
+	@Setup(Level.Trial)
+	public void arrancar() throws Exception {
+		// Puerto 0: el sistema elige uno libre
+		servidor = new ServidorStub(new ServidorStub.Configuracion(0, 42, RETOS, 10, 1,
+			Duration.ofMillis(retardoMs), Duration.ZERO, 0, 0, false));
+		executor = "virtual".equals(hilos)
+			? Executors.newVirtualThreadPerTaskExecutor()
+			: Executors.newFixedThreadPool(HILOS_PLATAFORMA);
+		proxy = httpProxy(servidor.getBaseUrl());
+	}
+
+	// La configuracion de cliente.properties con la URL del stub, y su propio HttpClient
+	private IAuctionsServiceProxy httpProxy(String baseUrl) {
+		ConfiguracionHttp base = ConfiguracionHttp.compartida();
+		ConfiguracionHttp configuracion = new ConfiguracionHttp(baseUrl, base.version(), base.timeoutConexion(),
+			base.timeoutPeticion(), base.hilos(), base.comprimirPeticiones(), base.umbralCompresion(), base.formato());
+		executorHttp = FabricaClienteHttp.crearExecutor(configuracion);
+		return new HttpServiceProxy(new AsyncHttpServiceProxy(FabricaClienteHttp.crear(configuracion, executorHttp),
+			new MetricasProxy(), configuracion));
+	}
+
+	@TearDown(Level.Trial)
+	public void parar() {
+		executor.shutdownNow();
+		servidor.close();
+		executorHttp.shutdown();
+	}
+
+	@Benchmark
+	public int peticionesConcurrentes() throws Exception {
+		List<Future<Reto>> futuros = new ArrayList<>(concurrentes);
+		for (int i = 0; i < concurrentes; i++) {
+			// Solo existen los retos 0..RETOS-1: el resto daria 404
+			long id = i % RETOS;
+			futuros.add(executor.submit(() -> proxy.getDetallesDeReto(id)));
+		}
+
+		int completadas = 0;
+		for (Future<Reto> futuro : futuros) {
+			if (futuro.get() != null) {
+				completadas++;
+			}
+		}
+		return completadas;
+	}
+}
@@ -0,0 +1,94 @@
+package es.deusto.sd.auctions.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.stub.DatosStub;
+
+/**
+ * JSON mapping cost of the Reto and Sesion lists at different sizes: direct
+ * readValue into a typed list, element by element parsing with MappingIterator
+ * (AsyncHttpServiceProxy) and the List<Map> + convertValue round-trip used by
+ * RestTemplateServiceProxy.getTodosRetos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonMappingBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	private int elementos;
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+		.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private byte[] retosJson;
+	private byte[] sesionesJson;
+	private JavaType tipoListaRetos;
+	private JavaType tipoListaSesiones;
+	private ObjectReader lectorSesiones;
+
+	@Setup
+	public void preparar() throws IOException {
+		DatosStub datos = new DatosStub(42, elementos, elementos, 1);
+		retosJson = objectMapper.writeValueAsBytes(datos.retos());
+		sesionesJson = objectMapper.writeValueAsBytes(datos.sesionesDeReto(0, 0, elementos).toList());
+		tipoListaRetos = objectMapper.getTypeFactory().constructCollectionType(List.class, Reto.class);
+		tipoListaSesiones = objectMapper.getTypeFactory().constructCollectionType(List.class, Sesion.class);
+		lectorSesiones = objectMapper.readerFor(Sesion.class);
+	}
+
+	@Benchmark
+	public List<Reto> retosReadValue() throws IOException {
+		return objectMapper.readValue(retosJson, tipoListaRetos);
+	}
+
+	@Benchmark
+	public List<Sesion> sesionesReadValue() throws IOException {
+		return objectMapper.readValue(sesionesJson, tipoListaSesiones);
+	}
+
+	@Benchmark
+	public List<Sesion> sesionesMappingIterator() throws IOException {
+		List<Sesion> sesiones = new ArrayList<>();
+		try (MappingIterator<Sesion> iterador = lectorSesiones.readValues(new ByteArrayInputStream(sesionesJson))) {
+			while (iterador.hasNextValue()) {
+				sesiones.add(iterador.nextValue());
+			}
+		}
+		return sesiones;
+	}
+
+	// Mismo camino que RestTemplateServiceProxy.getTodosRetos: List<Map> y convertValue por elemento
+	@Benchmark
+	public List<Reto> retosConvertValue() throws IOException {
+		List<Map<String, Object>> mapas = objectMapper.readValue(retosJson, new TypeReference<List<Map<String, Object>>>() {});
+		List<Reto> retos = new ArrayList<>(mapas.size());
+		for (Map<String, Object> mapa : mapas) {
+			retos.add(objectMapper.convertValue(mapa, Reto.class));
+		}
+		return retos;
+	}
+}
@@ -0,0 +1,145 @@
+package es.deusto.sd.auctions.client.benchmark;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.client.RestTemplate;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ConfiguracionHttp;
+import es.deusto.sd.auctions.client.proxies.FabricaClienteHttp;
+import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.proxies.RestTemplateServiceProxy;
+import es.deusto.sd.auctions.client.stub.ServidorStub;
+
+/**
+ * Compares HttpServiceProxy and RestTemplateServiceProxy on the methods of
+ * IAuctionsServiceProxy that both implement, against ServidorStub, with as many
+ * retos as elementos, elementos sessions per reto and per user, and a fixed
+ * token. The stub listens on a free port and both proxies are given its URL.
+ * getRetosXDeporte is left out: RestTemplateServiceProxy does not implement it
+ * and would only measure a method that returns null.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProxyBenchmark {
+	private static final String TOKEN = "token-benchmark";
+
+	@Param({"http", "restTemplate"})
+	private String implementacion;
+
+	@Param({"100"})
+	private int elementos;
+
+	private ServidorStub servidor;
+	private ExecutorService executorHttp;
+	private IAuctionsServiceProxy proxy;
+
+	private final Credendiales credenciales = new Credendiales("benchmark@deusto.es", "1");
+	private final Sesion sesion = new Sesion(null, "Benchmark", "running", 10f, 0L, 3_600_000L, 1f);
+
+	@Setup(Level.Trial)
+	public void arrancar() throws Exception {
+		// Puerto 0: el sistema elige uno libre
+		servidor = new ServidorStub(new ServidorStub.Configuracion(0, 42, elementos, elementos, elementos,
+			Duration.ZERO, Duration.ZERO, 0, 0, false));
+		servidor.registrarToken(TOKEN, credenciales.email());
+		proxy = switch (implementacion) {
+			case "http" -> httpProxy(servidor.getBaseUrl());
+			case "restTemplate" -> restTemplateProxy(servidor.getBaseUrl());
+			default -> throw new IllegalArgumentException("Implementación desconocida: " + implementacion);
+		};
+	}
+
+	// La configuracion de cliente.properties con la URL del stub, y su propio HttpClient
+	private IAuctionsServiceProxy httpProxy(String baseUrl) {
+		ConfiguracionHttp base = ConfiguracionHttp.compartida();
+		ConfiguracionHttp configuracion = new ConfiguracionHttp(baseUrl, base.version(), base.timeoutConexion(),
+			base.timeoutPeticion(), base.hilos(), base.comprimirPeticiones(), base.umbralCompresion(), base.formato());
+		executorHttp = FabricaClienteHttp.crearExecutor(configuracion);
+		return new HttpServiceProxy(new AsyncHttpServiceProxy(FabricaClienteHttp.crear(configuracion, executorHttp),
+			new MetricasProxy(), configuracion));
+	}
+
+	// Fuera de Spring hay que rellenar a mano el campo que normalmente inyecta @Value
+	private static RestTemplateServiceProxy restTemplateProxy(String baseUrl) {
+		RestTemplateServiceProxy restProxy = new RestTemplateServiceProxy(new RestTemplate());
+		Field campo = ReflectionUtils.findField(RestTemplateServiceProxy.class, "apiBaseUrl");
+		ReflectionUtils.makeAccessible(campo);
+		ReflectionUtils.setField(campo, restProxy, baseUrl);
+		return restProxy;
+	}
+
+	@TearDown(Level.Trial)
+	public void parar() {
+		servidor.close();
+		if (executorHttp != null) {
+			executorHttp.shutdown();
+		}
+	}
+
+	@Benchmark
+	public String login() {
+		return proxy.login(credenciales);
+	}
+
+	@Benchmark
+	public void logout() {
+		proxy.logout(TOKEN);
+	}
+
+	@Benchmark
+	public List<Reto> getMisRetos() {
+		return proxy.getMisRetos(TOKEN);
+	}
+
+	@Benchmark
+	public List<Reto> getTodosRetos() {
+		return proxy.getTodosRetos();
+	}
+
+	@Benchmark
+	public Reto getDetallesDeReto() {
+		return proxy.getDetallesDeReto(1L);
+	}
+
+	@Benchmark
+	public List<Sesion> getSesionesPorReto() {
+		return proxy.getSesionesPorReto(1L);
+	}
+
+	@Benchmark
+	public List<Sesion> getTodasSesiones() {
+		return proxy.getTodasSesiones(TOKEN);
+	}
+
+	@Benchmark
+	public Sesion getDetalleSesion() {
+		return proxy.getDetalleSesion(1L);
+	}
+
+	@Benchmark
+	public void guardarSesion() {
+		proxy.guardarSesion(1L, sesion, TOKEN);
+	}
+}
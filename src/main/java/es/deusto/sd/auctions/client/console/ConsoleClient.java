@@ -5,13 +5,20 @@
  */
 package es.deusto.sd.auctions.client.console;
 
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 
 
 import es.deusto.sd.auctions.client.data.Credendiales;
 import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.proxies.AlmacenDisco;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
 import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
 import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ResilienciaServiceProxy;
 
 /**
  * ConsoleClient class serves as a basic client implementation for the AuctionsService 
@@ -23,8 +30,17 @@ import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
  * (Description generated with ChatGPT 4o mini)
  */
 public class ConsoleClient {
-	// Service proxy for interacting with the AuctionsService using HTTP-based implementation
-	private final IAuctionsServiceProxy serviceProxy = new HttpServiceProxy();	
+	// Metrics of the proxy layer, printed when the client finishes
+	private final MetricasProxy metricas = new MetricasProxy();
+	// Service proxy for interacting with the AuctionsService using HTTP-based implementation,
+	// with reads retried when the server can't be reached. The HttpClient is the one shared by
+	// the process, configured in cliente.properties
+	private final IAuctionsServiceProxy serviceProxy = new MetricasServiceProxy(
+			new ResilienciaServiceProxy(
+					new HttpServiceProxy(new AsyncHttpServiceProxy(metricas))),
+			metricas);
+	// Last retos received, shown before contacting the server
+	private final AlmacenDisco almacen = new AlmacenDisco(AlmacenDisco.ficheroPorDefecto("consola"));
 	// Token to be used during the session
 	private String token;
 	// Default email and password for login
@@ -43,6 +59,15 @@ public class ConsoleClient {
 			return false;
 		}
 	}
+	public void mostrarRetosGuardados() {
+		AlmacenDisco.Contenido guardado = almacen.leer();
+		if (guardado.retos().isEmpty()) {
+			return;
+		}
+		System.out.println("Retos guardados (" + Instant.ofEpochMilli(guardado.guardadoMillis()) + "):");
+		guardado.retos().forEach(reto -> System.out.println(" - " + reto.nombre()));
+	}
+
 	public boolean cargarRetos() {
 		try {
 			List<Reto> retos = serviceProxy.getTodosRetos();
@@ -50,7 +75,9 @@ public class ConsoleClient {
 			if(retos == null || retos.isEmpty()) {
 				return false;
 			}
-			retos.forEach(reto->reto.nombre());
+			almacen.guardarRetos(retos);
+			System.out.println("Retos actualizados del servidor: " + retos.size());
+			retos.forEach(reto -> System.out.println(" - " + reto.nombre()));
 			return true;
 		}catch (RuntimeException e) {
 			throw new RuntimeException("\n" + "Error al obtener los retos", e);
@@ -59,11 +86,19 @@ public class ConsoleClient {
 	}
 	
 	public static void main(String[] args) {
+        // "carga usuarios=50 tasa=20 ..." lanza el generador de carga en lugar del flujo normal
+        if (args.length > 0 && args[0].equalsIgnoreCase("carga")) {
+        	GeneradorCarga.main(Arrays.copyOfRange(args, 1, args.length));
+        	return;
+        }
         ConsoleClient cliente = new ConsoleClient();
+        // Lo guardado en la ultima ejecucion se muestra antes de hablar con el servidor
+        cliente.mostrarRetosGuardados();
         
         if(!cliente.login()|| !cliente.cargarRetos()) {
         	System.out.println("Saliendo de la aplicación por fallo en uno de los pasos.");
         }
+        System.out.println(cliente.metricas.volcarTexto());
         
 		
 	}
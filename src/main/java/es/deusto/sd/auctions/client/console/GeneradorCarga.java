@@ -0,0 +1,423 @@
+package es.deusto.sd.auctions.client.console;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ConfiguracionHttp;
+import es.deusto.sd.auctions.client.proxies.HistogramaLatencia;
+import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+
+/**
+ * GeneradorCarga is the headless load generator of the console client. It runs
+ * a scenario (by default login, list retos, open a reto, list its sessions, save
+ * a session and logout) for a number of virtual users, each one on its own
+ * virtual thread, and prints the throughput and the latency percentiles of each
+ * step.
+ *
+ * With a target rate (iterations per second of all the users together) the load
+ * is open-loop: every user has a fixed schedule of iteration start times and the
+ * latency of the first step is measured from the scheduled time, not from the
+ * moment the request could be sent. A slow server then shows up as high latency
+ * instead of silently lowering the rate (coordinated omission). The service time
+ * (from the actual send) is reported next to it. Without a rate the users run
+ * their iterations back to back (closed loop). Between steps each user waits a
+ * random think time with the configured mean.
+ *
+ * The proxy used is the plain HTTP one, without retries or caches, so every step
+ * is one request to the server. Results of the warm-up period are discarded.
+ */
+public class GeneradorCarga {
+
+	/**
+	 * The steps a scenario can be made of.
+	 */
+	public enum Paso {
+		LOGIN, RETOS, RETO, SESIONES, GUARDAR, LOGOUT;
+
+		public static List<Paso> escenario(String valor) {
+			List<Paso> pasos = new ArrayList<>();
+			for (String nombre : valor.split("[,>\\s]+")) {
+				if (!nombre.isBlank()) {
+					try {
+						pasos.add(valueOf(nombre.trim().toUpperCase(Locale.ROOT)));
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException("Paso no válido: " + nombre + " (" + Arrays.toString(values())
+							.toLowerCase(Locale.ROOT) + ")");
+					}
+				}
+			}
+			if (pasos.isEmpty()) {
+				throw new IllegalArgumentException("El escenario no tiene pasos");
+			}
+			return List.copyOf(pasos);
+		}
+	}
+
+	/**
+	 * Settings of a run. tasa is the target rate in iterations per second of all
+	 * the users (0 for closed loop). The email may contain {n}, replaced by the
+	 * number of the user, to log in with a different account per user.
+	 */
+	public record Configuracion(int usuarios, double tasa, Duration duracion, Duration calentamiento,
+			Duration pensar, List<Paso> escenario, String email, String password) {
+
+		public Configuracion {
+			if (usuarios < 1) {
+				throw new IllegalArgumentException("Hace falta al menos un usuario");
+			}
+			if (tasa < 0) {
+				throw new IllegalArgumentException("La tasa no puede ser negativa");
+			}
+			escenario = List.copyOf(escenario);
+		}
+
+		public static Configuracion porDefecto() {
+			return new Configuracion(10, 0, Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofMillis(500),
+				List.of(Paso.values()), "gorka.ortuzar@gmail.com", "1");
+		}
+
+		/**
+		 * Reads the carga.* properties (usuarios, tasa, duracion, calentamiento,
+		 * pensar, escenario, email, password); missing ones keep the defaults.
+		 */
+		public static Configuracion desde(Properties propiedades) {
+			Configuracion defecto = porDefecto();
+			String escenario = propiedades.getProperty("carga.escenario");
+			return new Configuracion(
+				Integer.parseInt(propiedades.getProperty("carga.usuarios", String.valueOf(defecto.usuarios())).trim()),
+				Double.parseDouble(propiedades.getProperty("carga.tasa", String.valueOf(defecto.tasa())).trim()),
+				ConfiguracionHttp.duracion(propiedades.getProperty("carga.duracion"), defecto.duracion()),
+				ConfiguracionHttp.duracion(propiedades.getProperty("carga.calentamiento"), defecto.calentamiento()),
+				ConfiguracionHttp.duracion(propiedades.getProperty("carga.pensar"), defecto.pensar()),
+				escenario != null ? Paso.escenario(escenario) : defecto.escenario(),
+				propiedades.getProperty("carga.email", defecto.email()),
+				propiedades.getProperty("carga.password", defecto.password()));
+		}
+
+		public boolean esBucleAbierto() {
+			return tasa > 0;
+		}
+	}
+
+	// Tiempos de respuesta (desde la hora prevista) y de servicio (desde el envio) de un paso
+	private static class Medidas {
+		final HistogramaLatencia respuesta = new HistogramaLatencia();
+		final HistogramaLatencia servicio = new HistogramaLatencia();
+		final LongAdder errores = new LongAdder();
+	}
+
+	// Lo que un usuario recuerda entre pasos
+	private static class Usuario {
+		final int numero;
+		String token;
+		List<Reto> retos = List.of();
+		Long retoId;
+
+		Usuario(int numero) {
+			this.numero = numero;
+		}
+	}
+
+	private final IAuctionsServiceProxy proxy;
+	private final Configuracion configuracion;
+	private final Map<Paso, Medidas> medidas = new EnumMap<>(Paso.class);
+	private final LongAdder iteraciones = new LongAdder();
+	private final LongAdder iteracionesFallidas = new LongAdder();
+	// Fin de la ultima iteracion medida: las que empezaron antes del final pueden acabar despues
+	private final LongAccumulator ultimaMedidaNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+	// Retos para los escenarios que abren un reto sin haber listado antes
+	private volatile List<Reto> retosIniciales = List.of();
+	private long inicioMedidaNanos;
+	private long finNanos;
+
+	public GeneradorCarga(IAuctionsServiceProxy proxy, Configuracion configuracion) {
+		this.proxy = proxy;
+		this.configuracion = configuracion;
+		for (Paso paso : Paso.values()) {
+			medidas.put(paso, new Medidas());
+		}
+	}
+
+	public static void main(String[] args) {
+		Properties propiedades = new Properties();
+		for (String clave : System.getProperties().stringPropertyNames()) {
+			if (clave.startsWith("carga.")) {
+				propiedades.setProperty(clave, System.getProperty(clave));
+			}
+		}
+		// Argumentos clave=valor, p. ej. usuarios=200 tasa=50 duracion=2m
+		for (String argumento : args) {
+			int igual = argumento.indexOf('=');
+			if (igual <= 0) {
+				throw new IllegalArgumentException("Argumento no válido: " + argumento + " (se espera clave=valor)");
+			}
+			String clave = argumento.substring(0, igual).replaceFirst("^-+", "");
+			propiedades.setProperty(clave.startsWith("carga.") ? clave : "carga." + clave,
+				argumento.substring(igual + 1));
+		}
+
+		MetricasProxy metricas = new MetricasProxy();
+		GeneradorCarga generador = new GeneradorCarga(new HttpServiceProxy(new AsyncHttpServiceProxy(metricas)),
+			Configuracion.desde(propiedades));
+		generador.ejecutar();
+		System.out.println(generador.informe());
+		System.out.println(metricas.volcarTexto());
+	}
+
+	/**
+	 * Runs the warm-up and the measured period and returns when every user has
+	 * finished its last iteration.
+	 */
+	public void ejecutar() {
+		if (configuracion.escenario().contains(Paso.RETO) || configuracion.escenario().contains(Paso.SESIONES)
+				|| configuracion.escenario().contains(Paso.GUARDAR)) {
+			try {
+				retosIniciales = List.copyOf(proxy.getTodosRetos());
+			} catch (RuntimeException e) {
+				System.err.println("No se pudieron obtener los retos iniciales: " + e.getMessage());
+			}
+		}
+
+		System.out.println(descripcion());
+		long inicio = System.nanoTime();
+		inicioMedidaNanos = inicio + configuracion.calentamiento().toNanos();
+		finNanos = inicioMedidaNanos + configuracion.duracion().toNanos();
+		try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < configuracion.usuarios(); i++) {
+				Usuario usuario = new Usuario(i + 1);
+				hilos.submit(() -> simular(usuario, inicio));
+			}
+		}
+	}
+
+	private void simular(Usuario usuario, long inicio) {
+		int usuarios = configuracion.usuarios();
+		// Cada usuario sigue su propio calendario, desfasado del resto para repartir las llegadas
+		long intervalo = configuracion.esBucleAbierto() ? (long) (usuarios * 1e9 / configuracion.tasa()) : 0;
+		long prevista = inicio + intervalo * (usuario.numero - 1) / usuarios;
+
+		while (true) {
+			if (configuracion.esBucleAbierto()) {
+				esperarHasta(prevista);
+			} else {
+				prevista = System.nanoTime();
+			}
+			if (prevista - finNanos >= 0) {
+				break;
+			}
+			iteracion(usuario, prevista, prevista - inicioMedidaNanos >= 0);
+			// En bucle abierto la siguiente hora no depende de lo que tardo esta iteracion
+			prevista += intervalo;
+		}
+		if (usuario.token != null) {
+			cerrarSesion(usuario);
+		}
+	}
+
+	private void iteracion(Usuario usuario, long prevista, boolean medir) {
+		// Sin paso RETO, cada iteracion trabaja sobre un reto al azar
+		usuario.retoId = null;
+		if (usuario.token == null && necesitaToken()) {
+			// El escenario no hace login: cada usuario entra una vez, sin medirlo
+			try {
+				usuario.token = proxy.login(credenciales(usuario));
+			} catch (RuntimeException e) {
+				contarIteracion(false, medir);
+				return;
+			}
+		}
+
+		boolean primero = true;
+		for (Paso paso : configuracion.escenario()) {
+			if (!primero) {
+				pensar();
+				prevista = System.nanoTime();
+			}
+			primero = false;
+
+			long envio = System.nanoTime();
+			boolean correcto;
+			try {
+				ejecutar(paso, usuario);
+				correcto = true;
+			} catch (RuntimeException e) {
+				correcto = false;
+			}
+			long fin = System.nanoTime();
+
+			if (medir) {
+				Medidas medidasPaso = medidas.get(paso);
+				medidasPaso.respuesta.registrar(fin - prevista);
+				medidasPaso.servicio.registrar(fin - envio);
+				if (!correcto) {
+					medidasPaso.errores.increment();
+				}
+			}
+			if (!correcto) {
+				// Los pasos siguientes dependen de este: se abandona la iteracion
+				if (configuracion.escenario().contains(Paso.LOGIN) && usuario.token != null) {
+					cerrarSesion(usuario);
+				}
+				contarIteracion(false, medir);
+				return;
+			}
+		}
+		contarIteracion(true, medir);
+	}
+
+	private void ejecutar(Paso paso, Usuario usuario) {
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		switch (paso) {
+			case LOGIN -> usuario.token = proxy.login(credenciales(usuario));
+			case RETOS -> {
+				List<Reto> retos = proxy.getTodosRetos();
+				usuario.retos = retos != null ? retos : List.of();
+			}
+			case RETO -> {
+				Reto reto = elegirReto(usuario);
+				usuario.retoId = proxy.getDetallesDeReto(reto.id()).id();
+			}
+			case SESIONES -> proxy.getSesionesPorReto(retoActual(usuario));
+			case GUARDAR -> {
+				long horaInicio = azar.nextLong(6, 20) * 3_600_000L;
+				float minutos = azar.nextInt(20, 120);
+				proxy.guardarSesion(retoActual(usuario), new Sesion(null, "Carga " + usuario.numero,
+					"running", minutos / 6, horaInicio, horaInicio + (long) (minutos * 60_000), minutos),
+					usuario.token);
+			}
+			case LOGOUT -> {
+				proxy.logout(usuario.token);
+				usuario.token = null;
+			}
+		}
+	}
+
+	private Reto elegirReto(Usuario usuario) {
+		List<Reto> retos = usuario.retos.isEmpty() ? retosIniciales : usuario.retos;
+		if (retos.isEmpty()) {
+			throw new IllegalStateException("No hay retos que abrir");
+		}
+		return retos.get(ThreadLocalRandom.current().nextInt(retos.size()));
+	}
+
+	private Long retoActual(Usuario usuario) {
+		if (usuario.retoId == null) {
+			usuario.retoId = elegirReto(usuario).id();
+		}
+		return usuario.retoId;
+	}
+
+	private boolean necesitaToken() {
+		List<Paso> escenario = configuracion.escenario();
+		return !escenario.contains(Paso.LOGIN) && (escenario.contains(Paso.GUARDAR) || escenario.contains(Paso.LOGOUT));
+	}
+
+	private Credendiales credenciales(Usuario usuario) {
+		return new Credendiales(configuracion.email().replace("{n}", String.valueOf(usuario.numero)),
+			configuracion.password());
+	}
+
+	private void cerrarSesion(Usuario usuario) {
+		try {
+			proxy.logout(usuario.token);
+		} catch (RuntimeException e) {
+			// El token caducara solo
+		}
+		usuario.token = null;
+	}
+
+	private void contarIteracion(boolean correcta, boolean medir) {
+		if (medir) {
+			ultimaMedidaNanos.accumulate(System.nanoTime());
+			iteraciones.increment();
+			if (!correcta) {
+				iteracionesFallidas.increment();
+			}
+		}
+	}
+
+	// Tiempo de reflexion al azar con la media configurada (distribucion exponencial)
+	private void pensar() {
+		long media = configuracion.pensar().toNanos();
+		if (media <= 0) {
+			return;
+		}
+		long espera = (long) (-media * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+		esperarHasta(System.nanoTime() + Math.min(espera, 10 * media));
+	}
+
+	private static void esperarHasta(long nanos) {
+		long restante;
+		while ((restante = nanos - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(restante);
+		}
+	}
+
+	private String descripcion() {
+		Configuracion c = configuracion;
+		return String.format(Locale.ROOT, "Carga: %d usuarios, %s, %d s medidos tras %d s de calentamiento, "
+			+ "reflexión media %d ms, escenario %s",
+			c.usuarios(), c.esBucleAbierto() ? String.format(Locale.ROOT, "%.1f it/s (bucle abierto)", c.tasa())
+				: "bucle cerrado",
+			c.duracion().toSeconds(), c.calentamiento().toSeconds(), c.pensar().toMillis(),
+			c.escenario().toString().toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Throughput and latency percentiles of the measured period. Response time
+	 * counts from the scheduled start of the step, service time from the send.
+	 * Rates are over the wall time measured, from the end of the warm-up to the
+	 * last measured iteration: the iterations still running at the end of the
+	 * configured duration are counted, and so must the time they took.
+	 */
+	public String informe() {
+		long ultima = ultimaMedidaNanos.get();
+		double segundos = (ultima == Long.MIN_VALUE ? configuracion.duracion().toNanos()
+			: Math.max(ultima - inicioMedidaNanos, 1)) / 1e9;
+		long total = iteraciones.sum();
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%nIteraciones: %d en %.1f s (%.1f/s), fallidas %d%n", total, segundos,
+			total / segundos, iteracionesFallidas.sum()));
+		if (configuracion.esBucleAbierto() && total < 0.95 * configuracion.tasa() * segundos) {
+			sb.append(String.format(Locale.ROOT, "No se alcanzó la tasa objetivo de %.1f it/s: el servidor no da "
+				+ "más o faltan usuarios%n", configuracion.tasa()));
+		}
+		sb.append(String.format("%-10s %8s %7s %8s %9s %9s %9s %9s %9s %12s%n", "paso", "llamadas", "errores",
+			"rps", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)", "p99serv(ms)"));
+		for (Paso paso : Paso.values()) {
+			Medidas m = medidas.get(paso);
+			HistogramaLatencia respuesta = m.respuesta;
+			if (respuesta.getTotal() == 0) {
+				continue;
+			}
+			sb.append(String.format(Locale.ROOT, "%-10s %8d %7d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n",
+				paso.name().toLowerCase(Locale.ROOT), respuesta.getTotal(), m.errores.sum(),
+				respuesta.getTotal() / segundos, ms(respuesta, 0.50), ms(respuesta, 0.90), ms(respuesta, 0.99),
+				ms(respuesta, 0.999), respuesta.getMaximoNanos() / 1e6, ms(m.servicio, 0.99)));
+		}
+		return sb.toString();
+	}
+
+	private static double ms(HistogramaLatencia histograma, double percentil) {
+		return histograma.getPercentilNanos(percentil) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
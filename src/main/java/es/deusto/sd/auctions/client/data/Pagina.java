@@ -0,0 +1,19 @@
+package es.deusto.sd.auctions.client.data;
+
+import java.util.List;
+
+/**
+ * One page of a list returned by the server. siguienteCursor is an opaque value
+ * to request the next page with Paginacion.siguiente, or null on the last page.
+ * If the server does not page the list, the last page holds all the remaining
+ * elements, more than the size asked.
+ */
+public record Pagina<T>(
+		List<T> elementos,
+		String siguienteCursor
+	) {
+
+	public boolean hayMas() {
+		return siguienteCursor != null;
+	}
+}
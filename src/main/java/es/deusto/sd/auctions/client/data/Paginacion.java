@@ -0,0 +1,37 @@
+package es.deusto.sd.auctions.client.data;
+
+/**
+ * Which page of a list to request: either a page number (from 0) or the opaque
+ * cursor returned with the previous page, and the page size.
+ */
+public record Paginacion(
+		int pagina,
+		String cursor,
+		int tamanio
+	) {
+
+	public Paginacion {
+		if (tamanio <= 0) {
+			throw new IllegalArgumentException("El tamaño de página debe ser positivo: " + tamanio);
+		}
+		if (pagina < 0) {
+			throw new IllegalArgumentException("El número de página no puede ser negativo: " + pagina);
+		}
+	}
+
+	public static Paginacion primera(int tamanio) {
+		return new Paginacion(0, null, tamanio);
+	}
+
+	public static Paginacion pagina(int pagina, int tamanio) {
+		return new Paginacion(pagina, null, tamanio);
+	}
+
+	public static Paginacion cursor(String cursor, int tamanio) {
+		return new Paginacion(0, cursor, tamanio);
+	}
+
+	public static Paginacion siguiente(Pagina<?> anterior, int tamanio) {
+		return cursor(anterior.siguienteCursor(), tamanio);
+	}
+}
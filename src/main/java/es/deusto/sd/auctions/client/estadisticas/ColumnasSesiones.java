@@ -0,0 +1,338 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * Columnar in-memory copy of a list of sessions for the summary statistics of
+ * the UIs. Each field is kept in a primitive array (distance and duration as
+ * float, with NaN when missing; the start time as long, with SIN_HORA when
+ * missing), and the sport and the reto as int codes of a dictionary, so the
+ * aggregations are loops over arrays that neither chase pointers nor box.
+ *
+ * Sessions are appended as they arrive from the proxies (a page, a whole list)
+ * and the aggregations run on the rows appended so far. Above UMBRAL_PARALELO
+ * rows, an aggregation splits the rows in chunks that the common fork-join pool
+ * sums in parallel. Appends and aggregations may run on different threads.
+ */
+public class ColumnasSesiones {
+	public static final long SIN_HORA = Long.MIN_VALUE;
+	public static final String SIN_DEPORTE = "sin deporte";
+	// Filas a partir de las cuales las agregaciones se reparten por el pool fork-join
+	static final int UMBRAL_PARALELO = 1 << 16;
+	private static final int FILAS_MINIMAS_TROZO = 1 << 14;
+	// Rango maximo de claves (dias) que se agrupa con arrays directos en vez de ordenando
+	private static final int MAX_GRUPOS_DIRECTOS = 1 << 16;
+	private static final long DIA = 86_400_000L;
+
+	private long[] horaInicio = new long[64];
+	private float[] distancia = new float[64];
+	private float[] duracion = new float[64];
+	private int[] deporte = new int[64];
+	// -1 si la sesion no se cargo desde un reto
+	private int[] reto = new int[64];
+	private int filas;
+
+	private String[] deportes = new String[8];
+	private final Map<String, Integer> codigosDeporte = new HashMap<>();
+	private long[] retos = new long[8];
+	private int numeroRetos;
+	private final Map<Long, Integer> codigosReto = new HashMap<>();
+
+	// Las filas ya anadidas no cambian: una vista es el tamanio y los arrays de ese momento
+	private record Vista(int filas, float[] distancia, float[] duracion, long[] horaInicio, int[] deporte,
+			int[] reto, String[] deportes, long[] retos) {
+	}
+
+	public static ColumnasSesiones de(Collection<? extends Sesion> sesiones) {
+		ColumnasSesiones columnas = new ColumnasSesiones();
+		columnas.anadirTodas(null, sesiones);
+		return columnas;
+	}
+
+	public void anadir(Long retoId, Sesion sesion) {
+		anadirTodas(retoId, List.of(sesion));
+	}
+
+	/**
+	 * Appends sessions of a reto, or with retoId null of no particular reto.
+	 */
+	public synchronized void anadirTodas(Long retoId, Collection<? extends Sesion> sesiones) {
+		asegurarCapacidad(filas + sesiones.size());
+		int codigoReto = retoId == null ? -1 : codigoReto(retoId);
+		for (Sesion sesion : sesiones) {
+			int fila = filas++;
+			horaInicio[fila] = sesion.horaInicio() != null ? sesion.horaInicio() : SIN_HORA;
+			distancia[fila] = sesion.distancia() != null ? sesion.distancia() : Float.NaN;
+			duracion[fila] = sesion.duracion() != null ? sesion.duracion() : Float.NaN;
+			deporte[fila] = codigoDeporte(sesion.deporte());
+			reto[fila] = codigoReto;
+		}
+	}
+
+	private void asegurarCapacidad(int necesaria) {
+		if (necesaria <= deporte.length) {
+			return;
+		}
+		int capacidad = Math.max(necesaria, deporte.length * 2);
+		horaInicio = Arrays.copyOf(horaInicio, capacidad);
+		distancia = Arrays.copyOf(distancia, capacidad);
+		duracion = Arrays.copyOf(duracion, capacidad);
+		deporte = Arrays.copyOf(deporte, capacidad);
+		reto = Arrays.copyOf(reto, capacidad);
+	}
+
+	private int codigoDeporte(String nombre) {
+		String clave = nombre == null || nombre.isBlank() ? SIN_DEPORTE : nombre.trim().toLowerCase();
+		Integer codigo = codigosDeporte.get(clave);
+		if (codigo == null) {
+			codigo = codigosDeporte.size();
+			if (codigo == deportes.length) {
+				deportes = Arrays.copyOf(deportes, codigo * 2);
+			}
+			deportes[codigo] = clave;
+			codigosDeporte.put(clave, codigo);
+		}
+		return codigo;
+	}
+
+	private int codigoReto(long retoId) {
+		Integer codigo = codigosReto.get(retoId);
+		if (codigo == null) {
+			codigo = numeroRetos++;
+			if (codigo == retos.length) {
+				retos = Arrays.copyOf(retos, codigo * 2);
+			}
+			retos[codigo] = retoId;
+			codigosReto.put(retoId, codigo);
+		}
+		return codigo;
+	}
+
+	public synchronized int getFilas() {
+		return filas;
+	}
+
+	public synchronized void limpiar() {
+		filas = 0;
+		// Arrays nuevos: las vistas que aun se esten agregando siguen leyendo los anteriores
+		horaInicio = new long[64];
+		distancia = new float[64];
+		duracion = new float[64];
+		deporte = new int[64];
+		reto = new int[64];
+		deportes = new String[8];
+		codigosDeporte.clear();
+		retos = new long[8];
+		numeroRetos = 0;
+		codigosReto.clear();
+	}
+
+	private synchronized Vista vista() {
+		return new Vista(filas, distancia, duracion, horaInicio, deporte, reto,
+			Arrays.copyOf(deportes, codigosDeporte.size()), Arrays.copyOf(retos, numeroRetos));
+	}
+
+	public ResumenSesiones resumen() {
+		Vista vista = vista();
+		return agrupar(vista, null, 1).resumen(0);
+	}
+
+	/**
+	 * Totals per sport, in the order the sports first appeared.
+	 */
+	public Map<String, ResumenSesiones> porDeporte() {
+		Vista vista = vista();
+		Acumulado acumulado = agrupar(vista, vista.deporte(), vista.deportes().length);
+		Map<String, ResumenSesiones> resultado = new LinkedHashMap<>();
+		for (int codigo = 0; codigo < vista.deportes().length; codigo++) {
+			if (acumulado.sesiones[codigo] > 0) {
+				resultado.put(vista.deportes()[codigo], acumulado.resumen(codigo));
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Totals per reto, for the sessions appended with a reto.
+	 */
+	public Map<Long, ResumenSesiones> porReto() {
+		Vista vista = vista();
+		Acumulado acumulado = agrupar(vista, vista.reto(), vista.retos().length);
+		Map<Long, ResumenSesiones> resultado = new LinkedHashMap<>();
+		for (int codigo = 0; codigo < vista.retos().length; codigo++) {
+			if (acumulado.sesiones[codigo] > 0) {
+				resultado.put(vista.retos()[codigo], acumulado.resumen(codigo));
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Totals per day of the start time, in that offset. Sessions without start
+	 * time, or with only a time of day, are left out.
+	 */
+	public SortedMap<LocalDate, ResumenSesiones> porDia(ZoneOffset zona) {
+		return porPeriodo(zona, false);
+	}
+
+	/**
+	 * Totals per ISO week (Monday to Sunday) of the start time, keyed by its Monday.
+	 */
+	public SortedMap<LocalDate, ResumenSesiones> porSemana(ZoneOffset zona) {
+		return porPeriodo(zona, true);
+	}
+
+	private SortedMap<LocalDate, ResumenSesiones> porPeriodo(ZoneOffset zona, boolean semanas) {
+		Vista vista = vista();
+		long desplazamiento = zona.getTotalSeconds() * 1000L;
+		long[] dias = new long[vista.filas()];
+		for (int i = 0; i < dias.length; i++) {
+			long inicio = vista.horaInicio()[i];
+			// Sin hora, o solo con la hora del dia: no se sabe en que dia fue
+			if (inicio == SIN_HORA || ObjetivoReto.esHoraDelDia(inicio)) {
+				dias[i] = SIN_HORA;
+				continue;
+			}
+			long dia = Math.floorDiv(inicio + desplazamiento, DIA);
+			// El dia 0 (1970-01-01) fue jueves: se retrocede hasta el lunes de su semana
+			dias[i] = semanas ? dia - Math.floorMod(dia + 3, 7) : dia;
+		}
+
+		Codificacion codificacion = codificar(dias);
+		Acumulado acumulado = agrupar(vista, codificacion.claves(), codificacion.valores().length);
+		SortedMap<LocalDate, ResumenSesiones> resultado = new TreeMap<>();
+		for (int codigo = 0; codigo < codificacion.valores().length; codigo++) {
+			if (acumulado.sesiones[codigo] > 0) {
+				resultado.put(LocalDate.ofEpochDay(codificacion.valores()[codigo]), acumulado.resumen(codigo));
+			}
+		}
+		return resultado;
+	}
+
+	// Clave de grupo de cada fila (-1 si no tiene) y valor de cada grupo
+	private record Codificacion(int[] claves, long[] valores) {
+	}
+
+	private static Codificacion codificar(long[] valores) {
+		long minimo = Long.MAX_VALUE;
+		long maximo = Long.MIN_VALUE;
+		for (long valor : valores) {
+			if (valor != SIN_HORA) {
+				minimo = Math.min(minimo, valor);
+				maximo = Math.max(maximo, valor);
+			}
+		}
+		int[] claves = new int[valores.length];
+		if (minimo > maximo) {
+			Arrays.fill(claves, -1);
+			return new Codificacion(claves, new long[0]);
+		}
+
+		// Rango pequenio (lo normal con dias): la clave es la distancia al minimo
+		if (maximo - minimo < MAX_GRUPOS_DIRECTOS) {
+			for (int i = 0; i < valores.length; i++) {
+				claves[i] = valores[i] == SIN_HORA ? -1 : (int) (valores[i] - minimo);
+			}
+			long[] grupos = new long[(int) (maximo - minimo) + 1];
+			for (int i = 0; i < grupos.length; i++) {
+				grupos[i] = minimo + i;
+			}
+			return new Codificacion(claves, grupos);
+		}
+
+		// Rango grande: se ordenan los valores distintos y se busca cada uno
+		long[] distintos = Arrays.stream(valores).filter(valor -> valor != SIN_HORA).sorted().distinct().toArray();
+		for (int i = 0; i < valores.length; i++) {
+			claves[i] = valores[i] == SIN_HORA ? -1 : Arrays.binarySearch(distintos, valores[i]);
+		}
+		return new Codificacion(claves, distintos);
+	}
+
+	private static Acumulado agrupar(Vista vista, int[] claves, int grupos) {
+		int filas = vista.filas();
+		if (filas < UMBRAL_PARALELO) {
+			Acumulado acumulado = new Acumulado(grupos);
+			acumulado.acumular(vista, claves, 0, filas);
+			return acumulado;
+		}
+		// Pocos trozos grandes: cada uno tiene sus propios arrays de grupos
+		int trozos = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, filas / FILAS_MINIMAS_TROZO);
+		int porTrozo = (filas + trozos - 1) / trozos;
+		return IntStream.range(0, trozos).parallel()
+			.mapToObj(trozo -> {
+				Acumulado acumulado = new Acumulado(grupos);
+				acumulado.acumular(vista, claves, trozo * porTrozo, Math.min(filas, (trozo + 1) * porTrozo));
+				return acumulado;
+			})
+			.reduce(Acumulado::combinar)
+			.orElseGet(() -> new Acumulado(grupos));
+	}
+
+	private static final class Acumulado {
+		final long[] sesiones;
+		final double[] distancia;
+		final long[] conDistancia;
+		final double[] duracion;
+		final long[] conDuracion;
+
+		Acumulado(int grupos) {
+			sesiones = new long[grupos];
+			distancia = new double[grupos];
+			conDistancia = new long[grupos];
+			duracion = new double[grupos];
+			conDuracion = new long[grupos];
+		}
+
+		void acumular(Vista vista, int[] claves, int desde, int hasta) {
+			float[] distancias = vista.distancia();
+			float[] duraciones = vista.duracion();
+			for (int i = desde; i < hasta; i++) {
+				int grupo = claves == null ? 0 : claves[i];
+				if (grupo < 0) {
+					continue;
+				}
+				sesiones[grupo]++;
+				float d = distancias[i];
+				// NaN != NaN: las sesiones sin dato no suman ni cuentan para la media
+				if (d == d) {
+					distancia[grupo] += d;
+					conDistancia[grupo]++;
+				}
+				float t = duraciones[i];
+				if (t == t) {
+					duracion[grupo] += t;
+					conDuracion[grupo]++;
+				}
+			}
+		}
+
+		Acumulado combinar(Acumulado otro) {
+			for (int grupo = 0; grupo < sesiones.length; grupo++) {
+				sesiones[grupo] += otro.sesiones[grupo];
+				distancia[grupo] += otro.distancia[grupo];
+				conDistancia[grupo] += otro.conDistancia[grupo];
+				duracion[grupo] += otro.duracion[grupo];
+				conDuracion[grupo] += otro.conDuracion[grupo];
+			}
+			return this;
+		}
+
+		ResumenSesiones resumen(int grupo) {
+			return new ResumenSesiones(sesiones[grupo], distancia[grupo], conDistancia[grupo], duracion[grupo],
+				conDuracion[grupo]);
+		}
+	}
+}
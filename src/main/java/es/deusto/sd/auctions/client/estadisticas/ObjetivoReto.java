@@ -0,0 +1,128 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * Goal of a Reto, parsed once from its String fields: what is measured (distance
+ * in km or duration in hours), the target, the sport and the date window. A
+ * session counts towards the goal when its sport matches and it started inside
+ * the window. A field that can't be parsed leaves that condition open (no date
+ * limit, any sport) or the goal without target.
+ */
+public record ObjetivoReto(
+		Long retoId,
+		Medida medida,
+		double objetivo,
+		String deporte,
+		long inicioMillis,
+		long finMillis
+	) {
+
+	private static final Pattern NUMERO = Pattern.compile("\\d+(?:[.,]\\d+)?");
+	private static final DateTimeFormatter FECHA_ES = DateTimeFormatter.ofPattern("d/M/yyyy");
+	private static final long DIA = 86_400_000L;
+
+	public enum Medida {
+		DISTANCIA("km"), DURACION("h");
+
+		private final String unidad;
+
+		Medida(String unidad) {
+			this.unidad = unidad;
+		}
+
+		public String getUnidad() {
+			return unidad;
+		}
+	}
+
+	public static ObjetivoReto de(Reto reto, ZoneId zona) {
+		double distancia = numero(reto.distancia());
+		double duracion = numero(reto.duracion());
+		// El tipo de reto decide la medida; si no lo dice, la que tenga objetivo
+		String tipo = reto.reto() == null ? "" : reto.reto().toLowerCase(Locale.ROOT);
+		Medida medida;
+		if (tipo.contains("dur") || tipo.contains("tiempo")) {
+			medida = Medida.DURACION;
+		} else if (tipo.contains("dist")) {
+			medida = Medida.DISTANCIA;
+		} else {
+			medida = Double.isNaN(distancia) && !Double.isNaN(duracion) ? Medida.DURACION : Medida.DISTANCIA;
+		}
+
+		LocalDate inicio = fecha(reto.fechaInicio());
+		LocalDate fin = fecha(reto.fechaFin());
+		String deporte = reto.deporte() == null || reto.deporte().isBlank()
+			? null : reto.deporte().trim().toLowerCase(Locale.ROOT);
+		return new ObjetivoReto(reto.id(), medida, medida == Medida.DISTANCIA ? distancia : duracion, deporte,
+			inicio != null ? inicio.atStartOfDay(zona).toInstant().toEpochMilli() : Long.MIN_VALUE,
+			// El dia de fin entra completo
+			fin != null ? fin.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli() : Long.MAX_VALUE);
+	}
+
+	// Primer numero del texto ("10", "10.5 km", "10,5"), o NaN
+	private static double numero(String texto) {
+		if (texto == null) {
+			return Double.NaN;
+		}
+		Matcher m = NUMERO.matcher(texto);
+		return m.find() ? Double.parseDouble(m.group().replace(',', '.')) : Double.NaN;
+	}
+
+	private static LocalDate fecha(String texto) {
+		if (texto == null || texto.isBlank()) {
+			return null;
+		}
+		String valor = texto.trim();
+		try {
+			// Fecha ISO, sola o al principio de una fecha y hora
+			return LocalDate.parse(valor.length() > 10 ? valor.substring(0, 10) : valor);
+		} catch (DateTimeParseException e) {
+			try {
+				return LocalDate.parse(valor, FECHA_ES);
+			} catch (DateTimeParseException e2) {
+				return null;
+			}
+		}
+	}
+
+	public boolean tieneObjetivo() {
+		return objetivo > 0;
+	}
+
+	/**
+	 * Whether the session counts towards the goal. A start time within the first
+	 * day of the epoch is a time of day only (the web form sends HH:mm), and is
+	 * taken as inside the window.
+	 */
+	public boolean cuenta(Sesion sesion) {
+		if (deporte != null && sesion.deporte() != null && !deporte.equalsIgnoreCase(sesion.deporte().trim())) {
+			return false;
+		}
+		Long inicio = sesion.horaInicio();
+		if (inicio == null || esHoraDelDia(inicio)) {
+			return true;
+		}
+		return inicio >= inicioMillis && inicio < finMillis;
+	}
+
+	// Las sesiones guardadas desde el formulario web solo llevan la hora (HH:mm en milisegundos), sin fecha
+	static boolean esHoraDelDia(long horaInicio) {
+		return horaInicio >= 0 && horaInicio < DIA;
+	}
+
+	// Lo que la sesion suma al reto, en la unidad de la medida
+	public double valor(Sesion sesion) {
+		Float valor = medida == Medida.DISTANCIA ? sesion.distancia() : sesion.duracion();
+		return valor != null && !valor.isNaN() ? valor : 0;
+	}
+}
@@ -0,0 +1,208 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * Progress towards the goal of every Reto, kept up to date as sessions arrive
+ * instead of recomputed from the whole list on every view. Each reto's goal is
+ * parsed once (ObjetivoReto) and its total is increased by each new session that
+ * counts, so progreso answers in constant time.
+ *
+ * Sessions come from three places: the pages or lists received from the server
+ * (anadir, which skips the ids already counted), the sessions just saved by the
+ * user (registrar; they have no id yet, so they are provisional until the same
+ * session arrives from the server) and full syncs of a reto's list (sincronizar,
+ * which recounts from scratch and drops the provisional ones).
+ */
+public class ProgresoRetos {
+
+	/**
+	 * Progress of a reto: the total of the counted sessions against the target, in
+	 * the unit of the goal.
+	 */
+	public record Progreso(ObjetivoReto objetivo, double realizado, int sesiones) {
+
+		public boolean tieneObjetivo() {
+			return objetivo.tieneObjetivo();
+		}
+
+		public double porcentaje() {
+			return tieneObjetivo() ? Math.min(100, realizado * 100 / objetivo.objetivo()) : 0;
+		}
+
+		public double restante() {
+			return tieneObjetivo() ? Math.max(0, objetivo.objetivo() - realizado) : 0;
+		}
+
+		public boolean completado() {
+			return tieneObjetivo() && realizado >= objetivo.objetivo();
+		}
+
+		public String getUnidad() {
+			return objetivo.medida().getUnidad();
+		}
+	}
+
+	private static final class Estado {
+		final Reto reto;
+		final ObjetivoReto objetivo;
+		// Ids de las sesiones ya sumadas (o descartadas por no contar)
+		final Set<Long> vistas = new HashSet<>();
+		// Sesiones guardadas que el servidor aun no ha devuelto con su id
+		final List<Sesion> provisionales = new ArrayList<>();
+		double realizado;
+		int sesiones;
+		long sincronizadoNanos;
+		boolean sincronizado;
+
+		Estado(Reto reto, ObjetivoReto objetivo) {
+			this.reto = reto;
+			this.objetivo = objetivo;
+		}
+
+		void anadir(Sesion sesion) {
+			if (sesion.id() != null) {
+				if (!vistas.add(sesion.id())) {
+					return;
+				}
+				// Si es una sesion guardada desde aqui, ya estaba sumada como provisional
+				if (quitarProvisional(sesion)) {
+					return;
+				}
+			}
+			if (objetivo.cuenta(sesion)) {
+				realizado += objetivo.valor(sesion);
+				sesiones++;
+				if (sesion.id() == null) {
+					provisionales.add(sesion);
+				}
+			}
+		}
+
+		private boolean quitarProvisional(Sesion sesion) {
+			for (Iterator<Sesion> it = provisionales.iterator(); it.hasNext();) {
+				Sesion provisional = it.next();
+				if (Objects.equals(provisional.titulo(), sesion.titulo())
+						&& Objects.equals(provisional.deporte(), sesion.deporte())
+						&& Objects.equals(provisional.distancia(), sesion.distancia())
+						&& Objects.equals(provisional.duracion(), sesion.duracion())
+						&& Objects.equals(provisional.horaInicio(), sesion.horaInicio())) {
+					it.remove();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void reiniciar() {
+			vistas.clear();
+			provisionales.clear();
+			realizado = 0;
+			sesiones = 0;
+		}
+	}
+
+	private final ZoneId zona;
+	private final Map<Long, Estado> estados = new ConcurrentHashMap<>();
+
+	public ProgresoRetos() {
+		this(ZoneId.systemDefault());
+	}
+
+	// Zona en la que se interpretan las fechas de inicio y fin de los retos
+	public ProgresoRetos(ZoneId zona) {
+		this.zona = zona;
+	}
+
+	/**
+	 * Parses the goal of the reto, unless it is already known and unchanged. A
+	 * changed reto starts from zero and needs a sync.
+	 */
+	public ObjetivoReto definir(Reto reto) {
+		if (reto == null || reto.id() == null) {
+			throw new IllegalArgumentException("El reto debe tener id");
+		}
+		return estados.compute(reto.id(), (id, estado) -> estado != null && estado.reto.equals(reto)
+			? estado : new Estado(reto, ObjetivoReto.de(reto, zona))).objetivo;
+	}
+
+	/**
+	 * Adds sessions received from the server (a page or a whole list). Sessions
+	 * already counted are skipped. Ignored if the reto has not been defined.
+	 */
+	public void anadir(Long retoId, Collection<Sesion> sesiones) {
+		Estado estado = estados.get(retoId);
+		if (estado == null) {
+			return;
+		}
+		synchronized (estado) {
+			for (Sesion sesion : sesiones) {
+				estado.anadir(sesion);
+			}
+		}
+	}
+
+	/**
+	 * Adds a session just saved by the user, before the server returns it.
+	 */
+	public void registrar(Long retoId, Sesion sesion) {
+		anadir(retoId, List.of(sesion));
+	}
+
+	/**
+	 * Recounts the reto from its whole list of sessions.
+	 */
+	public void sincronizar(Long retoId, Collection<Sesion> sesiones) {
+		Estado estado = estados.get(retoId);
+		if (estado == null) {
+			return;
+		}
+		synchronized (estado) {
+			estado.reiniciar();
+			for (Sesion sesion : sesiones) {
+				estado.anadir(sesion);
+			}
+			estado.sincronizado = true;
+			estado.sincronizadoNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Whether the reto was never synced, or longer ago than maxAntiguedad.
+	 */
+	public boolean necesitaSincronizar(Long retoId, Duration maxAntiguedad) {
+		Estado estado = estados.get(retoId);
+		if (estado == null) {
+			return false;
+		}
+		synchronized (estado) {
+			return !estado.sincronizado || System.nanoTime() - estado.sincronizadoNanos > maxAntiguedad.toNanos();
+		}
+	}
+
+	/**
+	 * Current progress of the reto, or null if it has not been defined.
+	 */
+	public Progreso progreso(Long retoId) {
+		Estado estado = estados.get(retoId);
+		if (estado == null) {
+			return null;
+		}
+		synchronized (estado) {
+			return new Progreso(estado.objetivo, estado.realizado, estado.sesiones);
+		}
+	}
+}
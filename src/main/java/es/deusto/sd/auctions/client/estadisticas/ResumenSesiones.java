@@ -0,0 +1,24 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+/**
+ * Totals of a group of sessions. Sessions without distance or duration count in
+ * sesiones but not in the corresponding total nor in its average.
+ */
+public record ResumenSesiones(
+		long sesiones,
+		double distanciaTotal,
+		long conDistancia,
+		double duracionTotal,
+		long conDuracion
+	) {
+
+	public static final ResumenSesiones VACIO = new ResumenSesiones(0, 0, 0, 0, 0);
+
+	public double distanciaMedia() {
+		return conDistancia == 0 ? 0 : distanciaTotal / conDistancia;
+	}
+
+	public double duracionMedia() {
+		return conDuracion == 0 ? 0 : duracionTotal / conDuracion;
+	}
+}
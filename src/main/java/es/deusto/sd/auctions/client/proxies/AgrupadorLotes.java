@@ -0,0 +1,129 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * AgrupadorLotes is a micro-batching collector: single-id requests made within a
+ * short window are merged and loaded with one call to a multi-get operation. A
+ * batch is sent when the window that started with its first id closes, or as soon
+ * as it reaches the maximum size. Requests for an id already waiting in the batch
+ * share its result.
+ *
+ * Each request gets a CompletableFuture that completes with the value of its id,
+ * with null if the batch did not return it, or with the error of the whole batch.
+ */
+public class AgrupadorLotes<T> {
+	// Un solo hilo para todas las ventanas: solo dispara el envio, la carga va en el executor
+	private static final ScheduledExecutorService TEMPORIZADOR = Executors.newSingleThreadScheduledExecutor(tarea -> {
+		Thread hilo = new Thread(tarea, "agrupador-lotes");
+		hilo.setDaemon(true);
+		return hilo;
+	});
+
+	private final Function<Collection<Long>, Map<Long, T>> cargarLote;
+	private final long ventanaNanos;
+	private final int maxLote;
+	private final Executor executor;
+
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	private Map<Long, CompletableFuture<T>> pendientes = new LinkedHashMap<>();
+	private ScheduledFuture<?> envio;
+
+	private final AtomicLong peticiones = new AtomicLong();
+	private final AtomicLong lotes = new AtomicLong();
+
+	public AgrupadorLotes(Function<Collection<Long>, Map<Long, T>> cargarLote, Duration ventana, int maxLote,
+			Executor executor) {
+		this.cargarLote = cargarLote;
+		this.ventanaNanos = ventana.toNanos();
+		this.maxLote = maxLote;
+		this.executor = executor;
+	}
+
+	public CompletableFuture<T> pedir(Long id) {
+		peticiones.incrementAndGet();
+		Map<Long, CompletableFuture<T>> lleno = null;
+		CompletableFuture<T> futuro;
+
+		cerrojo.lock();
+		try {
+			futuro = pendientes.get(id);
+			if (futuro != null) {
+				return futuro;
+			}
+			futuro = new CompletableFuture<>();
+			pendientes.put(id, futuro);
+
+			if (pendientes.size() >= maxLote) {
+				lleno = tomarPendientes();
+			} else if (envio == null) {
+				envio = TEMPORIZADOR.schedule(this::vaciar, ventanaNanos, TimeUnit.NANOSECONDS);
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+
+		if (lleno != null) {
+			despachar(lleno);
+		}
+		return futuro;
+	}
+
+	// Se llama con el cerrojo cogido
+	private Map<Long, CompletableFuture<T>> tomarPendientes() {
+		Map<Long, CompletableFuture<T>> lote = pendientes;
+		pendientes = new LinkedHashMap<>();
+		if (envio != null) {
+			envio.cancel(false);
+			envio = null;
+		}
+		return lote;
+	}
+
+	private void vaciar() {
+		Map<Long, CompletableFuture<T>> lote;
+		cerrojo.lock();
+		try {
+			lote = tomarPendientes();
+		} finally {
+			cerrojo.unlock();
+		}
+		if (!lote.isEmpty()) {
+			despachar(lote);
+		}
+	}
+
+	private void despachar(Map<Long, CompletableFuture<T>> lote) {
+		lotes.incrementAndGet();
+		executor.execute(() -> {
+			try {
+				Map<Long, T> resultado = cargarLote.apply(lote.keySet());
+				lote.forEach((id, futuro) -> futuro.complete(resultado.get(id)));
+			} catch (RuntimeException | Error e) {
+				lote.values().forEach(futuro -> futuro.completeExceptionally(e));
+			}
+		});
+	}
+
+	// Ids pedidos de uno en uno
+	public long getPeticiones() {
+		return peticiones.get();
+	}
+
+	// Llamadas de lote realizadas para atenderlos
+	public long getLotes() {
+		return lotes.get();
+	}
+}
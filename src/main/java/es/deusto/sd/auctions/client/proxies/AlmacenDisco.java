@@ -0,0 +1,333 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * AlmacenDisco keeps the last retos and sessions received from the server in a
+ * local binary file, so the Swing and console clients can show them as soon as
+ * they start and refresh them from the server in the background.
+ *
+ * The file is read whole into a heap buffer with one FileChannel.read and decoded
+ * in one pass; it is not memory-mapped, because a mapping keeps the file open
+ * until the buffer is garbage collected and on Windows that makes the atomic
+ * replace of the next write fail. It starts with a magic number and a format version and ends with a CRC32 of its
+ * content: a file written with another version, truncated or corrupted is
+ * ignored as if it did not exist. Writes go to a temporary file in the same
+ * directory, which is forced to disk and then moved over the old one atomically,
+ * so a crash never leaves half a file behind.
+ *
+ * Only the sessions of the maxRetosConSesiones retos saved most recently are
+ * kept; the group of the reto saved longest ago is dropped to make room.
+ *
+ * Layout (big endian): int magic, short version, long saved-at millis, int count
+ * of retos followed by the retos, int count of groups followed by, for each reto,
+ * long reto id, int count and its sessions; long CRC32. Strings are an int length
+ * (-1 for null) and UTF-8 bytes; nullable numbers are a presence byte and the value.
+ */
+public class AlmacenDisco {
+	private static final int MAGIA = 0x53545256; // "STRV"
+	private static final short VERSION = 1;
+	private static final int TAMANIO_CABECERA = 4 + 2 + 8;
+	private static final int TAMANIO_CRC = 8;
+	private static final int MAX_RETOS_CON_SESIONES = 64;
+
+	/**
+	 * Contents of the file: the retos and the sessions of each reto.
+	 */
+	public record Contenido(List<Reto> retos, Map<Long, List<Sesion>> sesionesPorReto, long guardadoMillis) {
+
+		public static Contenido vacio() {
+			return new Contenido(List.of(), Map.of(), 0);
+		}
+
+		public List<Sesion> sesionesDe(Long retoId) {
+			return sesionesPorReto.getOrDefault(retoId, List.of());
+		}
+	}
+
+	private final Path fichero;
+	private final int maxRetosConSesiones;
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	// Copia en memoria de lo guardado, para poder actualizar una parte y reescribir el resto
+	private Contenido actual;
+
+	public AlmacenDisco(Path fichero) {
+		this(fichero, MAX_RETOS_CON_SESIONES);
+	}
+
+	public AlmacenDisco(Path fichero, int maxRetosConSesiones) {
+		if (maxRetosConSesiones <= 0) {
+			throw new IllegalArgumentException("El número de retos con sesiones debe ser positivo: " + maxRetosConSesiones);
+		}
+		this.fichero = fichero;
+		this.maxRetosConSesiones = maxRetosConSesiones;
+	}
+
+	/**
+	 * Default file of a client, ~/.strava-cliente/<cliente>.bin, or the path given
+	 * in the system property cliente.almacen.
+	 */
+	public static Path ficheroPorDefecto(String cliente) {
+		String ruta = System.getProperty("cliente.almacen");
+		if (ruta != null) {
+			return Path.of(ruta);
+		}
+		return Path.of(System.getProperty("user.home"), ".strava-cliente", cliente + ".bin");
+	}
+
+	public Path getFichero() {
+		return fichero;
+	}
+
+	/**
+	 * Reads the file. Never fails: a missing, old or damaged file gives an empty
+	 * Contenido.
+	 */
+	public Contenido leer() {
+		cerrojo.lock();
+		try {
+			if (actual == null) {
+				actual = leerFichero();
+			}
+			return actual;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	public void guardarRetos(List<Reto> retos) {
+		cerrojo.lock();
+		try {
+			Contenido previo = leer();
+			guardar(new Contenido(List.copyOf(retos), previo.sesionesPorReto(), System.currentTimeMillis()));
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	public void guardarSesiones(Long retoId, List<Sesion> sesiones) {
+		cerrojo.lock();
+		try {
+			Contenido previo = leer();
+			// El orden de los grupos es el de guardado: el primero es el que lleva mas tiempo sin guardarse
+			Map<Long, List<Sesion>> grupos = new LinkedHashMap<>(previo.sesionesPorReto());
+			grupos.remove(retoId);
+			grupos.put(retoId, List.copyOf(sesiones));
+			Iterator<Long> antiguos = grupos.keySet().iterator();
+			while (grupos.size() > maxRetosConSesiones) {
+				antiguos.next();
+				antiguos.remove();
+			}
+			guardar(new Contenido(previo.retos(), grupos, System.currentTimeMillis()));
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Replaces the file atomically. Write errors are reported and ignored: the
+	 * store is only a startup accelerator and the data is still on the server.
+	 */
+	public void guardar(Contenido contenido) {
+		cerrojo.lock();
+		try {
+			escribirFichero(contenido);
+			actual = contenido;
+		} catch (IOException e) {
+			System.err.println("No se pudo guardar el almacén local " + fichero + ": " + e.getMessage());
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	private Contenido leerFichero() {
+		try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+			long tamanio = canal.size();
+			if (tamanio < TAMANIO_CABECERA + TAMANIO_CRC || tamanio > Integer.MAX_VALUE) {
+				return Contenido.vacio();
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) tamanio);
+			while (buffer.hasRemaining()) {
+				if (canal.read(buffer) < 0) {
+					// El fichero ha encogido mientras se leia
+					return Contenido.vacio();
+				}
+			}
+			return decodificar(buffer.flip());
+		} catch (NoSuchFileException e) {
+			return Contenido.vacio();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Se ignora el almacén local " + fichero + ": " + e.getMessage());
+			return Contenido.vacio();
+		}
+	}
+
+	private static Contenido decodificar(ByteBuffer buffer) {
+		int finDatos = buffer.limit() - TAMANIO_CRC;
+
+		if (buffer.getInt(0) != MAGIA || buffer.getShort(4) != VERSION) {
+			return Contenido.vacio();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().position(0).limit(finDatos));
+		if (crc.getValue() != buffer.getLong(finDatos)) {
+			System.err.println("El almacén local está dañado; se ignora");
+			return Contenido.vacio();
+		}
+
+		buffer.position(6);
+		long guardado = buffer.getLong();
+
+		int numRetos = buffer.getInt();
+		List<Reto> retos = new ArrayList<>(numRetos);
+		for (int i = 0; i < numRetos; i++) {
+			retos.add(new Reto(leerLong(buffer), leerTexto(buffer), leerTexto(buffer), leerTexto(buffer),
+				leerTexto(buffer), leerTexto(buffer), leerTexto(buffer), leerTexto(buffer)));
+		}
+
+		int numGrupos = buffer.getInt();
+		Map<Long, List<Sesion>> grupos = new LinkedHashMap<>();
+		for (int g = 0; g < numGrupos; g++) {
+			long retoId = buffer.getLong();
+			int numSesiones = buffer.getInt();
+			List<Sesion> sesiones = new ArrayList<>(numSesiones);
+			for (int i = 0; i < numSesiones; i++) {
+				sesiones.add(new Sesion(leerLong(buffer), leerTexto(buffer), leerTexto(buffer), leerFloat(buffer),
+					leerLong(buffer), leerLong(buffer), leerFloat(buffer)));
+			}
+			grupos.put(retoId, Collections.unmodifiableList(sesiones));
+		}
+
+		return new Contenido(Collections.unmodifiableList(retos), grupos, guardado);
+	}
+
+	private void escribirFichero(Contenido contenido) throws IOException {
+		Path directorio = fichero.toAbsolutePath().getParent();
+		Files.createDirectories(directorio);
+		Path temporal = Files.createTempFile(directorio, fichero.getFileName().toString(), ".tmp");
+
+		try {
+			CRC32 crc = new CRC32();
+			try (OutputStream salida = Files.newOutputStream(temporal);
+					DataOutputStream datos = new DataOutputStream(
+						new BufferedOutputStream(new CheckedOutputStream(salida, crc), 64 * 1024))) {
+				datos.writeInt(MAGIA);
+				datos.writeShort(VERSION);
+				datos.writeLong(contenido.guardadoMillis());
+
+				datos.writeInt(contenido.retos().size());
+				for (Reto reto : contenido.retos()) {
+					escribirLong(datos, reto.id());
+					escribirTexto(datos, reto.nombre());
+					escribirTexto(datos, reto.fechaInicio());
+					escribirTexto(datos, reto.fechaFin());
+					escribirTexto(datos, reto.reto());
+					escribirTexto(datos, reto.deporte());
+					escribirTexto(datos, reto.duracion());
+					escribirTexto(datos, reto.distancia());
+				}
+
+				// Grupos con id nulo no se pueden volver a leer: se omiten
+				List<Map.Entry<Long, List<Sesion>>> grupos = contenido.sesionesPorReto().entrySet().stream()
+					.filter(grupo -> grupo.getKey() != null)
+					.toList();
+				datos.writeInt(grupos.size());
+				for (Map.Entry<Long, List<Sesion>> grupo : grupos) {
+					datos.writeLong(grupo.getKey());
+					datos.writeInt(grupo.getValue().size());
+					for (Sesion sesion : grupo.getValue()) {
+						escribirLong(datos, sesion.id());
+						escribirTexto(datos, sesion.titulo());
+						escribirTexto(datos, sesion.deporte());
+						escribirFloat(datos, sesion.distancia());
+						escribirLong(datos, sesion.horaInicio());
+						escribirLong(datos, sesion.horaFin());
+						escribirFloat(datos, sesion.duracion());
+					}
+				}
+
+				// El CRC cubre todo lo anterior; se vacia el buffer antes de leerlo
+				datos.flush();
+				datos.writeLong(crc.getValue());
+			}
+
+			try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+				canal.force(true);
+			}
+
+			try {
+				Files.move(temporal, fichero, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporal);
+		}
+	}
+
+	private static void escribirTexto(DataOutputStream datos, String texto) throws IOException {
+		if (texto == null) {
+			datos.writeInt(-1);
+			return;
+		}
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		datos.writeInt(bytes.length);
+		datos.write(bytes);
+	}
+
+	private static String leerTexto(ByteBuffer buffer) {
+		int longitud = buffer.getInt();
+		if (longitud < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[longitud];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void escribirLong(DataOutputStream datos, Long valor) throws IOException {
+		datos.writeBoolean(valor != null);
+		if (valor != null) {
+			datos.writeLong(valor);
+		}
+	}
+
+	private static Long leerLong(ByteBuffer buffer) {
+		return buffer.get() != 0 ? buffer.getLong() : null;
+	}
+
+	private static void escribirFloat(DataOutputStream datos, Float valor) throws IOException {
+		datos.writeBoolean(valor != null);
+		if (valor != null) {
+			datos.writeFloat(valor);
+		}
+	}
+
+	private static Float leerFloat(ByteBuffer buffer) {
+		return buffer.get() != 0 ? buffer.getFloat() : null;
+	}
+}
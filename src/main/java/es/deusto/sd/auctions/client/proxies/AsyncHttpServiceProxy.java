@@ -0,0 +1,775 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * AsyncHttpServiceProxy implements IAsyncAuctionsServiceProxy on top of
+ * HttpClient.sendAsync. Requests are handed to the HttpClient and the caller
+ * gets a CompletableFuture back straight away; the response is mapped to the
+ * data records once its headers arrive.
+ *
+ * The executor of the HttpClient can be supplied by the caller, so a small fixed
+ * pool is enough to serve many in-flight calls. Bodies are read as a blocking
+ * InputStream, which waits on the network while the rest of the body arrives, so
+ * they are never parsed on that executor: the conversion runs in a virtual thread
+ * of its own (LECTURA), where waiting costs no platform thread and can't starve
+ * the HttpClient of the threads it needs to deliver the bytes.
+ *
+ * Bodies are read as an InputStream and parsed element by element with a Jackson
+ * MappingIterator, so a list is never held in memory as text and as objects at
+ * the same time. The stream* methods hand that iterator to the caller as a
+ * Stream, to process the sessions while they are still arriving.
+ *
+ * Every request accepts gzip and deflate answers; compressed bodies are inflated
+ * by DescompresorCuerpo as they arrive, before the body handler sees them. If
+ * the configuration enables it, the bodies sent (guardarSesion) are gzipped when
+ * they are larger than the threshold.
+ *
+ * Answers can be JSON or Smile: with the SMILE format of the configuration the
+ * binary format is requested first (see Serializacion).
+ *
+ * The base URL, the per-request timeout, the data format and the request
+ * compression come from a ConfiguracionHttp. By default the proxy uses the configuration and the
+ * HttpClient shared by the whole process (see FabricaClienteHttp).
+ */
+public class AsyncHttpServiceProxy implements IAsyncAuctionsServiceProxy {
+    private static final int MAX_VALIDADORES = 256;
+    // Mismos limites que RevalidacionInterceptor, medidos sobre el cuerpo leido
+    private static final int MAX_BYTES_VALIDADOR = 1024 * 1024;
+    private static final long MAX_BYTES_VALIDADORES = 16L * 1024 * 1024;
+    // Hilos virtuales en los que se leen y convierten los cuerpos, fuera del executor del HttpClient
+    private static final Executor LECTURA = Executors.newVirtualThreadPerTaskExecutor();
+    static final String CABECERA_IDEMPOTENCIA = "Idempotency-Key";
+    private final HttpClient httpCliente;
+    private final ConfiguracionHttp configuracion;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final MetricasProxy metricas;
+    private final ObjectReader lectorRetos;
+    private final ObjectReader lectorSesiones;
+    // Ultima respuesta validable de cada URL, para peticiones condicionales
+    private final CacheLRU<String, RespuestaValidada> validadores =
+        new CacheLRU<>(MAX_VALIDADORES, MAX_BYTES_VALIDADORES, RespuestaValidada::bytes);
+    // Se desactivan al ver que el servidor no tiene el endpoint de lotes, para no volver a probarlo
+    private final AtomicBoolean loteSesiones = new AtomicBoolean(true);
+    private final AtomicBoolean loteRetos = new AtomicBoolean(true);
+
+    public AsyncHttpServiceProxy() {
+        this(new MetricasProxy());
+    }
+
+    public AsyncHttpServiceProxy(MetricasProxy metricas) {
+        this(FabricaClienteHttp.compartido(), metricas, ConfiguracionHttp.compartida());
+    }
+
+    public AsyncHttpServiceProxy(Executor executor) {
+        this(HttpClient.newBuilder()
+            .version(ConfiguracionHttp.compartida().version())
+            .connectTimeout(ConfiguracionHttp.compartida().timeoutConexion())
+            .executor(executor)
+            .build());
+    }
+
+    public AsyncHttpServiceProxy(HttpClient httpCliente) {
+        this(httpCliente, new MetricasProxy());
+    }
+
+    public AsyncHttpServiceProxy(HttpClient httpCliente, MetricasProxy metricas) {
+        this(httpCliente, metricas, ConfiguracionHttp.compartida());
+    }
+
+    public AsyncHttpServiceProxy(HttpClient httpCliente, MetricasProxy metricas, ConfiguracionHttp configuracion) {
+        this.httpCliente = httpCliente;
+        this.metricas = metricas;
+        this.configuracion = configuracion;
+        this.baseUrl = configuracion.baseUrl();
+        // Los cuerpos enviados van en JSON; los lectores aceptan JSON o Smile, ver Serializacion
+        this.objectMapper = Serializacion.json();
+        this.lectorRetos = Serializacion.lector(Reto.class);
+        this.lectorSesiones = Serializacion.lector(Sesion.class);
+    }
+
+    public MetricasProxy getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Maps the status code and body of a response to the value returned to the caller. It may throw
+     * IOException (JSON mapping) or RuntimeException (unexpected status code).
+     */
+    @FunctionalInterface
+    private interface Conversor<B, T> {
+        T convertir(int status, B body) throws IOException;
+    }
+
+    /**
+     * Same as Conversor but with access to the whole response, headers included.
+     */
+    @FunctionalInterface
+    private interface ConversorRespuesta<B, T> {
+        T convertir(HttpResponse<B> response) throws IOException;
+    }
+
+    /**
+     * Validators and parsed value of the last 200 answer to a GET, used to
+     * revalidate it with If-None-Match / If-Modified-Since, and the size of the
+     * body it was parsed from.
+     */
+    private record RespuestaValidada(String etag, String ultimaModificacion, Object valor, long bytes) {}
+
+    /**
+     * Sends the request asynchronously and converts the response. Connection and
+     * mapping errors are wrapped in a RuntimeException with the given message;
+     * RuntimeExceptions thrown by the converter are propagated unchanged. Streamed
+     * bodies are closed once the converter returns. 502, 503 and 504 answers fail
+     * with a RespuestaHttpException and never reach the converter.
+     */
+    private <B, T> CompletableFuture<T> enviar(HttpRequest request, HttpResponse.BodyHandler<B> handler,
+            Conversor<B, T> conversor, String mensajeError) {
+        return enviarRespuesta(request, handler, response -> {
+            try {
+                return conversor.convertir(response.statusCode(), response.body());
+            } finally {
+                cerrar(response.body());
+            }
+        }, mensajeError);
+    }
+
+    // Suma a las metricas del endpoint los bytes del cuerpo a medida que se reciben
+    private static <B> HttpResponse.BodyHandler<B> contandoBytes(HttpResponse.BodyHandler<B> handler,
+            MetricasOperacion endpoint) {
+        return info -> new ContadorBytes<>(handler.apply(info), endpoint);
+    }
+
+    private static class ContadorBytes<B> implements HttpResponse.BodySubscriber<B> {
+        private final HttpResponse.BodySubscriber<B> delegado;
+        private final MetricasOperacion endpoint;
+
+        ContadorBytes(HttpResponse.BodySubscriber<B> delegado, MetricasOperacion endpoint) {
+            this.delegado = delegado;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public CompletionStage<B> getBody() {
+            return delegado.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegado.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long bytes = 0;
+            for (ByteBuffer buffer : item) {
+                bytes += buffer.remaining();
+            }
+            endpoint.sumarBytes(bytes);
+            delegado.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegado.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegado.onComplete();
+        }
+    }
+
+    private static void cerrar(Object body) throws IOException {
+        if (body instanceof Closeable cerrable) {
+            cerrable.close();
+        }
+    }
+
+    private <B, T> CompletableFuture<T> enviarRespuesta(HttpRequest request, HttpResponse.BodyHandler<B> handler,
+            ConversorRespuesta<B, T> conversor, String mensajeError) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        MetricasOperacion endpoint = metricas.endpoint(request.method(), request.uri().getPath());
+        long inicio = endpoint.empezar();
+
+        // Los bytes se cuentan tal y como llegan de la red, antes de descomprimirlos
+        httpCliente.sendAsync(request, contandoBytes(DescompresorCuerpo.descomprimiendo(handler, endpoint), endpoint)).whenCompleteAsync((response, error) -> {
+            endpoint.registrarEstado(error != null ? MetricasOperacion.SIN_RESPUESTA : response.statusCode());
+            endpoint.terminar(inicio, false);
+
+            if (error != null) {
+                Throwable causa = (error instanceof CompletionException && error.getCause() != null)
+                    ? error.getCause() : error;
+                System.err.println(mensajeError + ": " + causa.getMessage());
+                resultado.completeExceptionally(new RuntimeException(mensajeError, causa));
+                return;
+            }
+
+            if (RespuestaHttpException.esTransitorio(response.statusCode())) {
+                // Servidor no disponible por ahora: el error lleva el estado y el Retry-After
+                try {
+                    cerrar(response.body());
+                } catch (IOException e) {
+                    // El cuerpo de la respuesta de error no se usa
+                }
+                resultado.completeExceptionally(new RespuestaHttpException(mensajeError, response.statusCode(),
+                    RespuestaHttpException.reintentarTras(response.headers().firstValue("Retry-After").orElse(null))));
+                return;
+            }
+
+            try {
+                resultado.complete(conversor.convertir(response));
+            } catch (IOException e) {
+                resultado.completeExceptionally(new RuntimeException(mensajeError, e));
+            } catch (RuntimeException e) {
+                resultado.completeExceptionally(e);
+            }
+        }, LECTURA);
+
+        return resultado;
+    }
+
+    /**
+     * Conditional GET: if a previous 200 answer for the same URL carried an ETag or
+     * Last-Modified header, the request is revalidated and a 304 answer is served
+     * from the value parsed last time without transferring the body again.
+     *
+     * As in RevalidacionInterceptor, the values kept are bounded by entries and by
+     * the bytes of their bodies, a body larger than MAX_BYTES_VALIDADOR is not kept
+     * and URLs with a token parameter are never revalidated.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> enviarGetCondicional(String url, Conversor<InputStream, T> conversor, String mensajeError) {
+        HttpRequest.Builder builder = peticion(url).GET();
+        if (llevaToken(URI.create(url))) {
+            return enviar(builder.build(), HttpResponse.BodyHandlers.ofInputStream(), conversor, mensajeError);
+        }
+
+        RespuestaValidada previa = validadores.get(url);
+        if (previa != null) {
+            if (previa.etag() != null) {
+                builder.header("If-None-Match", previa.etag());
+            }
+            if (previa.ultimaModificacion() != null) {
+                builder.header("If-Modified-Since", previa.ultimaModificacion());
+            }
+        }
+
+        return enviarRespuesta(builder.build(), HttpResponse.BodyHandlers.ofInputStream(), response -> {
+            try (BytesLeidos body = new BytesLeidos(response.body())) {
+                if (response.statusCode() == 304 && previa != null) {
+                    // Copia inmutable guardada con el 200: nadie puede cambiarla desde fuera
+                    return (T) previa.valor();
+                }
+
+                T valor = conversor.convertir(response.statusCode(), body);
+
+                if (response.statusCode() == 200) {
+                    String etag = response.headers().firstValue("ETag").orElse(null);
+                    String ultimaModificacion = response.headers().firstValue("Last-Modified").orElse(null);
+                    if (valor != null && (etag != null || ultimaModificacion != null)
+                            && body.bytes <= MAX_BYTES_VALIDADOR) {
+                        validadores.put(url, new RespuestaValidada(etag, ultimaModificacion, inmutable(valor),
+                            body.bytes));
+                    } else {
+                        validadores.remove(url);
+                    }
+                }
+                return valor;
+            }
+        }, mensajeError);
+    }
+
+    // Parametro token (o Token) en la consulta de la URL: respuestas de un usuario con una credencial en la clave
+    static boolean llevaToken(URI uri) {
+        String consulta = uri.getRawQuery();
+        if (consulta == null) {
+            return false;
+        }
+        for (String parametro : consulta.split("&")) {
+            int igual = parametro.indexOf('=');
+            String nombre = igual >= 0 ? parametro.substring(0, igual) : parametro;
+            if (nombre.equalsIgnoreCase("token")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Cuenta los bytes del cuerpo (ya descomprimido) que lee el conversor
+    private static class BytesLeidos extends FilterInputStream {
+        private long bytes;
+
+        BytesLeidos(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int longitud) throws IOException {
+            int leidos = super.read(buffer, offset, longitud);
+            if (leidos > 0) {
+                bytes += leidos;
+            }
+            return leidos;
+        }
+    }
+
+    // Lo que se guarda para servir los 304: una copia que no comparte la lista devuelta al llamante
+    private static Object inmutable(Object valor) {
+        if (valor instanceof List<?> lista) {
+            return Collections.unmodifiableList(new ArrayList<>(lista));
+        }
+        return valor;
+    }
+
+    /**
+     * Sends a GET whose 200 answer is a JSON array, and completes as soon as the
+     * headers arrive with a lazy Stream over its elements. The Stream owns the
+     * connection: the caller must close it (try-with-resources).
+     */
+    private <E> CompletableFuture<Stream<E>> enviarFlujo(HttpRequest request, ObjectReader lector,
+            IntFunction<Stream<E>> otroEstado, String mensajeError) {
+        return enviarRespuesta(request, HttpResponse.BodyHandlers.ofInputStream(), response -> {
+            if (response.statusCode() != 200) {
+                response.body().close();
+                return otroEstado.apply(response.statusCode());
+            }
+            return flujo(response.body(), lector);
+        }, mensajeError);
+    }
+
+    /**
+     * GET of one page of a JSON array. Whether the server paged the answer is told
+     * by the X-Next-Cursor header; if it sent the whole list the page is cut from
+     * it (see Paginas). Other status codes are mapped with otroEstado.
+     */
+    private <E> CompletableFuture<Pagina<E>> enviarPagina(String url, Paginacion paginacion, ObjectReader lector,
+            IntFunction<List<E>> otroEstado, String mensajeError) {
+        HttpRequest request = peticion(Paginas.url(url, paginacion)).GET().build();
+
+        return enviarRespuesta(request, HttpResponse.BodyHandlers.ofInputStream(), response -> {
+            try (InputStream body = response.body()) {
+                List<E> elementos = response.statusCode() == 200
+                    ? leerLista(body, lector) : otroEstado.apply(response.statusCode());
+                String cursor = response.headers().firstValue(Paginas.CABECERA_CURSOR).orElse(null);
+                return Paginas.construir(elementos, cursor, paginacion);
+            }
+        }, mensajeError);
+    }
+
+    /**
+     * Multi-get through a batch endpoint (GET url?ids=1,2,3, answered with a JSON
+     * array), in chunks of Lotes.MAX_IDS_POR_LOTE ids. If the server answers that it
+     * has no such endpoint (400, 404, 405 or 501) the ids are requested one by one
+     * with bounded parallelism, and the endpoint is not tried again.
+     */
+    private <E> CompletableFuture<Map<Long, E>> enviarLote(Collection<Long> ids, String url, ObjectReader lector,
+            Function<E, Long> idDe, Function<Long, CompletableFuture<E>> individual, AtomicBoolean soportado,
+            String mensajeError) {
+        List<Long> unicos = Lotes.distintos(ids);
+        if (unicos.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        if (!soportado.get()) {
+            return Lotes.individualesAsync(unicos, individual);
+        }
+
+        List<CompletableFuture<List<E>>> trozos = new ArrayList<>();
+        for (List<Long> trozo : Lotes.trocear(unicos)) {
+            HttpRequest request = peticion(url + "?" + Lotes.consulta(trozo)).GET().build();
+            trozos.add(enviar(request, HttpResponse.BodyHandlers.ofInputStream(), (status, body) -> switch (status) {
+                case 200 -> AsyncHttpServiceProxy.<E>leerLista(body, lector);
+                case 204 -> List.<E>of();
+                // Sin endpoint de lotes
+                case 400, 404, 405, 501 -> null;
+                default -> throw new RuntimeException(mensajeError + ". Código: " + status);
+            }, mensajeError));
+        }
+
+        return CompletableFuture.allOf(trozos.toArray(CompletableFuture[]::new)).thenCompose(v -> {
+            Map<Long, E> encontrados = new HashMap<>();
+            for (CompletableFuture<List<E>> trozo : trozos) {
+                List<E> elementos = trozo.join();
+                if (elementos == null) {
+                    soportado.set(false);
+                    System.out.println("El servidor no tiene endpoint de lotes en " + url + "; se piden uno a uno");
+                    return Lotes.individualesAsync(unicos, individual);
+                }
+                for (E elemento : elementos) {
+                    encontrados.put(idDe.apply(elemento), elemento);
+                }
+            }
+            return CompletableFuture.completedFuture(Lotes.ordenar(unicos, encontrados));
+        });
+    }
+
+    private static <E> Stream<E> flujo(InputStream body, ObjectReader lector) throws IOException {
+        MappingIterator<E> iterador;
+        try {
+            iterador = lector.readValues(body);
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterador, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    iterador.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private static <E> List<E> leerLista(InputStream body, ObjectReader lector) throws IOException {
+        List<E> lista = new ArrayList<>();
+        try (MappingIterator<E> iterador = lector.readValues(body)) {
+            while (iterador.hasNextValue()) {
+                lista.add(iterador.nextValue());
+            }
+        }
+        return lista;
+    }
+
+    // Consume y cierra el Stream; los errores de lectura se envuelven con el mensaje del metodo
+    private static <E> List<E> recoger(Stream<E> flujo, String mensajeError) {
+        try (flujo) {
+            List<E> lista = new ArrayList<>();
+            flujo.forEachOrdered(lista::add);
+            return lista;
+        } catch (RuntimeException e) {
+            throw new RuntimeException(mensajeError, e);
+        }
+    }
+
+    // POST con el cuerpo JSON, comprimido si esta activado y merece la pena
+    private HttpRequest.Builder post(String url, String json) {
+        HttpRequest.Builder builder = peticion(url);
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+        if (configuracion.comprimirPeticiones() && cuerpo.length >= configuracion.umbralCompresion()) {
+            cuerpo = Compresion.gzip(cuerpo, metricas.endpoint("POST", URI.create(url).getPath()));
+            builder.header("Content-Encoding", "gzip");
+        }
+        return builder.POST(HttpRequest.BodyPublishers.ofByteArray(cuerpo));
+    }
+
+    private HttpRequest.Builder peticion(String url) {
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(configuracion.timeoutPeticion())
+            .header("Content-Type", Serializacion.TIPO_JSON)
+            .header("Accept", configuracion.formato().aceptar())
+            .header("Accept-Encoding", Compresion.ACEPTADAS);
+    }
+
+    @Override
+    public CompletableFuture<String> login(Credendiales credenciales) {
+        String credentialsJson;
+        try {
+            credentialsJson = objectMapper.writeValueAsString(credenciales);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Error al serializar las credenciales", e));
+        }
+
+        System.out.println("Intentando conectar a: " + baseUrl + "/autorizacion/login");
+
+        HttpRequest request = peticion(baseUrl + "/autorizacion/login")
+            .POST(HttpRequest.BodyPublishers.ofString(credentialsJson))
+            .build();
+
+        return enviar(request, HttpResponse.BodyHandlers.ofString(), (status, body) -> {
+            System.out.println("Código de respuesta: " + status);
+
+            return switch (status) {
+                case 200 -> body;
+                case 401 -> throw new RuntimeException("Credenciales inválidas");
+                default -> throw new RuntimeException("Error inesperado en el servidor: " + status);
+            };
+        }, "Error de conexión al intentar iniciar sesión");
+    }
+
+    @Override
+    public CompletableFuture<Void> logout(String token) {
+        HttpRequest request = peticion(baseUrl + "/autorizacion/logout")
+            .POST(HttpRequest.BodyPublishers.ofString(token))
+            .build();
+
+        return enviar(request, HttpResponse.BodyHandlers.discarding(), (status, body) -> {
+            // Solo hay dos posibles respuestas según el controlador: 204 y 401
+            return switch (status) {
+                case 204 -> null; // Logout exitoso, no hacer nada
+                case 401 -> throw new RuntimeException("Token inválido");
+                default -> throw new RuntimeException("Error inesperado en el servidor: " + status);
+            };
+        }, "Error de conexión al intentar cerrar sesión");
+    }
+
+    @Override
+    public CompletableFuture<List<Reto>> getTodosRetos() {
+        return enviarGetCondicional(baseUrl + "/strava/retos", (status, body) -> {
+            if (status != 200) {
+                throw new RuntimeException("Error al obtener retos: " + status);
+            }
+
+            List<Reto> retos = leerLista(body, lectorRetos);
+
+            // Verificar cada reto
+            for (Reto reto : retos) {
+                if (reto.id() == null) {
+                    System.out.println("Advertencia: Reto con ID null encontrado: " + reto.nombre());
+                }
+            }
+
+            return retos;
+        }, "Error en la comunicación");
+    }
+
+    @Override
+    public CompletableFuture<Reto> getDetallesDeReto(Long idReto) {
+        return enviarGetCondicional(baseUrl + "/auctions/retos/" + idReto, (status, body) -> switch (status) {
+            case 200 -> lectorRetos.readValue(body);
+            case 404 -> throw new RuntimeException("Not Found: Reto no encontrado");
+            case 500 -> throw new RuntimeException("Error interno del servidor al buscar retos");
+            default -> throw new RuntimeException("No se pudieron recuperar retos con código de estado: " + status);
+        }, "\n" + "Error al obtener los detalles del reto");
+    }
+
+    @Override
+    public CompletableFuture<List<Reto>> getRetosXDeporte(String deporte) {
+        // Encode the category name to handle spaces and special characters
+        String encodedCategoryName = URLEncoder.encode(deporte, StandardCharsets.UTF_8);
+        return enviarGetCondicional(baseUrl + "/auctions/retos/" + encodedCategoryName, (status, body) -> switch (status) {
+            case 200 -> leerLista(body, lectorRetos);
+            case 204 -> throw new RuntimeException("Not Content: Este deporte no tiene retos");
+            case 404 -> throw new RuntimeException("Not Found: Reto no encontrado");
+            case 500 -> throw new RuntimeException("Error interno del servidor al buscar retos");
+            default -> throw new RuntimeException("No se pudieron recuperar retos con código de estado: " + status);
+        }, "Error al obtener los detalles del reto");
+    }
+
+    @Override
+    public CompletableFuture<List<Sesion>> getTodasSesiones(String token) {
+        return streamTodasSesiones(token).thenApplyAsync(sesiones -> {
+            List<Sesion> lista = recoger(sesiones, "Error al obtener las sesiones del usuario");
+            System.out.println("Se obtuvieron " + lista.size() + " sesiones exitosamente");
+            return lista;
+        }, LECTURA);
+    }
+
+    @Override
+    public CompletableFuture<Stream<Sesion>> streamTodasSesiones(String token) {
+        System.out.println("Intentando obtener todas las sesiones del usuario...");
+
+        HttpRequest request = peticion(baseUrl + "/strava/sesion/usuario?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8))
+            .GET()
+            .build();
+
+        return enviarFlujo(request, lectorSesiones, status -> {
+            throw switch (status) {
+                case 204 -> new RuntimeException("No se encontraron sesiones para este usuario");
+                case 401 -> new RuntimeException("Token no válido");
+                case 500 -> new RuntimeException("Error interno del servidor");
+                default -> new RuntimeException("Error inesperado al obtener las sesiones. Código: " + status);
+            };
+        }, "Error al obtener las sesiones del usuario");
+    }
+
+    @Override
+    public CompletableFuture<Sesion> getDetalleSesion(Long idSesion) {
+        HttpRequest request = peticion(baseUrl + "/strava/sesion/" + idSesion).GET().build();
+
+        return enviar(request, HttpResponse.BodyHandlers.ofInputStream(), (status, body) -> switch (status) {
+            case 200 -> lectorSesiones.readValue(body);
+            case 404 -> throw new RuntimeException("Not Found: Sesion no encontrada");
+            case 500 -> throw new RuntimeException("Error interno del servidor al buscar la sesion");
+            default -> throw new RuntimeException("No se pudieron recuperar los detalles del reto con código de estado: " + status);
+        }, "\n" + "Error al obtener los detalles del reto");
+    }
+
+    @Override
+    public CompletableFuture<List<Sesion>> getSesionesPorReto(Long retoId) {
+        return streamSesionesPorReto(retoId).thenApplyAsync(sesiones -> {
+            List<Sesion> lista = recoger(sesiones, "Error al obtener las sesiones del reto");
+            System.out.println("Sesiones encontradas: " + lista.size());
+            return lista;
+        }, LECTURA);
+    }
+
+    @Override
+    public CompletableFuture<Stream<Sesion>> streamSesionesPorReto(Long retoId) {
+        System.out.println("Iniciando búsqueda de sesiones para el reto ID: " + retoId);
+
+        // Construir la URL directamente con el ID
+        HttpRequest request = peticion(baseUrl + "/strava/retos/" + retoId + "/sesiones").GET().build();
+
+        return enviarFlujo(request, lectorSesiones, status -> {
+            throw switch (status) {
+                case 404 -> new RuntimeException("Not Found: Reto no encontrado");
+                case 500 -> new RuntimeException("Error interno del servidor al buscar sesiones");
+                default -> new RuntimeException("No se pudieron recuperar las sesiones. Código: " + status);
+            };
+        }, "Error al obtener las sesiones del reto");
+    }
+
+    @Override
+    public CompletableFuture<List<Reto>> getMisRetos(String token) {
+        System.out.println("Intentando obtener retos aceptados del usuario...");
+
+        // Construir la URL con el parámetro de token
+        String url = baseUrl + "/strava/reto/retosAceptados?Token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+        HttpRequest request = peticion(url).GET().build();
+
+        return enviar(request, HttpResponse.BodyHandlers.ofInputStream(), (status, body) -> {
+            System.out.println("Código de estado de la respuesta: " + status);
+
+            return switch (status) {
+                case 200 -> {
+                    List<Reto> retos = leerLista(body, lectorRetos);
+                    System.out.println("Se analizaron con éxito " + retos.size() + " retos");
+                    yield retos;
+                }
+                case 204 -> new ArrayList<>();  // Retornar lista vacía en lugar de lanzar excepción
+                case 401 -> throw new RuntimeException("Token no válido");
+                default -> throw new RuntimeException("Error inesperado al obtener los retos. Código: " + status);
+            };
+        }, "Error de conexión al obtener los retos");
+    }
+
+    @Override
+    public CompletableFuture<Pagina<Reto>> getMisRetos(String token, Paginacion paginacion) {
+        String url = baseUrl + "/strava/reto/retosAceptados?Token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+        return enviarPagina(url, paginacion, lectorRetos, status -> switch (status) {
+            case 204 -> new ArrayList<>();
+            case 401 -> throw new RuntimeException("Token no válido");
+            default -> throw new RuntimeException("Error inesperado al obtener los retos. Código: " + status);
+        }, "Error de conexión al obtener los retos");
+    }
+
+    @Override
+    public CompletableFuture<Pagina<Reto>> getTodosRetos(Paginacion paginacion) {
+        return enviarPagina(baseUrl + "/strava/retos", paginacion, lectorRetos, status -> {
+            throw new RuntimeException("Error al obtener retos: " + status);
+        }, "Error en la comunicación");
+    }
+
+    @Override
+    public CompletableFuture<Pagina<Sesion>> getSesionesPorReto(Long retoId, Paginacion paginacion) {
+        return enviarPagina(baseUrl + "/strava/retos/" + retoId + "/sesiones", paginacion, lectorSesiones, status -> {
+            throw switch (status) {
+                case 404 -> new RuntimeException("Not Found: Reto no encontrado");
+                case 500 -> new RuntimeException("Error interno del servidor al buscar sesiones");
+                default -> new RuntimeException("No se pudieron recuperar las sesiones. Código: " + status);
+            };
+        }, "Error al obtener las sesiones del reto");
+    }
+
+    @Override
+    public CompletableFuture<Pagina<Sesion>> getTodasSesiones(String token, Paginacion paginacion) {
+        String url = baseUrl + "/strava/sesion/usuario?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+        return enviarPagina(url, paginacion, lectorSesiones, status -> switch (status) {
+            // Sin sesiones: una pagina vacia, no un error, para que el recorrido termine sin mas
+            case 204 -> new ArrayList<>();
+            case 401 -> throw new RuntimeException("Token no válido");
+            case 500 -> throw new RuntimeException("Error interno del servidor");
+            default -> throw new RuntimeException("Error inesperado al obtener las sesiones. Código: " + status);
+        }, "Error al obtener las sesiones del usuario");
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, Sesion>> getDetallesSesiones(Collection<Long> idsSesiones) {
+        return enviarLote(idsSesiones, baseUrl + "/strava/sesiones/lote", lectorSesiones, Sesion::id,
+            this::getDetalleSesion, loteSesiones, "Error al obtener los detalles de las sesiones");
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, Reto>> getDetallesRetos(Collection<Long> idsRetos) {
+        return enviarLote(idsRetos, baseUrl + "/strava/retos/lote", lectorRetos, Reto::id,
+            this::getDetallesDeReto, loteRetos, "Error al obtener los detalles de los retos");
+    }
+
+    @Override
+    public CompletableFuture<Void> guardarSesion(Long retoId, Sesion sesion, String token) {
+        return guardarSesion(retoId, sesion, token, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+        String sesionJson;
+        try {
+            sesionJson = objectMapper.writeValueAsString(sesion);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Error al serializar la sesión", e));
+        }
+
+        // Mismo endpoint que usa RestTemplateServiceProxy
+        String url = baseUrl + "/strava/retos/" + retoId + "/sesiones";
+        if (token != null) {
+            url += "?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+        }
+
+        HttpRequest.Builder builder = post(url, sesionJson);
+        if (claveIdempotencia != null) {
+            builder.header(CABECERA_IDEMPOTENCIA, claveIdempotencia);
+        }
+        return enviar(builder.build(), HttpResponse.BodyHandlers.discarding(), (status, body) -> {
+            if (status == 401) {
+                throw new TokenNoValidoException("Error al guardar la sesión: token no válido");
+            }
+            if (status / 100 != 2) {
+                throw new RuntimeException("Error al guardar la sesión: " + status);
+            }
+            return null;
+        }, "Error al guardar la sesión");
+    }
+}
@@ -0,0 +1,155 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * BatchingServiceProxy is a decorator that turns concurrent single-id detail
+ * requests (getDetalleSesion, getDetallesDeReto) into calls to the multi-get
+ * operations of the wrapped proxy, through an AgrupadorLotes per kind of detail.
+ * Callers still block as before; they only wait up to the batching window longer.
+ * An id missing from the batch answer is reported as not found.
+ *
+ * The rest of the operations are delegated unchanged.
+ */
+public class BatchingServiceProxy implements IAuctionsServiceProxy {
+	public static final Duration VENTANA_POR_DEFECTO = Duration.ofMillis(2);
+
+	private final IAuctionsServiceProxy delegado;
+	private final AgrupadorLotes<Sesion> sesiones;
+	private final AgrupadorLotes<Reto> retos;
+
+	public BatchingServiceProxy(IAuctionsServiceProxy delegado) {
+		this(delegado, VENTANA_POR_DEFECTO, Lotes.MAX_IDS_POR_LOTE);
+	}
+
+	public BatchingServiceProxy(IAuctionsServiceProxy delegado, Duration ventana, int maxLote) {
+		this.delegado = delegado;
+		// Las cargas de lote son bloqueantes: un hilo virtual por lote
+		this.sesiones = new AgrupadorLotes<>(delegado::getDetallesSesiones, ventana, maxLote,
+			Executors.newVirtualThreadPerTaskExecutor());
+		this.retos = new AgrupadorLotes<>(delegado::getDetallesRetos, ventana, maxLote,
+			Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	private static <T> T esperar(CompletableFuture<T> futuro, String noEncontrado) {
+		try {
+			T valor = futuro.get();
+			if (valor == null) {
+				throw new RuntimeException(noEncontrado);
+			}
+			return valor;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(causa.getMessage(), causa);
+		}
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		return delegado.login(credenciales);
+	}
+
+	@Override
+	public void logout(String token) {
+		delegado.logout(token);
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return delegado.getMisRetos(token);
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return delegado.getTodosRetos();
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return delegado.getRetosXDeporte(Deporte);
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return esperar(retos.pedir(IdReto), "Not Found: Reto no encontrado");
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return delegado.getSesionesPorReto(Id);
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return delegado.getTodasSesiones(token);
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return esperar(sesiones.pedir(idSesion), "Not Found: Sesion no encontrada");
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		delegado.guardarSesion(retoId, sesion, token);
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		delegado.guardarSesion(retoId, sesion, token, claveIdempotencia);
+	}
+
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return delegado.getMisRetos(token, paginacion);
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return delegado.getTodosRetos(paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return delegado.getSesionesPorReto(Id, paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return delegado.getTodasSesiones(token, paginacion);
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return delegado.getDetallesSesiones(idsSesiones);
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return delegado.getDetallesRetos(idsRetos);
+	}
+
+	@Override
+	public String toString() {
+		return "BatchingServiceProxy[sesiones=" + sesiones.getPeticiones() + "/" + sesiones.getLotes()
+			+ " lotes, retos=" + retos.getPeticiones() + "/" + retos.getLotes() + " lotes]";
+	}
+}
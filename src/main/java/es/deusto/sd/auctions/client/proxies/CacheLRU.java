@@ -0,0 +1,145 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe bounded map in access order: once it holds more than the configured
+ * number of entries the least recently used one is evicted. Optionally the values
+ * also have a weight (e.g. their size in bytes), and the least recently used
+ * entries are evicted while the total weight is above its maximum.
+ *
+ * It is guarded by a ReentrantLock rather than synchronized so that a virtual
+ * thread waiting for it is not pinned to its carrier thread. No I/O is ever done
+ * while holding the lock.
+ */
+class CacheLRU<K, V> {
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<K, V> entradas;
+	private final long maxPeso;
+	private final ToLongFunction<V> peso;
+	private long pesoTotal;
+	private long expulsiones;
+
+	CacheLRU(int maxEntradas) {
+		this(maxEntradas, Long.MAX_VALUE, valor -> 0);
+	}
+
+	CacheLRU(int maxEntradas, long maxPeso, ToLongFunction<V> peso) {
+		if (maxEntradas <= 0 || maxPeso <= 0) {
+			throw new IllegalArgumentException("El tamaño máximo de la caché debe ser positivo");
+		}
+		this.maxPeso = maxPeso;
+		this.peso = peso;
+		this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if (size() > maxEntradas) {
+					expulsiones++;
+					pesoTotal -= peso.applyAsLong(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	V get(K clave) {
+		lock.lock();
+		try {
+			return entradas.get(clave);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void put(K clave, V valor) {
+		lock.lock();
+		try {
+			pesoTotal += peso.applyAsLong(valor);
+			V anterior = entradas.put(clave, valor);
+			if (anterior != null) {
+				pesoTotal -= peso.applyAsLong(anterior);
+			}
+			// La entrada recien puesta es la ultima: se expulsan las anteriores, nunca ella
+			Iterator<V> antiguas = entradas.values().iterator();
+			while (pesoTotal > maxPeso && entradas.size() > 1) {
+				pesoTotal -= peso.applyAsLong(antiguas.next());
+				antiguas.remove();
+				expulsiones++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void remove(K clave) {
+		lock.lock();
+		try {
+			V anterior = entradas.remove(clave);
+			if (anterior != null) {
+				pesoTotal -= peso.applyAsLong(anterior);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void removeIf(Predicate<K> condicion) {
+		lock.lock();
+		try {
+			entradas.entrySet().removeIf(entrada -> {
+				if (condicion.test(entrada.getKey())) {
+					pesoTotal -= peso.applyAsLong(entrada.getValue());
+					return true;
+				}
+				return false;
+			});
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void clear() {
+		lock.lock();
+		try {
+			entradas.clear();
+			pesoTotal = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getPesoTotal() {
+		lock.lock();
+		try {
+			return pesoTotal;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int size() {
+		lock.lock();
+		try {
+			return entradas.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getExpulsiones() {
+		lock.lock();
+		try {
+			return expulsiones;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
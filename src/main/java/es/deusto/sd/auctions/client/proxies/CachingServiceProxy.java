@@ -0,0 +1,249 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * CachingServiceProxy is a decorator for any IAuctionsServiceProxy that keeps the
+ * challenge catalogue (getTodosRetos, getDetallesDeReto and getRetosXDeporte) in a
+ * bounded LRU cache with a separate time-to-live per method. The rest of the
+ * operations are delegated unchanged.
+ *
+ * When an entry expires the call goes to the wrapped proxy again; both
+ * HttpServiceProxy and the RestTemplate transport send those GETs as conditional
+ * requests, so an unchanged catalogue costs a 304 answer instead of the full list.
+ * guardarSesion invalidates the entries of the reto it writes to.
+ */
+public class CachingServiceProxy implements IAuctionsServiceProxy {
+	private static final String TODOS_RETOS = "getTodosRetos";
+	private static final String DETALLE_RETO = "getDetallesDeReto:";
+	private static final String RETOS_DEPORTE = "getRetosXDeporte:";
+
+	/**
+	 * Cache settings: maximum number of entries and time-to-live of each cached method.
+	 */
+	public record Configuracion(int maxEntradas, Duration ttlTodosRetos, Duration ttlDetalleReto,
+			Duration ttlRetosXDeporte) {
+
+		public static Configuracion porDefecto() {
+			return new Configuracion(512, Duration.ofSeconds(30), Duration.ofMinutes(2), Duration.ofMinutes(1));
+		}
+	}
+
+	private record Entrada(Object valor, long caducaNanos) {}
+
+	private final IAuctionsServiceProxy delegado;
+	private final Configuracion configuracion;
+	private final CacheLRU<String, Entrada> cache;
+
+	private final AtomicLong aciertos = new AtomicLong();
+	private final AtomicLong fallos = new AtomicLong();
+
+	public CachingServiceProxy(IAuctionsServiceProxy delegado) {
+		this(delegado, Configuracion.porDefecto());
+	}
+
+	public CachingServiceProxy(IAuctionsServiceProxy delegado, Configuracion configuracion) {
+		this.delegado = delegado;
+		this.configuracion = configuracion;
+		this.cache = new CacheLRU<>(configuracion.maxEntradas());
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T obtener(String clave, Duration ttl, Supplier<T> cargador) {
+		long ahora = System.nanoTime();
+
+		Entrada entrada = cache.get(clave);
+		if (entrada != null && entrada.caducaNanos() - ahora > 0) {
+			aciertos.incrementAndGet();
+			return (T) entrada.valor();
+		}
+
+		fallos.incrementAndGet();
+		T valor = cargador.get();
+
+		// Los resultados nulos (metodos sin implementar en el delegado) no se guardan
+		if (valor != null) {
+			cache.put(clave, new Entrada(valor, System.nanoTime() + ttl.toNanos()));
+		}
+		return valor;
+	}
+
+	private static List<Reto> copiaInmutable(List<Reto> retos) {
+		return retos == null ? null : Collections.unmodifiableList(new ArrayList<>(retos));
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		return delegado.login(credenciales);
+	}
+
+	@Override
+	public void logout(String token) {
+		delegado.logout(token);
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return delegado.getMisRetos(token);
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return obtener(TODOS_RETOS, configuracion.ttlTodosRetos(),
+			() -> copiaInmutable(delegado.getTodosRetos()));
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return obtener(RETOS_DEPORTE + Deporte, configuracion.ttlRetosXDeporte(),
+			() -> copiaInmutable(delegado.getRetosXDeporte(Deporte)));
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return obtener(DETALLE_RETO + IdReto, configuracion.ttlDetalleReto(),
+			() -> delegado.getDetallesDeReto(IdReto));
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return delegado.getSesionesPorReto(Id);
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return delegado.getTodasSesiones(token);
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return delegado.getDetalleSesion(idSesion);
+	}
+
+	/**
+	 * Serves the retos already cached by getDetallesDeReto and asks the wrapped
+	 * proxy for the rest in a single call, caching them too.
+	 */
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		List<Long> ids = Lotes.distintos(idsRetos);
+		Map<Long, Reto> encontrados = new HashMap<>();
+		List<Long> pendientes = new ArrayList<>();
+
+		long ahora = System.nanoTime();
+		for (Long id : ids) {
+			Entrada entrada = cache.get(DETALLE_RETO + id);
+			if (entrada != null && entrada.caducaNanos() - ahora > 0) {
+				aciertos.incrementAndGet();
+				encontrados.put(id, (Reto) entrada.valor());
+			} else {
+				fallos.incrementAndGet();
+				pendientes.add(id);
+			}
+		}
+
+		if (!pendientes.isEmpty()) {
+			Map<Long, Reto> pedidos = delegado.getDetallesRetos(pendientes);
+			long caduca = System.nanoTime() + configuracion.ttlDetalleReto().toNanos();
+			pedidos.forEach((id, reto) -> {
+				cache.put(DETALLE_RETO + id, new Entrada(reto, caduca));
+				encontrados.put(id, reto);
+			});
+		}
+		return Lotes.ordenar(ids, encontrados);
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return delegado.getDetallesSesiones(idsSesiones);
+	}
+
+	// Las paginas no se guardan en la cache: cada una es una peticion pequeña y distinta
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return delegado.getMisRetos(token, paginacion);
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return delegado.getTodosRetos(paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return delegado.getSesionesPorReto(Id, paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return delegado.getTodasSesiones(token, paginacion);
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		try {
+			delegado.guardarSesion(retoId, sesion, token);
+		} finally {
+			invalidarReto(retoId);
+		}
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		try {
+			delegado.guardarSesion(retoId, sesion, token, claveIdempotencia);
+		} finally {
+			invalidarReto(retoId);
+		}
+	}
+
+	/**
+	 * Drops every cached entry that may include the given reto. The sport of the
+	 * reto is not known here, so all getRetosXDeporte entries are dropped as well.
+	 */
+	public void invalidarReto(Long retoId) {
+		cache.remove(TODOS_RETOS);
+		cache.remove(DETALLE_RETO + retoId);
+		cache.removeIf(clave -> clave.startsWith(RETOS_DEPORTE));
+	}
+
+	public void invalidarTodo() {
+		cache.clear();
+	}
+
+	public long getAciertos() {
+		return aciertos.get();
+	}
+
+	public long getFallos() {
+		return fallos.get();
+	}
+
+	public long getExpulsiones() {
+		return cache.getExpulsiones();
+	}
+
+	public int getTamanio() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingServiceProxy[aciertos=" + getAciertos() + ", fallos=" + getFallos()
+			+ ", expulsiones=" + getExpulsiones() + ", entradas=" + getTamanio() + "]";
+	}
+}
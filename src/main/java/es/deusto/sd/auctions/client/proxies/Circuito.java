@@ -0,0 +1,146 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuito is a circuit breaker. After umbralFallos consecutive transient
+ * failures it opens and rejects every call for tiempoAbierto; then it lets a
+ * single trial call through (half-open) and closes again if it succeeds, or
+ * reopens if it fails.
+ */
+public class Circuito {
+	public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+	/**
+	 * Thrown by permitir when the call is rejected without reaching the server.
+	 */
+	public static class AbiertoException extends RuntimeException {
+		public AbiertoException(String mensaje) {
+			super(mensaje);
+		}
+	}
+
+	private final String nombre;
+	private final int umbralFallos;
+	private final long tiempoAbiertoNanos;
+
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	private Estado estado = Estado.CERRADO;
+	private int fallosSeguidos;
+	private long abiertoHastaNanos;
+	private boolean pruebaEnCurso;
+
+	private final AtomicLong aperturas = new AtomicLong();
+	private final AtomicLong cierres = new AtomicLong();
+	private final AtomicLong rechazadas = new AtomicLong();
+
+	public Circuito(String nombre, int umbralFallos, Duration tiempoAbierto) {
+		this.nombre = nombre;
+		this.umbralFallos = umbralFallos;
+		this.tiempoAbiertoNanos = tiempoAbierto.toNanos();
+	}
+
+	/**
+	 * Throws AbiertoException if the circuit does not let the call through.
+	 */
+	public void permitir() {
+		String transicion = null;
+		cerrojo.lock();
+		try {
+			if (estado == Estado.ABIERTO && System.nanoTime() - abiertoHastaNanos >= 0) {
+				transicion = cambiar(Estado.SEMIABIERTO);
+			}
+			if (estado == Estado.CERRADO) {
+				return;
+			}
+			if (estado == Estado.SEMIABIERTO && !pruebaEnCurso) {
+				pruebaEnCurso = true;
+				return;
+			}
+		} finally {
+			cerrojo.unlock();
+			informar(transicion);
+		}
+		rechazadas.incrementAndGet();
+		throw new AbiertoException("Servicio no disponible: circuito abierto para " + nombre);
+	}
+
+	/**
+	 * The call got an answer from the server (even an error answer).
+	 */
+	public void exito() {
+		String transicion = null;
+		cerrojo.lock();
+		try {
+			fallosSeguidos = 0;
+			pruebaEnCurso = false;
+			if (estado != Estado.CERRADO) {
+				transicion = cambiar(Estado.CERRADO);
+			}
+		} finally {
+			cerrojo.unlock();
+			informar(transicion);
+		}
+	}
+
+	/**
+	 * The call failed in a way that points at the server being unhealthy.
+	 */
+	public void fallo() {
+		String transicion = null;
+		cerrojo.lock();
+		try {
+			pruebaEnCurso = false;
+			fallosSeguidos++;
+			if (estado == Estado.SEMIABIERTO || (estado == Estado.CERRADO && fallosSeguidos >= umbralFallos)) {
+				abiertoHastaNanos = System.nanoTime() + tiempoAbiertoNanos;
+				transicion = cambiar(Estado.ABIERTO);
+			}
+		} finally {
+			cerrojo.unlock();
+			informar(transicion);
+		}
+	}
+
+	// Se llama con el cerrojo cogido; devuelve la transicion para informar de ella ya sin el
+	private String cambiar(Estado nuevo) {
+		String transicion = "Circuito " + nombre + ": " + estado + " -> " + nuevo;
+		estado = nuevo;
+		if (nuevo == Estado.ABIERTO) {
+			aperturas.incrementAndGet();
+		} else if (nuevo == Estado.CERRADO) {
+			cierres.incrementAndGet();
+		}
+		return transicion;
+	}
+
+	// La escritura en consola puede bloquear: nunca con el cerrojo cogido
+	private static void informar(String transicion) {
+		if (transicion != null) {
+			System.out.println(transicion);
+		}
+	}
+
+	public Estado getEstado() {
+		cerrojo.lock();
+		try {
+			return estado;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	public long getAperturas() {
+		return aperturas.get();
+	}
+
+	public long getCierres() {
+		return cierres.get();
+	}
+
+	public long getRechazadas() {
+		return rechazadas.get();
+	}
+}
@@ -0,0 +1,203 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * CoalescingServiceProxy is a decorator that merges identical concurrent reads
+ * ("single flight"). The first caller asking for a resource performs the call on
+ * the wrapped proxy; every caller that asks for the same resource while that call
+ * is in flight waits for it and receives the same result, or the same exception.
+ * Once the call finishes the key is released, so nothing is served stale: the
+ * next request after that goes to the server again.
+ *
+ * If the caller performing the call is interrupted (e.g. a page that gave up
+ * waiting cancels it), the callers waiting for it are not failed with that
+ * interruption: they start the call again, one of them in place of the first.
+ *
+ * Writes, login and logout are never merged.
+ */
+public class CoalescingServiceProxy implements IAuctionsServiceProxy {
+	private final IAuctionsServiceProxy delegado;
+	private final ConcurrentHashMap<String, CompletableFuture<Object>> enVuelo = new ConcurrentHashMap<>();
+
+	private final AtomicLong llamadas = new AtomicLong();
+	private final AtomicLong agrupadas = new AtomicLong();
+
+	public CoalescingServiceProxy(IAuctionsServiceProxy delegado) {
+		this.delegado = delegado;
+	}
+
+	/**
+	 * Completes the shared call when the caller that performed it was interrupted:
+	 * the error is that caller's, not an answer for the others.
+	 */
+	private static class Abandonada extends RuntimeException {
+		Abandonada(Throwable causa) {
+			super(causa);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T agrupar(String clave, Supplier<T> llamada) {
+		while (true) {
+			CompletableFuture<Object> nuevo = new CompletableFuture<>();
+			CompletableFuture<Object> existente = enVuelo.putIfAbsent(clave, nuevo);
+
+			if (existente != null) {
+				agrupadas.incrementAndGet();
+				try {
+					return (T) esperar(existente);
+				} catch (Abandonada e) {
+					// Quien hacia la llamada la ha dejado: se vuelve a pedir
+					continue;
+				}
+			}
+
+			// Este hilo es el que hace la llamada real para todos
+			llamadas.incrementAndGet();
+			try {
+				T resultado = llamada.get();
+				enVuelo.remove(clave, nuevo);
+				nuevo.complete(resultado);
+				return resultado;
+			} catch (RuntimeException | Error e) {
+				enVuelo.remove(clave, nuevo);
+				nuevo.completeExceptionally(Thread.currentThread().isInterrupted() ? new Abandonada(e) : e);
+				throw e;
+			}
+		}
+	}
+
+	private static Object esperar(CompletableFuture<Object> futuro) {
+		try {
+			return futuro.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (causa instanceof Error error) {
+				throw error;
+			}
+			throw new RuntimeException(causa.getMessage(), causa);
+		}
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		return delegado.login(credenciales);
+	}
+
+	@Override
+	public void logout(String token) {
+		delegado.logout(token);
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return agrupar("getMisRetos:" + token, () -> delegado.getMisRetos(token));
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return agrupar("getTodosRetos", delegado::getTodosRetos);
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return agrupar("getRetosXDeporte:" + Deporte, () -> delegado.getRetosXDeporte(Deporte));
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return agrupar("getDetallesDeReto:" + IdReto, () -> delegado.getDetallesDeReto(IdReto));
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return agrupar("getSesionesPorReto:" + Id, () -> delegado.getSesionesPorReto(Id));
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return agrupar("getTodasSesiones:" + token, () -> delegado.getTodasSesiones(token));
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return agrupar("getDetalleSesion:" + idSesion, () -> delegado.getDetalleSesion(idSesion));
+	}
+
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return agrupar("getMisRetos:" + token + ":" + paginacion, () -> delegado.getMisRetos(token, paginacion));
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return agrupar("getTodosRetos:" + paginacion, () -> delegado.getTodosRetos(paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return agrupar("getSesionesPorReto:" + Id + ":" + paginacion, () -> delegado.getSesionesPorReto(Id, paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return agrupar("getTodasSesiones:" + token + ":" + paginacion, () -> delegado.getTodasSesiones(token, paginacion));
+	}
+
+	// Los lotes rara vez coinciden entre llamadas: se delegan sin agrupar
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return delegado.getDetallesSesiones(idsSesiones);
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return delegado.getDetallesRetos(idsRetos);
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		delegado.guardarSesion(retoId, sesion, token);
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		delegado.guardarSesion(retoId, sesion, token, claveIdempotencia);
+	}
+
+	// Llamadas que llegaron al proxy envuelto
+	public long getLlamadas() {
+		return llamadas.get();
+	}
+
+	// Llamadas que se resolvieron esperando a otra identica en curso
+	public long getAgrupadas() {
+		return agrupadas.get();
+	}
+
+	@Override
+	public String toString() {
+		return "CoalescingServiceProxy[llamadas=" + getLlamadas() + ", agrupadas=" + getAgrupadas()
+			+ ", enVuelo=" + enVuelo.size() + "]";
+	}
+}
@@ -0,0 +1,149 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helpers shared by the proxies to negotiate gzip/deflate compression of the
+ * HTTP bodies: the Accept-Encoding value sent with every request, gzip of the
+ * request bodies and the blocking decompression used by CompresionInterceptor.
+ * The time spent compressing and decompressing is measured as CPU time of the
+ * current thread when the JVM supports it.
+ */
+final class Compresion {
+	static final String ACEPTADAS = "gzip, deflate";
+
+	private static final ThreadMXBean HILOS = ManagementFactory.getThreadMXBean();
+	private static final boolean TIEMPO_CPU = HILOS.isCurrentThreadCpuTimeSupported();
+
+	private Compresion() {
+	}
+
+	enum Formato { GZIP, DEFLATE }
+
+	/**
+	 * Format of a Content-Encoding header value, or null if the body is not
+	 * compressed (or compressed with something this client never asks for).
+	 */
+	static Formato formato(String contentEncoding) {
+		if (contentEncoding == null) {
+			return null;
+		}
+		return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+			case "gzip", "x-gzip" -> Formato.GZIP;
+			case "deflate" -> Formato.DEFLATE;
+			default -> null;
+		};
+	}
+
+	// Tiempo de CPU del hilo actual en nanosegundos (o tiempo real si la JVM no lo mide)
+	static long ahora() {
+		return TIEMPO_CPU ? HILOS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	// Un cuerpo deflate puede llegar con envoltorio zlib (lo correcto) o en crudo, segun el servidor
+	static boolean esZlib(int primero, int segundo) {
+		return (primero & 0x0f) == 8 && (((primero & 0xff) << 8) | (segundo & 0xff)) % 31 == 0;
+	}
+
+	static byte[] gzip(byte[] datos, MetricasOperacion endpoint) {
+		long inicio = ahora();
+		ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 2 + 32);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+			gzip.write(datos);
+		} catch (IOException e) {
+			// En memoria no puede fallar
+			throw new IllegalStateException(e);
+		}
+		byte[] comprimidos = salida.toByteArray();
+		endpoint.sumarCompresion(datos.length, comprimidos.length, ahora() - inicio);
+		return comprimidos;
+	}
+
+	/**
+	 * Stream that decompresses the given body as it is read, recording the bytes
+	 * before and after decompression and the CPU time of each read.
+	 */
+	static InputStream descomprimir(InputStream cuerpo, Formato formato, MetricasOperacion endpoint) throws IOException {
+		Contador comprimido = new Contador(cuerpo);
+		InputStream descomprimido;
+		if (formato == Formato.GZIP) {
+			descomprimido = new GZIPInputStream(comprimido, 8 * 1024);
+		} else {
+			PushbackInputStream entrada = new PushbackInputStream(comprimido, 2);
+			int primero = entrada.read();
+			int segundo = entrada.read();
+			if (segundo >= 0) {
+				entrada.unread(segundo);
+			}
+			if (primero >= 0) {
+				entrada.unread(primero);
+			}
+			descomprimido = new InflaterInputStream(entrada, new Inflater(!esZlib(primero, segundo)), 8 * 1024);
+		}
+		return new Medido(descomprimido, comprimido, endpoint);
+	}
+
+	// Cuenta los bytes comprimidos que se leen de la red
+	private static class Contador extends FilterInputStream {
+		private long bytes;
+
+		Contador(InputStream entrada) {
+			super(entrada);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int longitud) throws IOException {
+			int leidos = super.read(buffer, offset, longitud);
+			if (leidos > 0) {
+				bytes += leidos;
+			}
+			return leidos;
+		}
+	}
+
+	private static class Medido extends FilterInputStream {
+		private final Contador comprimido;
+		private final MetricasOperacion endpoint;
+
+		Medido(InputStream descomprimido, Contador comprimido, MetricasOperacion endpoint) {
+			super(descomprimido);
+			this.comprimido = comprimido;
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] uno = new byte[1];
+			return read(uno, 0, 1) < 0 ? -1 : uno[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int longitud) throws IOException {
+			long antes = comprimido.bytes;
+			long inicio = ahora();
+			int leidos = super.read(buffer, offset, longitud);
+			endpoint.sumarDescompresion(comprimido.bytes - antes, Math.max(leidos, 0), ahora() - inicio);
+			return leidos;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * CompresionInterceptor negotiates gzip/deflate compression for a RestTemplate:
+ * it sends Accept-Encoding with every request and inflates compressed answers
+ * while they are read, and it can gzip the request bodies above a size threshold.
+ * The bytes before and after compression and the CPU time spent are added to the
+ * endpoint series of MetricasProxy.
+ *
+ * It must run before MetricasInterceptor, which then counts the compressed bytes
+ * that go over the wire, and the transport must not decompress on its own.
+ */
+public class CompresionInterceptor implements ClientHttpRequestInterceptor {
+	private final MetricasProxy metricas;
+	private final boolean comprimirPeticiones;
+	private final int umbralPeticiones;
+
+	public CompresionInterceptor(MetricasProxy metricas, boolean comprimirPeticiones, int umbralPeticiones) {
+		this.metricas = metricas;
+		this.comprimirPeticiones = comprimirPeticiones;
+		this.umbralPeticiones = umbralPeticiones;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		MetricasOperacion endpoint = metricas.endpoint(request.getMethod().name(), request.getURI().getPath());
+		HttpHeaders headers = request.getHeaders();
+
+		if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+			headers.set(HttpHeaders.ACCEPT_ENCODING, Compresion.ACEPTADAS);
+		}
+		if (comprimirPeticiones && body.length >= umbralPeticiones && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			body = Compresion.gzip(body, endpoint);
+			headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+			headers.setContentLength(body.length);
+		}
+
+		ClientHttpResponse response = execution.execute(request, body);
+		Compresion.Formato formato = Compresion.formato(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		return formato == null ? response : new RespuestaDescomprimida(response, formato, endpoint);
+	}
+
+	/**
+	 * Response whose body is inflated as it is read, and whose headers no longer
+	 * say it is compressed.
+	 */
+	private static class RespuestaDescomprimida implements ClientHttpResponse {
+		private final ClientHttpResponse delegado;
+		private final Compresion.Formato formato;
+		private final MetricasOperacion endpoint;
+		private final HttpHeaders headers;
+		private InputStream body;
+
+		RespuestaDescomprimida(ClientHttpResponse delegado, Compresion.Formato formato, MetricasOperacion endpoint) {
+			this.delegado = delegado;
+			this.formato = formato;
+			this.endpoint = endpoint;
+			this.headers = new HttpHeaders();
+			this.headers.putAll(delegado.getHeaders());
+			this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+			this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return delegado.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegado.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				InputStream original = delegado.getBody();
+				// Un 204 o 304 no trae cuerpo aunque diga que va comprimido
+				body = esSinCuerpo() ? original : Compresion.descomprimir(original, formato, endpoint);
+			}
+			return body;
+		}
+
+		private boolean esSinCuerpo() throws IOException {
+			int estado = delegado.getStatusCode().value();
+			return estado == 204 || estado == 304;
+		}
+
+		@Override
+		public void close() {
+			delegado.close();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Settings of the HTTP client used by AsyncHttpServiceProxy in the clients that
+ * run without Spring (Swing and console).
+ *
+ * They are read from cliente.properties on the classpath (or the file given in
+ * -Dcliente.config) and can be overridden one by one with system properties of
+ * the same name, e.g. -Dcliente.http.base-url=http://servidor:8080. Durations
+ * accept the application.properties style (500ms, 2s, 5m) or ISO-8601 (PT2S).
+ */
+public record ConfiguracionHttp(String baseUrl, HttpClient.Version version, Duration timeoutConexion,
+		Duration timeoutPeticion, int hilos, boolean comprimirPeticiones, int umbralCompresion,
+		Serializacion.Formato formato) {
+
+	private static final String RECURSO = "cliente.properties";
+
+	public ConfiguracionHttp {
+		if (baseUrl == null || baseUrl.isBlank()) {
+			throw new IllegalArgumentException("La URL base no puede estar vacía");
+		}
+		// Las URLs de los proxies se construyen como baseUrl + "/strava/..."
+		while (baseUrl.endsWith("/")) {
+			baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+		}
+	}
+
+	public static ConfiguracionHttp porDefecto() {
+		return new ConfiguracionHttp("http://localhost:8080", HttpClient.Version.HTTP_2, Duration.ofSeconds(2),
+			Duration.ofSeconds(10), 0, false, 1024, Serializacion.Formato.JSON);
+	}
+
+	/**
+	 * Configuration of the process, loaded once on first use.
+	 */
+	public static ConfiguracionHttp compartida() {
+		return Compartida.INSTANCIA;
+	}
+
+	private static class Compartida {
+		static final ConfiguracionHttp INSTANCIA = cargar();
+	}
+
+	/**
+	 * Reads the configuration file and applies the system properties on top of it.
+	 * A missing file leaves the defaults.
+	 */
+	public static ConfiguracionHttp cargar() {
+		Properties propiedades = new Properties();
+		String ruta = System.getProperty("cliente.config");
+		try (InputStream entrada = ruta != null
+				? Files.newInputStream(Path.of(ruta))
+				: ConfiguracionHttp.class.getClassLoader().getResourceAsStream(RECURSO)) {
+			if (entrada != null) {
+				propiedades.load(entrada);
+			}
+		} catch (IOException e) {
+			System.err.println("No se pudo leer la configuración del cliente " + (ruta != null ? ruta : RECURSO)
+				+ ": " + e.getMessage());
+		}
+		for (String clave : System.getProperties().stringPropertyNames()) {
+			if (clave.startsWith("cliente.http.")) {
+				propiedades.setProperty(clave, System.getProperty(clave));
+			}
+		}
+		return desde(propiedades);
+	}
+
+	static ConfiguracionHttp desde(Properties propiedades) {
+		ConfiguracionHttp defecto = porDefecto();
+		return new ConfiguracionHttp(
+			propiedades.getProperty("cliente.http.base-url", defecto.baseUrl()).trim(),
+			version(propiedades.getProperty("cliente.http.version"), defecto.version()),
+			duracion(propiedades.getProperty("cliente.http.timeout-conexion"), defecto.timeoutConexion()),
+			duracion(propiedades.getProperty("cliente.http.timeout-peticion"), defecto.timeoutPeticion()),
+			entero(propiedades.getProperty("cliente.http.hilos"), defecto.hilos()),
+			Boolean.parseBoolean(propiedades.getProperty("cliente.http.comprimir-peticiones",
+				String.valueOf(defecto.comprimirPeticiones())).trim()),
+			entero(propiedades.getProperty("cliente.http.comprimir-peticiones.umbral"), defecto.umbralCompresion()),
+			Serializacion.Formato.de(propiedades.getProperty("cliente.http.formato", defecto.formato().name())));
+	}
+
+	private static HttpClient.Version version(String valor, HttpClient.Version defecto) {
+		if (valor == null || valor.isBlank()) {
+			return defecto;
+		}
+		return switch (valor.trim().toUpperCase(Locale.ROOT).replace('.', '_').replace('/', '_')) {
+			case "HTTP_2", "2" -> HttpClient.Version.HTTP_2;
+			case "HTTP_1_1", "1_1" -> HttpClient.Version.HTTP_1_1;
+			default -> throw new IllegalArgumentException("Versión HTTP no válida: " + valor);
+		};
+	}
+
+	private static int entero(String valor, int defecto) {
+		return valor == null || valor.isBlank() ? defecto : Integer.parseInt(valor.trim());
+	}
+
+	/**
+	 * Parses a duration written as in application.properties (500ms, 2s, 5m, 1h,
+	 * milliseconds without unit) or ISO-8601; null or blank gives the default.
+	 */
+	public static Duration duracion(String valor, Duration defecto) {
+		if (valor == null || valor.isBlank()) {
+			return defecto;
+		}
+		String texto = valor.trim().toLowerCase(Locale.ROOT);
+		try {
+			if (texto.startsWith("p")) {
+				return Duration.parse(texto.toUpperCase(Locale.ROOT));
+			}
+			if (texto.endsWith("ms")) {
+				return Duration.ofMillis(Long.parseLong(texto.substring(0, texto.length() - 2)));
+			}
+			char unidad = texto.charAt(texto.length() - 1);
+			if (Character.isDigit(unidad)) {
+				// Sin unidad: milisegundos, como en Spring
+				return Duration.ofMillis(Long.parseLong(texto));
+			}
+			long cantidad = Long.parseLong(texto.substring(0, texto.length() - 1));
+			return switch (unidad) {
+				case 's' -> Duration.ofSeconds(cantidad);
+				case 'm' -> Duration.ofMinutes(cantidad);
+				case 'h' -> Duration.ofHours(cantidad);
+				default -> throw new IllegalArgumentException("Duración no válida: " + valor);
+			};
+		} catch (NumberFormatException | DateTimeParseException e) {
+			throw new IllegalArgumentException("Duración no válida: " + valor, e);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * DescompresorCuerpo is a BodySubscriber that inflates a gzip or deflate body as
+ * its buffers arrive and hands the decompressed buffers to the subscriber of the
+ * original BodyHandler, so the body is never held compressed and decompressed at
+ * the same time and the parsing code does not know it was compressed.
+ *
+ * It never blocks: each chunk received is decompressed completely before
+ * returning from onNext. A gzip body is checked against its CRC32 and length
+ * trailer; a truncated or corrupted body completes the subscriber with an
+ * IOException.
+ */
+class DescompresorCuerpo<T> implements HttpResponse.BodySubscriber<T> {
+	private static final int TAMANIO_BLOQUE = 16 * 1024;
+	// Una cabecera gzip mas larga que esto (nombre o comentario enormes) se trata como dañada
+	private static final int MAX_CABECERA = 64 * 1024;
+	private static final int TAMANIO_COLA_GZIP = 8;
+
+	private final HttpResponse.BodySubscriber<T> delegado;
+	private final Compresion.Formato formato;
+	private final MetricasOperacion endpoint;
+
+	private Flow.Subscription subscription;
+	// Bytes recibidos mientras no se ha completado la cabecera; null despues
+	private byte[] cabecera = new byte[0];
+	private Inflater inflater;
+	private final CRC32 crc = new CRC32();
+	private long tamanio;
+	private byte[] cola = new byte[0];
+	private boolean terminado;
+
+	DescompresorCuerpo(HttpResponse.BodySubscriber<T> delegado, Compresion.Formato formato, MetricasOperacion endpoint) {
+		this.delegado = delegado;
+		this.formato = formato;
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * Wraps the handler so compressed responses are inflated before they reach it.
+	 */
+	static <T> HttpResponse.BodyHandler<T> descomprimiendo(HttpResponse.BodyHandler<T> handler,
+			MetricasOperacion endpoint) {
+		return info -> {
+			HttpResponse.BodySubscriber<T> subscriber = handler.apply(info);
+			Compresion.Formato formato = Compresion.formato(info.headers().firstValue("Content-Encoding").orElse(null));
+			return formato == null ? subscriber : new DescompresorCuerpo<>(subscriber, formato, endpoint);
+		};
+	}
+
+	@Override
+	public CompletionStage<T> getBody() {
+		return delegado.getBody();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		delegado.onSubscribe(subscription);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> item) {
+		if (terminado) {
+			return;
+		}
+		List<ByteBuffer> salida = new ArrayList<>();
+		long recibidos = 0;
+		long producidos = 0;
+		long inicio = Compresion.ahora();
+		try {
+			for (ByteBuffer buffer : item) {
+				recibidos += buffer.remaining();
+				producidos += procesar(buffer, salida);
+			}
+		} catch (IOException | DataFormatException e) {
+			fallar(e instanceof IOException io ? io : new IOException("Cuerpo comprimido dañado", e));
+			return;
+		} finally {
+			endpoint.sumarDescompresion(recibidos, producidos, Compresion.ahora() - inicio);
+		}
+
+		if (salida.isEmpty()) {
+			// Solo habia cabecera o cola: se pide otro trozo sin gastar la demanda del suscriptor
+			subscription.request(1);
+		} else {
+			delegado.onNext(salida);
+		}
+	}
+
+	private long procesar(ByteBuffer buffer, List<ByteBuffer> salida) throws IOException, DataFormatException {
+		long producidos = 0;
+		while (buffer.hasRemaining()) {
+			if (inflater == null) {
+				return producidos + leerCabecera(buffer, salida);
+			}
+			if (inflater.finished()) {
+				// Cola gzip (CRC32 y tamaño); lo que venga detras se ignora
+				int faltan = formato == Compresion.Formato.GZIP ? TAMANIO_COLA_GZIP - cola.length : 0;
+				int tomar = Math.min(Math.max(faltan, 0), buffer.remaining());
+				int anterior = cola.length;
+				cola = Arrays.copyOf(cola, anterior + tomar);
+				buffer.get(cola, anterior, tomar);
+				buffer.position(buffer.limit());
+				return producidos;
+			}
+
+			inflater.setInput(buffer);
+			while (!inflater.finished() && !inflater.needsInput()) {
+				ByteBuffer bloque = ByteBuffer.allocate(TAMANIO_BLOQUE);
+				int n = inflater.inflate(bloque);
+				if (n == 0 && inflater.needsDictionary()) {
+					throw new IOException("Cuerpo comprimido no válido");
+				}
+				if (n > 0) {
+					bloque.flip();
+					if (formato == Compresion.Formato.GZIP) {
+						crc.update(bloque.duplicate());
+					}
+					tamanio += n;
+					producidos += n;
+					salida.add(bloque);
+				}
+			}
+		}
+		return producidos;
+	}
+
+	// Acumula bytes hasta tener la cabecera completa y pasa el resto al inflater
+	private long leerCabecera(ByteBuffer buffer, List<ByteBuffer> salida) throws IOException, DataFormatException {
+		int anterior = cabecera.length;
+		cabecera = Arrays.copyOf(cabecera, anterior + buffer.remaining());
+		buffer.get(cabecera, anterior, cabecera.length - anterior);
+
+		int longitud;
+		if (formato == Compresion.Formato.GZIP) {
+			longitud = longitudCabeceraGzip(cabecera);
+		} else if (cabecera.length >= 2) {
+			longitud = 0;
+		} else {
+			longitud = -1;
+		}
+		if (longitud < 0) {
+			if (cabecera.length > MAX_CABECERA) {
+				throw new IOException("Cabecera gzip demasiado larga");
+			}
+			return 0;
+		}
+
+		boolean crudo = formato == Compresion.Formato.GZIP || !Compresion.esZlib(cabecera[0], cabecera[1]);
+		inflater = new Inflater(crudo);
+		ByteBuffer resto = ByteBuffer.wrap(cabecera, longitud, cabecera.length - longitud);
+		cabecera = null;
+		return procesar(resto, salida);
+	}
+
+	// Longitud de la cabecera gzip (RFC 1952), o -1 si aun no ha llegado entera
+	private static int longitudCabeceraGzip(byte[] c) throws IOException {
+		if (c.length < 10) {
+			return -1;
+		}
+		if ((c[0] & 0xff) != 0x1f || (c[1] & 0xff) != 0x8b || c[2] != 8) {
+			throw new IOException("Cabecera gzip no válida");
+		}
+		int flags = c[3] & 0xff;
+		int pos = 10;
+		if ((flags & 0x04) != 0) { // FEXTRA
+			if (c.length < pos + 2) {
+				return -1;
+			}
+			pos += 2 + ((c[pos] & 0xff) | (c[pos + 1] & 0xff) << 8);
+		}
+		if ((flags & 0x08) != 0) { // FNAME
+			pos = finTexto(c, pos);
+		}
+		if (pos >= 0 && (flags & 0x10) != 0) { // FCOMMENT
+			pos = finTexto(c, pos);
+		}
+		if (pos >= 0 && (flags & 0x02) != 0) { // FHCRC
+			pos += 2;
+		}
+		return pos < 0 || pos > c.length ? -1 : pos;
+	}
+
+	private static int finTexto(byte[] c, int desde) {
+		for (int i = desde; i < c.length; i++) {
+			if (c[i] == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (terminado) {
+			return;
+		}
+		terminado = true;
+		liberar();
+		delegado.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (terminado) {
+			return;
+		}
+		terminado = true;
+		try {
+			comprobarFinal();
+		} catch (IOException e) {
+			liberar();
+			delegado.onError(e);
+			return;
+		}
+		liberar();
+		delegado.onComplete();
+	}
+
+	private void comprobarFinal() throws IOException {
+		if (inflater == null) {
+			// Un cuerpo vacio (p. ej. 204 o 304) con Content-Encoding es valido
+			if (cabecera != null && cabecera.length == 0) {
+				return;
+			}
+			throw new IOException("Cuerpo comprimido truncado");
+		}
+		if (!inflater.finished()) {
+			throw new IOException("Cuerpo comprimido truncado");
+		}
+		if (formato == Compresion.Formato.GZIP) {
+			if (cola.length < TAMANIO_COLA_GZIP) {
+				throw new IOException("Cuerpo gzip truncado");
+			}
+			long crcEsperado = leerEntero(cola, 0);
+			long tamanioEsperado = leerEntero(cola, 4);
+			if (crcEsperado != crc.getValue() || tamanioEsperado != (tamanio & 0xffffffffL)) {
+				throw new IOException("Cuerpo gzip dañado: CRC o tamaño incorrectos");
+			}
+		}
+	}
+
+	// Entero sin signo de 32 bits en little endian
+	private static long leerEntero(byte[] b, int desde) {
+		return (b[desde] & 0xffL) | (b[desde + 1] & 0xffL) << 8 | (b[desde + 2] & 0xffL) << 16
+			| (b[desde + 3] & 0xffL) << 24;
+	}
+
+	private void fallar(IOException error) {
+		terminado = true;
+		subscription.cancel();
+		liberar();
+		delegado.onError(error);
+	}
+
+	private void liberar() {
+		if (inflater != null) {
+			inflater.end();
+		}
+	}
+}
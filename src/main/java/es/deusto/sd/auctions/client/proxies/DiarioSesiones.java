@@ -0,0 +1,461 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * DiarioSesiones is the append-only journal of the sessions waiting to be sent
+ * to the server by EscrituraDiferidaServiceProxy. Every saved session is written
+ * as an entry; when the server stores it (or rejects it for good) a confirmation
+ * or discard record with the same sequence number is appended. On open, the file
+ * is replayed and the entries without a closing record are pending again.
+ *
+ * Each record carries its own CRC32: a record torn by a crash in the middle of a
+ * write is detected on open and cut off, together with anything after it. When
+ * nothing is pending the file is truncated back to its header, with a new journal
+ * id so the idempotency keys of old entries are never reused.
+ *
+ * The Sincronizacion policy decides when the records are forced to disk: SIEMPRE
+ * before each append returns (a saved session survives a power cut), PERIODICA
+ * when the writer calls sincronizar, NUNCA only when the operating system flushes
+ * its cache (it survives a crash of the JVM, not of the machine).
+ *
+ * Layout (big endian): header int magic, short version, long and long journal id;
+ * records byte type, int length, payload, int CRC32 of type and payload. An entry
+ * payload is long sequence, long saved-at millis, long reto id, the token, the
+ * session as JSON and the email of the user; strings are an int length (-1 for
+ * null) and UTF-8 bytes. The email was added later: an entry that ends after the
+ * JSON has no user. Confirmation and discard payloads are the sequence number.
+ */
+public class DiarioSesiones implements Closeable {
+	private static final int MAGIA = 0x5354524A; // "STRJ"
+	private static final short VERSION = 1;
+	private static final int TAMANIO_CABECERA = 4 + 2 + 16;
+	private static final byte ENTRADA = 1;
+	private static final byte CONFIRMADA = 2;
+	private static final byte DESCARTADA = 3;
+	// Por debajo de este tamaño no merece la pena truncar el fichero
+	private static final long UMBRAL_COMPACTACION = 64 * 1024;
+
+	public enum Sincronizacion {
+		SIEMPRE, PERIODICA, NUNCA;
+
+		public static Sincronizacion de(String valor) {
+			if (valor == null || valor.isBlank()) {
+				return SIEMPRE;
+			}
+			return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+				case "siempre" -> SIEMPRE;
+				case "periodica" -> PERIODICA;
+				case "nunca" -> NUNCA;
+				default -> throw new IllegalArgumentException(
+					"Sincronización no válida: " + valor + " (siempre, periodica o nunca)");
+			};
+		}
+	}
+
+	/**
+	 * A session saved by the user and not yet stored by the server. The key is
+	 * unique across journals and restarts and is sent as Idempotency-Key. The
+	 * user is the email the token was issued to, null if it is not known.
+	 */
+	public record Entrada(long secuencia, String clave, Long retoId, String token, String usuario, Sesion sesion,
+			long guardadaMillis) {
+	}
+
+	private final Path fichero;
+	private final Sincronizacion sincronizacion;
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	private final FileChannel canal;
+	// Pendientes en orden de llegada
+	private final Map<Long, Entrada> pendientes = new LinkedHashMap<>();
+	private String idDiario;
+	private long siguienteSecuencia = 1;
+	// Hay registros escritos que aun no se han forzado a disco
+	private boolean sucio;
+
+	/**
+	 * Opens the journal, creating it if it does not exist, and replays it. A file
+	 * that is not a journal of this version is moved aside, never overwritten.
+	 */
+	public DiarioSesiones(Path fichero, Sincronizacion sincronizacion) throws IOException {
+		this.fichero = fichero;
+		this.sincronizacion = sincronizacion;
+		Path directorio = fichero.toAbsolutePath().getParent();
+		Files.createDirectories(directorio);
+		apartarSiNoEsDiario();
+		boolean nuevo = Files.notExists(fichero);
+		this.canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE);
+		if (nuevo) {
+			// Guarda tokens de sesion: solo lo lee el usuario
+			restringirPermisos();
+		}
+		try {
+			recuperar();
+		} catch (IOException | RuntimeException e) {
+			canal.close();
+			throw e;
+		}
+	}
+
+	public Path getFichero() {
+		return fichero;
+	}
+
+	public Sincronizacion getSincronizacion() {
+		return sincronizacion;
+	}
+
+	/**
+	 * Appends a session and returns its entry once it is as durable as the policy
+	 * asks.
+	 */
+	public Entrada anadir(Long retoId, Sesion sesion, String token) throws IOException {
+		return anadir(retoId, sesion, token, null);
+	}
+
+	/**
+	 * Same as anadir, recording the email of the user the token belongs to.
+	 */
+	public Entrada anadir(Long retoId, Sesion sesion, String token, String usuario) throws IOException {
+		byte[] json = Serializacion.json().writeValueAsBytes(sesion);
+		cerrojo.lock();
+		try {
+			long secuencia = siguienteSecuencia;
+			Entrada entrada = new Entrada(secuencia, idDiario + "-" + secuencia, retoId, token, usuario,
+				sesion, System.currentTimeMillis());
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length + 128);
+			DataOutputStream datos = new DataOutputStream(bytes);
+			datos.writeLong(entrada.secuencia());
+			datos.writeLong(entrada.guardadaMillis());
+			datos.writeBoolean(retoId != null);
+			datos.writeLong(retoId != null ? retoId : 0);
+			escribirTexto(datos, token);
+			datos.writeInt(json.length);
+			datos.write(json);
+			if (usuario != null) {
+				escribirTexto(datos, usuario);
+			}
+
+			escribirRegistro(ENTRADA, bytes.toByteArray());
+			if (sincronizacion == Sincronizacion.SIEMPRE) {
+				forzar();
+			}
+			siguienteSecuencia++;
+			pendientes.put(secuencia, entrada);
+			return entrada;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * The oldest pending entries, at most max.
+	 */
+	public List<Entrada> pendientes(int max) {
+		return pendientes(max, entrada -> true);
+	}
+
+	/**
+	 * The oldest pending entries that pass the filter, at most max.
+	 */
+	public List<Entrada> pendientes(int max, Predicate<Entrada> filtro) {
+		cerrojo.lock();
+		try {
+			List<Entrada> lote = new ArrayList<>(Math.min(max, pendientes.size()));
+			for (Entrada entrada : pendientes.values()) {
+				if (lote.size() >= max) {
+					break;
+				}
+				if (filtro.test(entrada)) {
+					lote.add(entrada);
+				}
+			}
+			return lote;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	public int getPendientes() {
+		cerrojo.lock();
+		try {
+			return pendientes.size();
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Records that the server stored these entries: they won't be replayed.
+	 */
+	public void confirmar(Collection<Long> secuencias) throws IOException {
+		cerrarEntradas(CONFIRMADA, secuencias);
+	}
+
+	/**
+	 * Records that these entries were given up (the server kept rejecting them).
+	 */
+	public void descartar(Collection<Long> secuencias) throws IOException {
+		cerrarEntradas(DESCARTADA, secuencias);
+	}
+
+	private void cerrarEntradas(byte tipo, Collection<Long> secuencias) throws IOException {
+		if (secuencias.isEmpty()) {
+			return;
+		}
+		cerrojo.lock();
+		try {
+			for (Long secuencia : secuencias) {
+				if (pendientes.remove(secuencia) != null) {
+					escribirRegistro(tipo, ByteBuffer.allocate(8).putLong(secuencia).array());
+				}
+			}
+			if (sincronizacion == Sincronizacion.SIEMPRE) {
+				forzar();
+			}
+			compactar();
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Forces the records written so far to disk, if any.
+	 */
+	public void sincronizar() throws IOException {
+		cerrojo.lock();
+		try {
+			if (sincronizacion != Sincronizacion.NUNCA) {
+				forzar();
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		cerrojo.lock();
+		try {
+			if (canal.isOpen()) {
+				sincronizar();
+				canal.close();
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	private void forzar() throws IOException {
+		if (sucio) {
+			canal.force(false);
+			sucio = false;
+		}
+	}
+
+	// Sin pendientes, todo lo escrito ya esta cerrado: se vuelve a la cabecera con otro id
+	private void compactar() throws IOException {
+		if (!pendientes.isEmpty() || canal.size() < UMBRAL_COMPACTACION) {
+			return;
+		}
+		canal.truncate(0);
+		escribirCabecera();
+	}
+
+	private void escribirRegistro(byte tipo, byte[] contenido) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(tipo);
+		crc.update(contenido);
+		ByteBuffer registro = ByteBuffer.allocate(1 + 4 + contenido.length + 4);
+		registro.put(tipo).putInt(contenido.length).put(contenido).putInt((int) crc.getValue()).flip();
+		long inicio = canal.position();
+		try {
+			escribir(registro);
+		} catch (IOException e) {
+			// Sin quitar el registro a medias, al recuperar se perderia todo lo que se escriba detras
+			try {
+				canal.truncate(inicio);
+				canal.position(inicio);
+			} catch (IOException ignorada) {
+				e.addSuppressed(ignorada);
+			}
+			throw e;
+		}
+	}
+
+	private void escribir(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			canal.write(buffer);
+		}
+		sucio = true;
+	}
+
+	private void escribirCabecera() throws IOException {
+		UUID id = UUID.randomUUID();
+		idDiario = id.toString();
+		siguienteSecuencia = 1;
+		ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_CABECERA);
+		cabecera.putInt(MAGIA).putShort(VERSION).putLong(id.getMostSignificantBits())
+			.putLong(id.getLeastSignificantBits()).flip();
+		canal.position(0);
+		escribir(cabecera);
+		forzar();
+	}
+
+	private void recuperar() throws IOException {
+		long tamanio = canal.size();
+		if (tamanio < TAMANIO_CABECERA) {
+			// Nuevo, o la cabecera no llego a escribirse entera: no puede haber entradas
+			canal.truncate(0);
+			escribirCabecera();
+			return;
+		}
+		if (tamanio > Integer.MAX_VALUE) {
+			throw new IOException("El diario de sesiones " + fichero + " es demasiado grande");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) tamanio);
+		while (buffer.hasRemaining() && canal.read(buffer, buffer.position()) >= 0) {
+		}
+		buffer.flip();
+		buffer.position(6);
+		idDiario = new UUID(buffer.getLong(), buffer.getLong()).toString();
+
+		long finValido = buffer.position();
+		while (buffer.remaining() >= 1 + 4 + 4) {
+			byte tipo = buffer.get();
+			int longitud = buffer.getInt();
+			if (longitud < 0 || buffer.remaining() < longitud + 4) {
+				break;
+			}
+			byte[] contenido = new byte[longitud];
+			buffer.get(contenido);
+			CRC32 crc = new CRC32();
+			crc.update(tipo);
+			crc.update(contenido);
+			if ((int) crc.getValue() != buffer.getInt() || !aplicar(tipo, contenido)) {
+				break;
+			}
+			finValido = buffer.position();
+		}
+
+		if (finValido < tamanio) {
+			// Un registro a medio escribir al caerse el proceso: se corta ahi
+			System.err.println("Se descartan " + (tamanio - finValido) + " bytes dañados al final del diario "
+				+ fichero);
+			canal.truncate(finValido);
+			canal.force(false);
+		}
+		canal.position(finValido);
+		if (!pendientes.isEmpty()) {
+			System.out.println("Diario de sesiones: " + pendientes.size() + " sesiones pendientes de enviar");
+		}
+	}
+
+	// false si el registro no se puede interpretar: se trata como el final dañado del diario
+	private boolean aplicar(byte tipo, byte[] contenido) {
+		ByteBuffer datos = ByteBuffer.wrap(contenido);
+		try {
+			return aplicar(tipo, datos);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Registro ilegible en el diario " + fichero + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	private boolean aplicar(byte tipo, ByteBuffer datos) throws IOException {
+		switch (tipo) {
+			case ENTRADA -> {
+				long secuencia = datos.getLong();
+				long guardada = datos.getLong();
+				boolean conReto = datos.get() != 0;
+				long retoId = datos.getLong();
+				String token = leerTexto(datos);
+				byte[] json = new byte[datos.getInt()];
+				datos.get(json);
+				Sesion sesion = Serializacion.json().readValue(json, Sesion.class);
+				// Las entradas anteriores al usuario acaban en el JSON
+				String usuario = datos.hasRemaining() ? leerTexto(datos) : null;
+				pendientes.put(secuencia, new Entrada(secuencia, idDiario + "-" + secuencia,
+					conReto ? retoId : null, token, usuario, sesion, guardada));
+				siguienteSecuencia = Math.max(siguienteSecuencia, secuencia + 1);
+			}
+			case CONFIRMADA, DESCARTADA -> pendientes.remove(datos.getLong());
+			default -> {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void apartarSiNoEsDiario() throws IOException {
+		if (Files.notExists(fichero) || Files.size(fichero) < TAMANIO_CABECERA) {
+			return;
+		}
+		ByteBuffer cabecera = ByteBuffer.allocate(6);
+		try (FileChannel lectura = FileChannel.open(fichero, StandardOpenOption.READ)) {
+			while (cabecera.hasRemaining() && lectura.read(cabecera) >= 0) {
+			}
+		}
+		if (cabecera.getInt(0) == MAGIA && cabecera.getShort(4) == VERSION) {
+			return;
+		}
+		Path apartado = fichero.resolveSibling(fichero.getFileName() + "." + System.currentTimeMillis() + ".antiguo");
+		System.err.println("El fichero " + fichero + " no es un diario de sesiones de esta versión; se mueve a "
+			+ apartado);
+		Files.move(fichero, apartado, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void restringirPermisos() {
+		try {
+			Files.setPosixFilePermissions(fichero, PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException | IOException e) {
+			// Sistema de ficheros sin permisos POSIX
+		}
+	}
+
+	private static void escribirTexto(DataOutputStream datos, String texto) throws IOException {
+		if (texto == null) {
+			datos.writeInt(-1);
+			return;
+		}
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		datos.writeInt(bytes.length);
+		datos.write(bytes);
+	}
+
+	private static String leerTexto(ByteBuffer buffer) {
+		int longitud = buffer.getInt();
+		if (longitud < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[longitud];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
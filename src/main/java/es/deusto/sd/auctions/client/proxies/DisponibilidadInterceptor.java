@@ -0,0 +1,33 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * DisponibilidadInterceptor turns the 502, 503 and 504 answers of the RestTemplate
+ * requests into a RespuestaHttpException with the status and the Retry-After
+ * delay. RestTemplateServiceProxy maps the error answers to exceptions with just a
+ * message, which would hide from ResilienciaServiceProxy that the server is only
+ * temporarily unavailable and that the call can be retried.
+ */
+public class DisponibilidadInterceptor implements ClientHttpRequestInterceptor {
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		ClientHttpResponse response = execution.execute(request, body);
+		int estado = response.getStatusCode().value();
+		if (!RespuestaHttpException.esTransitorio(estado)) {
+			return response;
+		}
+		String reintentarTras = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+		response.close();
+		throw new RespuestaHttpException("Servicio no disponible en " + request.getMethod() + " " + request.getURI().getPath(),
+			estado, RespuestaHttpException.reintentarTras(reintentarTras));
+	}
+}
@@ -0,0 +1,464 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * EscrituraDiferidaServiceProxy is a write-behind decorator for guardarSesion:
+ * the session is appended to a DiarioSesiones and the call returns as soon as
+ * the journal has it, without waiting for the server. A background thread sends
+ * the pending sessions in batches of up to maxLote concurrent requests and
+ * records each one in the journal once the server has stored it.
+ *
+ * Failures are retried with exponential backoff and full jitter. While the server
+ * is unreachable (or the circuit of ResilienciaServiceProxy is open) the sessions
+ * wait in the journal for as long as needed; a session the server keeps rejecting,
+ * or that can't be serialized, is given up after maxIntentos answers and reported
+ * on the error output.
+ *
+ * The journal keeps the token of each session and the email of the user who got
+ * it from login through this proxy. A session is sent with the latest token of
+ * its user, so a logout or an expired token does not lose it: when the server
+ * answers 401 the session stays pending, not counted as a rejection, until that
+ * user logs in again (in this process or after a restart). Sessions saved with a
+ * token whose login this proxy did not see have no user to wait for; a 401 counts
+ * as a rejection for them.
+ *
+ * Sessions still pending when the process stops are sent on the next start. Every
+ * session is sent with its own Idempotency-Key: if the process dies after the
+ * server stored a session but before the journal recorded it, the replay carries
+ * the same key and a server that honours it does not store it twice.
+ *
+ * A saved session shows up in the reads of the server only once it has been sent,
+ * usually a round trip later. If the journal can't be written the session is sent
+ * directly, as without this decorator. The rest of the operations are delegated
+ * unchanged.
+ */
+public class EscrituraDiferidaServiceProxy implements IAuctionsServiceProxy, AutoCloseable {
+
+	/**
+	 * Journal file and its fsync policy, how often a PERIODICA journal is forced
+	 * to disk, the batch size, the answers after which a session is given up and
+	 * the backoff between failed batches.
+	 */
+	public record Configuracion(Path fichero, DiarioSesiones.Sincronizacion sincronizacion,
+			Duration intervaloSincronizacion, int maxLote, int maxIntentos, Duration esperaBase,
+			Duration esperaMaxima) {
+
+		public Configuracion {
+			if (maxLote < 1 || maxIntentos < 1) {
+				throw new IllegalArgumentException("maxLote y maxIntentos deben ser al menos 1");
+			}
+		}
+
+		public static Configuracion porDefecto(Path fichero) {
+			return new Configuracion(fichero, DiarioSesiones.Sincronizacion.SIEMPRE, Duration.ofSeconds(1), 32, 8,
+				Duration.ofMillis(200), Duration.ofMinutes(1));
+		}
+	}
+
+	private final IAuctionsServiceProxy delegado;
+	private final Configuracion configuracion;
+	private final DiarioSesiones diario;
+	// Los envios de un lote son llamadas bloqueantes: un hilo virtual por sesion
+	private final ExecutorService envios = Executors.newVirtualThreadPerTaskExecutor();
+	private final Thread trabajador;
+
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	private final Condition aviso = cerrojo.newCondition();
+	private boolean hayNuevas;
+	private volatile boolean activo = true;
+
+	// Respuestas de error recibidas por cada sesion pendiente; solo lo usa el trabajador
+	private final Map<Long, Integer> intentos = new HashMap<>();
+	// Token con el que el servidor respondio 401 a cada sesion pendiente; solo lo usa el trabajador
+	private final Map<Long, String> tokensRechazados = new HashMap<>();
+	// Usuario de cada token obtenido con login y ultimo token de cada usuario
+	private final Map<String, String> usuarioDeToken = new ConcurrentHashMap<>();
+	private final Map<String, String> tokenDeUsuario = new ConcurrentHashMap<>();
+
+	private final AtomicLong enviadas = new AtomicLong();
+	private final AtomicLong descartadas = new AtomicLong();
+	private final AtomicLong reintentos = new AtomicLong();
+	private final AtomicLong lotes = new AtomicLong();
+
+	private record Envio(String token, Future<?> resultado) {}
+
+	/**
+	 * Opens (and replays) the journal and starts the thread that empties it.
+	 */
+	public EscrituraDiferidaServiceProxy(IAuctionsServiceProxy delegado, Configuracion configuracion)
+			throws IOException {
+		this.delegado = delegado;
+		this.configuracion = configuracion;
+		this.diario = new DiarioSesiones(configuracion.fichero(), configuracion.sincronizacion());
+		this.trabajador = Thread.ofPlatform().name("escritura-diferida").daemon().start(this::trabajar);
+	}
+
+	/**
+	 * Default journal of a client, ~/.strava-cliente/<cliente>-sesiones.diario, or
+	 * the path given in the system property cliente.diario.
+	 */
+	public static Path ficheroPorDefecto(String cliente) {
+		String ruta = System.getProperty("cliente.diario");
+		if (ruta != null) {
+			return Path.of(ruta);
+		}
+		return Path.of(System.getProperty("user.home"), ".strava-cliente", cliente + "-sesiones.diario");
+	}
+
+	public DiarioSesiones getDiario() {
+		return diario;
+	}
+
+	// Sesiones guardadas que el servidor aun no tiene
+	public int getPendientes() {
+		return diario.getPendientes();
+	}
+
+	public long getEnviadas() {
+		return enviadas.get();
+	}
+
+	public long getDescartadas() {
+		return descartadas.get();
+	}
+
+	public long getReintentos() {
+		return reintentos.get();
+	}
+
+	public long getLotes() {
+		return lotes.get();
+	}
+
+	/**
+	 * Stops the background thread after the batch in flight and closes the
+	 * journal. Whatever is still pending is sent on the next start.
+	 */
+	@Override
+	public void close() {
+		activo = false;
+		despertar();
+		try {
+			trabajador.join(configuracion.esperaMaxima().plusSeconds(5).toMillis());
+			if (trabajador.isAlive()) {
+				trabajador.interrupt();
+				trabajador.join(1000);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		envios.shutdownNow();
+		try {
+			diario.close();
+		} catch (IOException e) {
+			System.err.println("No se pudo cerrar el diario de sesiones: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		if (!activo) {
+			delegado.guardarSesion(retoId, sesion, token);
+			return;
+		}
+		try {
+			diario.anadir(retoId, sesion, token, token != null ? usuarioDeToken.get(token) : null);
+		} catch (IOException e) {
+			System.err.println("No se pudo anotar la sesión en el diario (" + e.getMessage() + "); se envía ya");
+			delegado.guardarSesion(retoId, sesion, token);
+			return;
+		}
+		despertar();
+	}
+
+	private void despertar() {
+		cerrojo.lock();
+		try {
+			hayNuevas = true;
+			aviso.signalAll();
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	private void trabajar() {
+		int lotesFallidos = 0;
+		long siguienteSincronizacion = System.nanoTime() + configuracion.intervaloSincronizacion().toNanos();
+		while (activo) {
+			// Las que esperan a que su usuario vuelva a hacer login no entran en el lote
+			List<DiarioSesiones.Entrada> lote = diario.pendientes(configuracion.maxLote(),
+				entrada -> !esperaLogin(entrada, tokenPara(entrada)));
+			boolean fallido = false;
+			if (lote.isEmpty()) {
+				dormir(configuracion.intervaloSincronizacion().toNanos(), true);
+			} else {
+				try {
+					fallido = enviar(lote);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+
+			if (System.nanoTime() - siguienteSincronizacion >= 0) {
+				sincronizar();
+				siguienteSincronizacion = System.nanoTime() + configuracion.intervaloSincronizacion().toNanos();
+			}
+
+			if (fallido) {
+				dormir(espera(lotesFallidos++), false);
+			} else {
+				lotesFallidos = 0;
+			}
+		}
+		sincronizar();
+	}
+
+	/**
+	 * Sends a batch and records the outcome in the journal. Returns true if some
+	 * session has to be retried.
+	 */
+	private boolean enviar(List<DiarioSesiones.Entrada> lote) throws InterruptedException {
+		lotes.incrementAndGet();
+		Map<DiarioSesiones.Entrada, Envio> enCurso = new LinkedHashMap<>();
+		for (DiarioSesiones.Entrada entrada : lote) {
+			String token = tokenPara(entrada);
+			enCurso.put(entrada, new Envio(token, envios.submit(() -> delegado.guardarSesion(entrada.retoId(),
+				entrada.sesion(), token, entrada.clave()))));
+		}
+
+		List<Long> confirmadas = new ArrayList<>();
+		List<Long> abandonadas = new ArrayList<>();
+		boolean fallido = false;
+		for (Map.Entry<DiarioSesiones.Entrada, Envio> envio : enCurso.entrySet()) {
+			DiarioSesiones.Entrada entrada = envio.getKey();
+			try {
+				envio.getValue().resultado().get();
+				confirmadas.add(entrada.secuencia());
+			} catch (ExecutionException e) {
+				if (entrada.usuario() != null && TokenNoValidoException.esCausaDe(e.getCause())) {
+					// No es un rechazo de la sesion: se envia con el token del siguiente login
+					System.err.println("La sesión " + entrada.clave() + " espera a que " + entrada.usuario()
+						+ " vuelva a iniciar sesión");
+					tokensRechazados.put(entrada.secuencia(), envio.getValue().token());
+					continue;
+				}
+				fallido = true;
+				if (!esReintentable(e.getCause())
+						&& intentos.merge(entrada.secuencia(), 1, Integer::sum) >= configuracion.maxIntentos()) {
+					System.err.println("Se abandona la sesión " + entrada.clave() + " del reto " + entrada.retoId()
+						+ " tras " + configuracion.maxIntentos() + " intentos: " + e.getCause().getMessage());
+					abandonadas.add(entrada.secuencia());
+				} else {
+					reintentos.incrementAndGet();
+				}
+			}
+		}
+
+		cerrarEntradas(confirmadas, true);
+		cerrarEntradas(abandonadas, false);
+		enviadas.addAndGet(confirmadas.size());
+		descartadas.addAndGet(abandonadas.size());
+		return fallido;
+	}
+
+	private void cerrarEntradas(Collection<Long> secuencias, boolean confirmar) {
+		try {
+			if (confirmar) {
+				diario.confirmar(secuencias);
+			} else {
+				diario.descartar(secuencias);
+			}
+		} catch (IOException e) {
+			// Se volveran a enviar al arrancar, con la misma clave de idempotencia
+			System.err.println("No se pudo anotar en el diario el resultado de " + secuencias.size()
+				+ " sesiones: " + e.getMessage());
+		}
+		secuencias.forEach(intentos::remove);
+		secuencias.forEach(tokensRechazados::remove);
+	}
+
+	// El ultimo token de su usuario, o el suyo si el usuario no ha vuelto a hacer login
+	private String tokenPara(DiarioSesiones.Entrada entrada) {
+		String token = entrada.usuario() != null ? tokenDeUsuario.get(entrada.usuario()) : null;
+		return token != null ? token : entrada.token();
+	}
+
+	// El servidor ya rechazo ese token para esta sesion
+	private boolean esperaLogin(DiarioSesiones.Entrada entrada, String token) {
+		return tokensRechazados.containsKey(entrada.secuencia())
+			&& Objects.equals(tokensRechazados.get(entrada.secuencia()), token);
+	}
+
+	// Sin respuesta del servidor (caido, lento o con el circuito abierto): se espera sin limite de intentos
+	private static boolean esReintentable(Throwable error) {
+		for (Throwable causa = error; causa != null && causa.getCause() != causa; causa = causa.getCause()) {
+			if (causa instanceof Circuito.AbiertoException) {
+				return true;
+			}
+		}
+		return ResilienciaServiceProxy.esTransitorio(error);
+	}
+
+	private void sincronizar() {
+		try {
+			diario.sincronizar();
+		} catch (IOException e) {
+			System.err.println("No se pudo sincronizar el diario de sesiones: " + e.getMessage());
+		}
+	}
+
+	// Backoff exponencial con jitter completo: un valor al azar entre 0 y base * 2^fallos
+	private long espera(int fallos) {
+		long techo = Math.min(configuracion.esperaMaxima().toNanos(),
+			configuracion.esperaBase().toNanos() << Math.min(fallos, 20));
+		return ThreadLocalRandom.current().nextLong(techo + 1);
+	}
+
+	// Espera hasta el plazo o hasta que se cierre el proxy; con nuevas, tambien hasta que llegue una sesion
+	private void dormir(long nanos, boolean nuevas) {
+		cerrojo.lock();
+		try {
+			if (nuevas && hayNuevas) {
+				hayNuevas = false;
+				return;
+			}
+			long restante = nanos;
+			while (activo && restante > 0 && !(nuevas && hayNuevas)) {
+				restante = aviso.awaitNanos(restante);
+			}
+			if (nuevas) {
+				hayNuevas = false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			activo = false;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		String token = delegado.login(credenciales);
+		if (token != null && credenciales.email() != null) {
+			usuarioDeToken.put(token, credenciales.email());
+			tokenDeUsuario.put(credenciales.email(), token);
+			// Las sesiones de este usuario que esperaban un token nuevo ya se pueden enviar
+			despertar();
+		}
+		return token;
+	}
+
+	@Override
+	public void logout(String token) {
+		try {
+			delegado.logout(token);
+		} finally {
+			String usuario = token != null ? usuarioDeToken.remove(token) : null;
+			if (usuario != null && tokenDeUsuario.remove(usuario, token)) {
+				// Si el usuario tiene otro login abierto, sus sesiones siguen con ese token
+				usuarioDeToken.forEach((otro, suyo) -> {
+					if (suyo.equals(usuario)) {
+						tokenDeUsuario.putIfAbsent(usuario, otro);
+					}
+				});
+			}
+		}
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return delegado.getMisRetos(token);
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return delegado.getTodosRetos();
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return delegado.getRetosXDeporte(Deporte);
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return delegado.getDetallesDeReto(IdReto);
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return delegado.getSesionesPorReto(Id);
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return delegado.getTodasSesiones(token);
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return delegado.getDetalleSesion(idSesion);
+	}
+
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return delegado.getMisRetos(token, paginacion);
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return delegado.getTodosRetos(paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return delegado.getSesionesPorReto(Id, paginacion);
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return delegado.getTodasSesiones(token, paginacion);
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return delegado.getDetallesSesiones(idsSesiones);
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return delegado.getDetallesRetos(idsRetos);
+	}
+
+	@Override
+	public String toString() {
+		return "EscrituraDiferidaServiceProxy[pendientes=" + getPendientes() + ", enviadas=" + enviadas.get()
+			+ ", descartadas=" + descartadas.get() + ", lotes=" + lotes.get() + "]";
+	}
+}
@@ -0,0 +1,66 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FabricaClienteHttp builds the JDK HttpClient of the proxies from a
+ * ConfiguracionHttp, and keeps one shared instance per process.
+ *
+ * An HttpClient owns its connection pool, its selector thread and its executor,
+ * so every proxy of a client should use the same one: with HTTP/2 all the calls to
+ * the server are multiplexed over a single connection (the client falls back to
+ * HTTP/1.1 with persistent connections if the server does not speak HTTP/2). The
+ * executor, which runs the response handlers, is also shared: virtual threads by
+ * default, or a fixed pool of daemon threads if cliente.http.hilos is positive.
+ */
+public final class FabricaClienteHttp {
+
+	private FabricaClienteHttp() {
+	}
+
+	private static class Compartido {
+		static final ExecutorService EXECUTOR = crearExecutor(ConfiguracionHttp.compartida());
+		static final HttpClient CLIENTE = crear(ConfiguracionHttp.compartida(), EXECUTOR);
+	}
+
+	/**
+	 * HttpClient of the process, built on first use from ConfiguracionHttp.compartida().
+	 */
+	public static HttpClient compartido() {
+		return Compartido.CLIENTE;
+	}
+
+	/**
+	 * Executor of the shared HttpClient, for other asynchronous work of the proxies.
+	 */
+	public static ExecutorService executorCompartido() {
+		return Compartido.EXECUTOR;
+	}
+
+	public static HttpClient crear(ConfiguracionHttp configuracion, ExecutorService executor) {
+		return HttpClient.newBuilder()
+			.version(configuracion.version())
+			.connectTimeout(configuracion.timeoutConexion())
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.executor(executor)
+			.build();
+	}
+
+	public static ExecutorService crearExecutor(ConfiguracionHttp configuracion) {
+		if (configuracion.hilos() <= 0) {
+			return Executors.newVirtualThreadPerTaskExecutor();
+		}
+		// Hilos demonio para que el pool no impida terminar a los clientes de escritorio y consola
+		AtomicInteger numero = new AtomicInteger();
+		ThreadFactory fabrica = tarea -> {
+			Thread hilo = new Thread(tarea, "cliente-http-" + numero.incrementAndGet());
+			hilo.setDaemon(true);
+			return hilo;
+		};
+		return Executors.newFixedThreadPool(configuracion.hilos(), fabrica);
+	}
+}
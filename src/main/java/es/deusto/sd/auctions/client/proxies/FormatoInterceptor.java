@@ -0,0 +1,40 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * FormatoInterceptor sets the preferred data format in the Accept header of the
+ * RestTemplate requests that read records. RestTemplate lists every media type
+ * its converters can read with the same weight, so the server would always pick
+ * JSON; with Formato.SMILE the binary format is asked first and JSON is kept as
+ * the fallback. Requests that don't accept Smile (e.g. plain text) are left as
+ * they are.
+ */
+public class FormatoInterceptor implements ClientHttpRequestInterceptor {
+	private static final MediaType SMILE = MediaType.parseMediaType(Serializacion.TIPO_SMILE);
+
+	private final Serializacion.Formato formato;
+
+	public FormatoInterceptor(Serializacion.Formato formato) {
+		this.formato = formato;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		HttpHeaders headers = request.getHeaders();
+		List<MediaType> aceptados = headers.getAccept();
+		if (aceptados.stream().anyMatch(tipo -> tipo.equalsTypeAndSubtype(SMILE))) {
+			headers.set(HttpHeaders.ACCEPT, formato.aceptar());
+		}
+		return execution.execute(request, body);
+	}
+}
@@ -0,0 +1,90 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram. Values (nanoseconds) are counted in log-linear
+ * buckets: every power of two is split in 8 sub-buckets, which keeps the
+ * relative error of a percentile under 12.5% with a fixed array of counters.
+ * Recording is a single atomic increment, so it can be called from any number
+ * of threads without contention on a lock.
+ */
+public class HistogramaLatencia {
+	private static final int SUB_BUCKETS_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKETS_BITS;
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKETS_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder suma = new LongAdder();
+	private final AtomicLong maximo = new AtomicLong();
+
+	public void registrar(long nanos) {
+		long valor = Math.max(0, nanos);
+		buckets.incrementAndGet(indice(valor));
+		total.increment();
+		suma.add(valor);
+		maximo.accumulateAndGet(valor, Math::max);
+	}
+
+	static int indice(long valor) {
+		if (valor < SUB_BUCKETS) {
+			return (int) valor;
+		}
+		int exponente = 63 - Long.numberOfLeadingZeros(valor);
+		int sub = (int) (valor >>> (exponente - SUB_BUCKETS_BITS)) & (SUB_BUCKETS - 1);
+		return (exponente - SUB_BUCKETS_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	// Valor más alto que cae en el bucket
+	static long limiteSuperior(int indice) {
+		if (indice < SUB_BUCKETS) {
+			return indice;
+		}
+		int exponente = indice / SUB_BUCKETS + SUB_BUCKETS_BITS - 1;
+		int sub = indice % SUB_BUCKETS;
+		long ancho = 1L << (exponente - SUB_BUCKETS_BITS);
+		return ((SUB_BUCKETS + sub) * ancho) + ancho - 1;
+	}
+
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public long getMaximoNanos() {
+		return maximo.get();
+	}
+
+	public double getMediaNanos() {
+		long n = total.sum();
+		return n == 0 ? 0 : (double) suma.sum() / n;
+	}
+
+	/**
+	 * Approximate value below which the given fraction (0..1) of the recorded
+	 * values fall. Returns 0 when nothing has been recorded.
+	 */
+	public long getPercentilNanos(double fraccion) {
+		long[] copia = new long[NUM_BUCKETS];
+		long n = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			copia[i] = buckets.get(i);
+			n += copia[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+
+		long rango = Math.max(1, (long) Math.ceil(fraccion * n));
+		long acumulado = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			acumulado += copia[i];
+			if (acumulado >= rango) {
+				return Math.min(limiteSuperior(i), maximo.get());
+			}
+		}
+		return maximo.get();
+	}
+}
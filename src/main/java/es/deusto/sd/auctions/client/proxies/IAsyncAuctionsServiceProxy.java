@@ -0,0 +1,82 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * IAsyncAuctionsServiceProxy is the non-blocking counterpart of
+ * IAuctionsServiceProxy. Every operation returns immediately with a
+ * CompletableFuture that is completed when the server answers, so the
+ * calling thread is never parked while the request is in flight.
+ *
+ * Failures are reported by completing the future exceptionally with the
+ * same RuntimeException (and message) that the blocking proxy would throw.
+ */
+public interface IAsyncAuctionsServiceProxy {
+	//Metodos de credenciales
+	CompletableFuture<String> login(Credendiales credenciales);
+
+	CompletableFuture<Void> logout(String token);
+
+	//Metodos de retos
+	CompletableFuture<List<Reto>> getMisRetos(String token);
+	CompletableFuture<List<Reto>> getTodosRetos();
+
+	CompletableFuture<List<Reto>> getRetosXDeporte(String deporte);
+
+	CompletableFuture<Reto> getDetallesDeReto(Long idReto);
+
+	//Metodos de sesiones
+	CompletableFuture<List<Sesion>> getSesionesPorReto(Long id);
+
+	CompletableFuture<List<Sesion>> getTodasSesiones(String token);
+	CompletableFuture<Sesion> getDetalleSesion(Long idSesion);
+	CompletableFuture<Void> guardarSesion(Long retoId, Sesion sesion, String token);
+
+	/**
+	 * guardarSesion with a key that identifies the session across retries, sent as
+	 * the Idempotency-Key header, so a server that honours it stores the session
+	 * once. The default implementation ignores the key.
+	 */
+	default CompletableFuture<Void> guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		return guardarSesion(retoId, sesion, token);
+	}
+
+	/**
+	 * Streaming variants of getSesionesPorReto and getTodasSesiones. The future is
+	 * completed when the response headers arrive and the sessions are parsed while
+	 * the Stream is consumed, in constant memory. The Stream keeps the connection
+	 * open and must be closed by the caller.
+	 */
+	CompletableFuture<Stream<Sesion>> streamSesionesPorReto(Long id);
+
+	CompletableFuture<Stream<Sesion>> streamTodasSesiones(String token);
+
+	/**
+	 * Paged variants of the list operations: only the requested page is transferred.
+	 */
+	CompletableFuture<Pagina<Reto>> getMisRetos(String token, Paginacion paginacion);
+
+	CompletableFuture<Pagina<Reto>> getTodosRetos(Paginacion paginacion);
+
+	CompletableFuture<Pagina<Sesion>> getSesionesPorReto(Long id, Paginacion paginacion);
+
+	CompletableFuture<Pagina<Sesion>> getTodasSesiones(String token, Paginacion paginacion);
+
+	/**
+	 * Details of several sessions or retos, keyed by id in the order requested. Ids
+	 * the server has nothing for are left out of the map.
+	 */
+	CompletableFuture<Map<Long, Sesion>> getDetallesSesiones(Collection<Long> idsSesiones);
+
+	CompletableFuture<Map<Long, Reto>> getDetallesRetos(Collection<Long> idsRetos);
+}
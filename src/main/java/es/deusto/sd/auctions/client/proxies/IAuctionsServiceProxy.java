@@ -5,11 +5,15 @@
  */
 package es.deusto.sd.auctions.client.proxies;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 
 import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
 import es.deusto.sd.auctions.client.data.Reto;
 import es.deusto.sd.auctions.client.data.Sesion;
 
@@ -60,6 +64,43 @@ public interface IAuctionsServiceProxy {
   	Sesion getDetalleSesion(Long idSesion);
   	void guardarSesion(Long retoId, Sesion sesion, String token);
 
+  	//Igual que guardarSesion, con una clave que identifica la sesion entre reintentos (cabecera
+  	//Idempotency-Key): un servidor que la respete la guarda una sola vez. Por defecto se ignora.
+  	default void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+  		guardarSesion(retoId, sesion, token);
+  	}
+
+  	//Variantes paginadas: devuelven una sola pagina, pedida por numero o por cursor (ver Paginacion).
+  	//Por defecto se devuelve la lista completa como ultima pagina (desde la posicion pedida), para
+  	//no descargarla una vez por pagina; los proxies HTTP piden solo esa pagina al servidor.
+  	//Paginador las recorre de forma perezosa.
+  	default Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+  		return Paginas.desdeLista(getMisRetos(token), paginacion);
+  	}
+
+  	default Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+  		return Paginas.desdeLista(getTodosRetos(), paginacion);
+  	}
+
+  	default Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+  		return Paginas.desdeLista(getSesionesPorReto(Id), paginacion);
+  	}
+
+  	default Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+  		return Paginas.desdeLista(getTodasSesiones(token), paginacion);
+  	}
+
+  	//Detalles de varios ids a la vez, en el orden pedido y sin repetidos; los que no existen no aparecen.
+  	//Por defecto se piden uno a uno con paralelismo acotado; los proxies HTTP usan el endpoint de lotes
+  	//del servidor cuando lo tiene.
+  	default Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+  		return Lotes.individuales(idsSesiones, this::getDetalleSesion);
+  	}
+
+  	default Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+  		return Lotes.individuales(idsRetos, this::getDetallesDeReto);
+  	}
+
 
   	
 }
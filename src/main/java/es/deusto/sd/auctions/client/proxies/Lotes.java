@@ -0,0 +1,157 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for the multi-get operations (getDetallesSesiones, getDetallesRetos).
+ * A batch endpoint is asked for at most MAX_IDS_POR_LOTE ids per request; when the
+ * server has no batch endpoint the ids are requested one by one, with at most
+ * MAX_PARALELAS requests in flight. Results are returned in the order of the ids,
+ * without duplicates, and ids the server returned nothing for are left out.
+ */
+final class Lotes {
+	static final int MAX_IDS_POR_LOTE = 100;
+	static final int MAX_PARALELAS = 8;
+
+	private Lotes() {
+	}
+
+	// Ids sin nulos ni repetidos, en el orden en que se pidieron
+	static List<Long> distintos(Collection<Long> ids) {
+		LinkedHashSet<Long> unicos = new LinkedHashSet<>(ids);
+		unicos.remove(null);
+		return new ArrayList<>(unicos);
+	}
+
+	static List<List<Long>> trocear(List<Long> ids) {
+		List<List<Long>> trozos = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += MAX_IDS_POR_LOTE) {
+			trozos.add(ids.subList(i, Math.min(i + MAX_IDS_POR_LOTE, ids.size())));
+		}
+		return trozos;
+	}
+
+	static String consulta(List<Long> ids) {
+		return "ids=" + ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+	}
+
+	static <T> Map<Long, T> ordenar(List<Long> ids, Map<Long, T> encontrados) {
+		Map<Long, T> resultado = new LinkedHashMap<>();
+		for (Long id : ids) {
+			T valor = encontrados.get(id);
+			if (valor != null) {
+				resultado.put(id, valor);
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Blocking fallback: one call per id on virtual threads, bounded by a semaphore.
+	 * The first failure is rethrown.
+	 */
+	static <T> Map<Long, T> individuales(Collection<Long> ids, Function<Long, T> cargar) {
+		List<Long> unicos = distintos(ids);
+		Semaphore permisos = new Semaphore(MAX_PARALELAS);
+		Map<Long, T> encontrados = new LinkedHashMap<>();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<T>> futuros = new ArrayList<>(unicos.size());
+			for (Long id : unicos) {
+				futuros.add(executor.submit(() -> {
+					permisos.acquire();
+					try {
+						return cargar.apply(id);
+					} finally {
+						permisos.release();
+					}
+				}));
+			}
+
+			for (int i = 0; i < unicos.size(); i++) {
+				try {
+					T valor = futuros.get(i).get();
+					if (valor != null) {
+						encontrados.put(unicos.get(i), valor);
+					}
+				} catch (ExecutionException e) {
+					executor.shutdownNow();
+					Throwable causa = e.getCause();
+					if (causa instanceof RuntimeException runtimeException) {
+						throw runtimeException;
+					}
+					throw new RuntimeException(causa.getMessage(), causa);
+				} catch (InterruptedException e) {
+					executor.shutdownNow();
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("La operación fue interrumpida", e);
+				}
+			}
+		}
+		return encontrados;
+	}
+
+	/**
+	 * Non-blocking fallback: starts MAX_PARALELAS calls and each one that finishes
+	 * starts the next. The future fails with the first error.
+	 */
+	static <T> CompletableFuture<Map<Long, T>> individualesAsync(Collection<Long> ids,
+			Function<Long, CompletableFuture<T>> cargar) {
+		List<Long> unicos = distintos(ids);
+		if (unicos.isEmpty()) {
+			return CompletableFuture.completedFuture(new LinkedHashMap<>());
+		}
+
+		Map<Long, T> encontrados = new ConcurrentHashMap<>();
+		CompletableFuture<Void> terminado = new CompletableFuture<>();
+		AtomicInteger siguiente = new AtomicInteger();
+		AtomicInteger pendientes = new AtomicInteger(unicos.size());
+
+		Runnable lanzar = new Runnable() {
+			@Override
+			public void run() {
+				int i = siguiente.getAndIncrement();
+				if (i >= unicos.size() || terminado.isDone()) {
+					return;
+				}
+				Long id = unicos.get(i);
+				cargar.apply(id).whenComplete((valor, error) -> {
+					if (error != null) {
+						terminado.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+							? error.getCause() : error);
+						return;
+					}
+					if (valor != null) {
+						encontrados.put(id, valor);
+					}
+					if (pendientes.decrementAndGet() == 0) {
+						terminado.complete(null);
+					} else {
+						run();
+					}
+				});
+			}
+		};
+
+		for (int i = 0; i < Math.min(MAX_PARALELAS, unicos.size()); i++) {
+			lanzar.run();
+		}
+		return terminado.thenApply(v -> ordenar(unicos, encontrados));
+	}
+}
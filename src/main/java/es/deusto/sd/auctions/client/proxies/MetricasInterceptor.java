@@ -0,0 +1,110 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * MetricasInterceptor records, per HTTP endpoint of a RestTemplate, the status
+ * codes received, the latency until the response headers arrive and the bytes
+ * read from the response body. It should be the last interceptor of the chain so
+ * it sees what actually goes over the wire (e.g. a 304 before it is replayed).
+ */
+public class MetricasInterceptor implements ClientHttpRequestInterceptor {
+	private final MetricasProxy metricas;
+
+	public MetricasInterceptor(MetricasProxy metricas) {
+		this.metricas = metricas;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		MetricasOperacion endpoint = metricas.endpoint(request.getMethod().name(), request.getURI().getPath());
+		long inicio = endpoint.empezar();
+
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		} catch (IOException | RuntimeException e) {
+			endpoint.registrarEstado(MetricasOperacion.SIN_RESPUESTA);
+			endpoint.terminar(inicio, false);
+			throw e;
+		}
+
+		endpoint.registrarEstado(response.getStatusCode().value());
+		endpoint.terminar(inicio, false);
+		return new RespuestaContada(response, endpoint);
+	}
+
+	/**
+	 * Response whose body counts the bytes read through it.
+	 */
+	private static class RespuestaContada implements ClientHttpResponse {
+		private final ClientHttpResponse delegado;
+		private final MetricasOperacion endpoint;
+		private InputStream body;
+
+		RespuestaContada(ClientHttpResponse delegado, MetricasOperacion endpoint) {
+			this.delegado = delegado;
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return delegado.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegado.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegado.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = contar(delegado.getBody());
+			}
+			return body;
+		}
+
+		private InputStream contar(InputStream entrada) {
+			return new FilterInputStream(entrada) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0) {
+						endpoint.sumarBytes(1);
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int longitud) throws IOException {
+					int leidos = super.read(buffer, offset, longitud);
+					if (leidos > 0) {
+						endpoint.sumarBytes(leidos);
+					}
+					return leidos;
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			delegado.close();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a single proxy method or HTTP endpoint: calls, errors, responses
+ * by status code, calls in flight, bytes received, compression of the bodies and
+ * latency histogram.
+ * All of them are updated without locks.
+ */
+public class MetricasOperacion {
+	// Codigo usado cuando la peticion falla sin llegar a recibir respuesta
+	public static final int SIN_RESPUESTA = 0;
+
+	private final String nombre;
+	private final LongAdder llamadas = new LongAdder();
+	private final LongAdder errores = new LongAdder();
+	private final Map<Integer, LongAdder> respuestasPorEstado = new ConcurrentHashMap<>();
+	private final AtomicInteger enCurso = new AtomicInteger();
+	private final LongAdder bytesRecibidos = new LongAdder();
+	// Cuerpos comprimidos: tamaño en la red y sin comprimir, en ambos sentidos, y CPU gastada
+	private final LongAdder bytesComprimidos = new LongAdder();
+	private final LongAdder bytesSinComprimir = new LongAdder();
+	private final LongAdder nanosCompresion = new LongAdder();
+	private final HistogramaLatencia latencia = new HistogramaLatencia();
+
+	MetricasOperacion(String nombre) {
+		this.nombre = nombre;
+	}
+
+	/**
+	 * Marks the start of a call; returns the timestamp to pass to terminar.
+	 */
+	public long empezar() {
+		llamadas.increment();
+		enCurso.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	public void terminar(long inicio, boolean error) {
+		enCurso.decrementAndGet();
+		latencia.registrar(System.nanoTime() - inicio);
+		if (error) {
+			errores.increment();
+		}
+	}
+
+	public void registrarEstado(int estado) {
+		respuestasPorEstado.computeIfAbsent(estado, e -> new LongAdder()).increment();
+		if (estado == SIN_RESPUESTA || estado >= 400) {
+			errores.increment();
+		}
+	}
+
+	public void sumarBytes(long bytes) {
+		bytesRecibidos.add(bytes);
+	}
+
+	public void sumarDescompresion(long comprimidos, long descomprimidos, long nanos) {
+		bytesComprimidos.add(comprimidos);
+		bytesSinComprimir.add(descomprimidos);
+		nanosCompresion.add(nanos);
+	}
+
+	public void sumarCompresion(long originales, long comprimidos, long nanos) {
+		bytesComprimidos.add(comprimidos);
+		bytesSinComprimir.add(originales);
+		nanosCompresion.add(nanos);
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public long getLlamadas() {
+		return llamadas.sum();
+	}
+
+	public long getErrores() {
+		return errores.sum();
+	}
+
+	public int getEnCurso() {
+		return enCurso.get();
+	}
+
+	public long getBytesRecibidos() {
+		return bytesRecibidos.sum();
+	}
+
+	public long getBytesComprimidos() {
+		return bytesComprimidos.sum();
+	}
+
+	public long getBytesSinComprimir() {
+		return bytesSinComprimir.sum();
+	}
+
+	/**
+	 * Uncompressed size divided by compressed size of the bodies that were
+	 * compressed; 0 if none was.
+	 */
+	public double getRatioCompresion() {
+		long comprimidos = bytesComprimidos.sum();
+		return comprimidos == 0 ? 0 : (double) bytesSinComprimir.sum() / comprimidos;
+	}
+
+	// Tiempo de CPU gastado comprimiendo y descomprimiendo cuerpos
+	public long getNanosCompresion() {
+		return nanosCompresion.sum();
+	}
+
+	public HistogramaLatencia getLatencia() {
+		return latencia;
+	}
+
+	public Map<Integer, Long> getRespuestasPorEstado() {
+		Map<Integer, Long> copia = new TreeMap<>();
+		respuestasPorEstado.forEach((estado, contador) -> copia.put(estado, contador.sum()));
+		return copia;
+	}
+}
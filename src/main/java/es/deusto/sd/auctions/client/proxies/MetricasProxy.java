@@ -0,0 +1,170 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * MetricasProxy is the registry of the metrics recorded by the proxy layer. It
+ * holds one MetricasOperacion per proxy method (recorded by MetricasServiceProxy)
+ * and per HTTP endpoint (recorded by the transports, e.g. "GET /strava/retos").
+ *
+ * The web client publishes it through Spring Boot Actuator and Micrometer; the
+ * Swing and console clients can register it as an MBean or print volcarTexto().
+ */
+public class MetricasProxy implements MetricasProxyMBean {
+	private final Map<String, MetricasOperacion> operaciones = new ConcurrentSkipListMap<>();
+
+	public MetricasOperacion operacion(String nombre) {
+		return operaciones.computeIfAbsent(nombre, MetricasOperacion::new);
+	}
+
+	/**
+	 * Metrics of an HTTP endpoint. Numeric path segments are replaced by {id} and
+	 * the query string is dropped, so ids and tokens don't create new series. The
+	 * path is normalised on every call instead of memoised per raw path, which
+	 * would keep one entry per id ever requested.
+	 */
+	public MetricasOperacion endpoint(String metodo, String path) {
+		return operacion(metodo + " " + normalizar(path));
+	}
+
+	// Cada segmento formado solo por digitos pasa a ser {id}, sin expresiones regulares
+	static String normalizar(String path) {
+		int fin = path.indexOf('?');
+		if (fin < 0) {
+			fin = path.length();
+		}
+		StringBuilder sb = new StringBuilder(fin + 8);
+		int inicio = 0;
+		while (inicio < fin) {
+			int barra = path.indexOf('/', inicio + 1);
+			int corte = barra < 0 || barra > fin ? fin : barra;
+			// Segmento [inicio, corte), que empieza con su barra salvo el primero de un path relativo
+			if (path.charAt(inicio) == '/' && corte > inicio + 1 && soloDigitos(path, inicio + 1, corte)) {
+				sb.append("/{id}");
+			} else {
+				sb.append(path, inicio, corte);
+			}
+			inicio = corte;
+		}
+		return sb.toString();
+	}
+
+	private static boolean soloDigitos(String texto, int desde, int hasta) {
+		for (int i = desde; i < hasta; i++) {
+			char c = texto.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public Collection<MetricasOperacion> getOperaciones() {
+		return new ArrayList<>(operaciones.values());
+	}
+
+	/**
+	 * Snapshot of every series, as plain maps ready to be serialized to JSON.
+	 */
+	public Map<String, Map<String, Object>> instantanea() {
+		Map<String, Map<String, Object>> resultado = new LinkedHashMap<>();
+		for (MetricasOperacion op : getOperaciones()) {
+			HistogramaLatencia latencia = op.getLatencia();
+			Map<String, Object> datos = new LinkedHashMap<>();
+			datos.put("llamadas", op.getLlamadas());
+			datos.put("errores", op.getErrores());
+			datos.put("enCurso", op.getEnCurso());
+			datos.put("bytesRecibidos", op.getBytesRecibidos());
+			datos.put("respuestasPorEstado", op.getRespuestasPorEstado());
+			datos.put("bytesComprimidos", op.getBytesComprimidos());
+			datos.put("bytesSinComprimir", op.getBytesSinComprimir());
+			datos.put("ratioCompresion", op.getRatioCompresion());
+			datos.put("compresionCpuMs", op.getNanosCompresion() / 1e6);
+			datos.put("latenciaMediaMs", latencia.getMediaNanos() / 1e6);
+			datos.put("p50Ms", latencia.getPercentilNanos(0.50) / 1e6);
+			datos.put("p99Ms", latencia.getPercentilNanos(0.99) / 1e6);
+			datos.put("p999Ms", latencia.getPercentilNanos(0.999) / 1e6);
+			datos.put("maxMs", latencia.getMaximoNanos() / 1e6);
+			resultado.put(op.getNombre(), datos);
+		}
+		return resultado;
+	}
+
+	public String volcarTexto() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-45s %8s %7s %6s %12s %6s %8s %9s %9s %9s %9s  %s%n",
+			"operacion", "llamadas", "errores", "curso", "bytes", "ratio", "cpu(ms)", "p50(ms)", "p99(ms)", "p999(ms)",
+			"max(ms)", "estados"));
+		for (MetricasOperacion op : getOperaciones()) {
+			HistogramaLatencia latencia = op.getLatencia();
+			sb.append(String.format("%-45s %8d %7d %6d %12d %6.1f %8.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+				op.getNombre(), op.getLlamadas(), op.getErrores(), op.getEnCurso(), op.getBytesRecibidos(),
+				op.getRatioCompresion(), op.getNanosCompresion() / 1e6,
+				latencia.getPercentilNanos(0.50) / 1e6, latencia.getPercentilNanos(0.99) / 1e6,
+				latencia.getPercentilNanos(0.999) / 1e6, latencia.getMaximoNanos() / 1e6,
+				op.getRespuestasPorEstado()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Registers this registry in the platform MBean server under the given name,
+	 * e.g. "es.deusto.sd.auctions.client:type=MetricasProxy".
+	 */
+	public void registrarJmx(String nombre) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(nombre));
+		} catch (JMException e) {
+			System.err.println("No se pudieron registrar las métricas en JMX: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public String getResumen() {
+		return volcarTexto();
+	}
+
+	@Override
+	public long getLlamadasTotales() {
+		return sumar(true);
+	}
+
+	@Override
+	public long getErroresTotales() {
+		return sumar(false);
+	}
+
+	// Solo se suman las series de metodos del proxy, no las de endpoints HTTP
+	private long sumar(boolean llamadas) {
+		long total = 0;
+		for (MetricasOperacion op : getOperaciones()) {
+			if (!esEndpoint(op.getNombre())) {
+				total += llamadas ? op.getLlamadas() : op.getErrores();
+			}
+		}
+		return total;
+	}
+
+	@Override
+	public int getEnCurso() {
+		int total = 0;
+		for (MetricasOperacion op : getOperaciones()) {
+			if (!esEndpoint(op.getNombre())) {
+				total += op.getEnCurso();
+			}
+		}
+		return total;
+	}
+
+	private static boolean esEndpoint(String nombre) {
+		return nombre.indexOf(' ') > 0;
+	}
+}
@@ -0,0 +1,15 @@
+package es.deusto.sd.auctions.client.proxies;
+
+/**
+ * JMX view of MetricasProxy, for the clients that run without Spring
+ * (Swing and console). It can be read with jconsole or any JMX tool.
+ */
+public interface MetricasProxyMBean {
+	String getResumen();
+
+	long getLlamadasTotales();
+
+	long getErroresTotales();
+
+	int getEnCurso();
+}
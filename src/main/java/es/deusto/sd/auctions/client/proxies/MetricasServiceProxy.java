@@ -0,0 +1,145 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * MetricasServiceProxy is a decorator that records, for every method of the
+ * wrapped IAuctionsServiceProxy, the number of calls, the calls in flight, the
+ * errors and the latency seen by the caller. Status codes and bytes received
+ * are recorded per HTTP endpoint by the transports in the same MetricasProxy.
+ */
+public class MetricasServiceProxy implements IAuctionsServiceProxy {
+	// Nombres de las series, uno por metodo de IAuctionsServiceProxy
+	public static final List<String> OPERACIONES = List.of(
+		"login", "logout", "getMisRetos", "getTodosRetos", "getRetosXDeporte", "getDetallesDeReto",
+		"getSesionesPorReto", "getTodasSesiones", "getDetalleSesion", "guardarSesion",
+		"getDetallesSesiones", "getDetallesRetos");
+
+	private final IAuctionsServiceProxy delegado;
+	private final MetricasProxy metricas;
+
+	public MetricasServiceProxy(IAuctionsServiceProxy delegado, MetricasProxy metricas) {
+		this.delegado = delegado;
+		this.metricas = metricas;
+		OPERACIONES.forEach(metricas::operacion);
+	}
+
+	public MetricasProxy getMetricas() {
+		return metricas;
+	}
+
+	private <T> T medir(String nombre, Supplier<T> llamada) {
+		MetricasOperacion op = metricas.operacion(nombre);
+		long inicio = op.empezar();
+		boolean error = true;
+		try {
+			T resultado = llamada.get();
+			error = false;
+			return resultado;
+		} finally {
+			op.terminar(inicio, error);
+		}
+	}
+
+	private void medirAccion(String nombre, Runnable llamada) {
+		medir(nombre, () -> {
+			llamada.run();
+			return null;
+		});
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		return medir("login", () -> delegado.login(credenciales));
+	}
+
+	@Override
+	public void logout(String token) {
+		medirAccion("logout", () -> delegado.logout(token));
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return medir("getMisRetos", () -> delegado.getMisRetos(token));
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return medir("getTodosRetos", () -> delegado.getTodosRetos());
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return medir("getRetosXDeporte", () -> delegado.getRetosXDeporte(Deporte));
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return medir("getDetallesDeReto", () -> delegado.getDetallesDeReto(IdReto));
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return medir("getSesionesPorReto", () -> delegado.getSesionesPorReto(Id));
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return medir("getTodasSesiones", () -> delegado.getTodasSesiones(token));
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return medir("getDetalleSesion", () -> delegado.getDetalleSesion(idSesion));
+	}
+
+	// Las variantes paginadas se miden en la misma serie que la lista completa
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return medir("getMisRetos", () -> delegado.getMisRetos(token, paginacion));
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return medir("getTodosRetos", () -> delegado.getTodosRetos(paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return medir("getSesionesPorReto", () -> delegado.getSesionesPorReto(Id, paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return medir("getTodasSesiones", () -> delegado.getTodasSesiones(token, paginacion));
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return medir("getDetallesSesiones", () -> delegado.getDetallesSesiones(idsSesiones));
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return medir("getDetallesRetos", () -> delegado.getDetallesRetos(idsRetos));
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		medirAccion("guardarSesion", () -> delegado.guardarSesion(retoId, sesion, token));
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		medirAccion("guardarSesion", () -> delegado.guardarSesion(retoId, sesion, token, claveIdempotencia));
+	}
+}
@@ -0,0 +1,158 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+
+/**
+ * Paginador walks a paged list lazily: a page is only requested when the previous
+ * one has been consumed, so the first elements are available after one small
+ * request. With an executor it also prefetches one page ahead, requesting page
+ * n+1 while page n is being consumed.
+ *
+ * The loader is usually a method reference to one of the paged operations of
+ * IAuctionsServiceProxy, e.g. {@code p -> proxy.getSesionesPorReto(id, p)}.
+ * Each call to iterator(), paginas() or stream() starts again from the first page.
+ */
+public class Paginador<T> implements Iterable<T> {
+	private final Function<Paginacion, Pagina<T>> cargador;
+	private final int tamanio;
+	private final Executor precarga;
+
+	public Paginador(Function<Paginacion, Pagina<T>> cargador, int tamanio) {
+		this(cargador, tamanio, null);
+	}
+
+	public Paginador(Function<Paginacion, Pagina<T>> cargador, int tamanio, Executor precarga) {
+		this.cargador = cargador;
+		this.tamanio = tamanio;
+		this.precarga = precarga;
+	}
+
+	/**
+	 * Iterator over the pages. The first page is always returned, even if empty.
+	 */
+	public IteradorPaginas<T> paginas() {
+		return new IteradorPaginas<>(cargador, Paginacion.primera(tamanio), precarga);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return elementos(paginas());
+	}
+
+	/**
+	 * Lazy Stream over the elements. Closing it cancels the page being prefetched.
+	 */
+	public Stream<T> stream() {
+		IteradorPaginas<T> paginas = paginas();
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elementos(paginas), Spliterator.ORDERED), false)
+			.onClose(paginas::cancelar);
+	}
+
+	// Recorre los elementos de las paginas en orden, pidiendo cada pagina al llegar a ella
+	private static <T> Iterator<T> elementos(Iterator<Pagina<T>> paginas) {
+		return new Iterator<>() {
+			private Iterator<T> actual = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!actual.hasNext() && paginas.hasNext()) {
+					actual = paginas.next().elementos().iterator();
+				}
+				return actual.hasNext();
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return actual.next();
+			}
+		};
+	}
+
+	/**
+	 * Page iterator. Not thread-safe: it must be used by one thread at a time,
+	 * although not necessarily always the same one.
+	 */
+	public static class IteradorPaginas<T> implements Iterator<Pagina<T>> {
+		private final Function<Paginacion, Pagina<T>> cargador;
+		private final Executor precarga;
+		private Paginacion pendiente;
+		private CompletableFuture<Pagina<T>> precargada;
+
+		IteradorPaginas(Function<Paginacion, Pagina<T>> cargador, Paginacion primera, Executor precarga) {
+			this.cargador = cargador;
+			this.pendiente = primera;
+			this.precarga = precarga;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pendiente != null;
+		}
+
+		@Override
+		public Pagina<T> next() {
+			if (pendiente == null) {
+				throw new NoSuchElementException();
+			}
+
+			Pagina<T> pagina = precargada != null ? esperar(precargada) : cargador.apply(pendiente);
+			precargada = null;
+
+			if (!pagina.hayMas()) {
+				pendiente = null;
+				return pagina;
+			}
+
+			pendiente = Paginacion.siguiente(pagina, pendiente.tamanio());
+			if (precarga != null) {
+				// Se pide ya la siguiente pagina mientras se consume esta
+				Paginacion siguiente = pendiente;
+				precargada = CompletableFuture.supplyAsync(() -> cargador.apply(siguiente), precarga);
+			}
+			return pagina;
+		}
+
+		/**
+		 * Stops the iteration and cancels the page being prefetched, if any.
+		 */
+		public void cancelar() {
+			pendiente = null;
+			if (precargada != null) {
+				precargada.cancel(true);
+				precargada = null;
+			}
+		}
+
+		private static <T> T esperar(CompletableFuture<T> futuro) {
+			try {
+				return futuro.get();
+			} catch (InterruptedException e) {
+				futuro.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("La operación fue interrumpida", e);
+			} catch (ExecutionException e) {
+				Throwable causa = e.getCause();
+				if (causa instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new RuntimeException(causa.getMessage(), causa);
+			}
+		}
+	}
+}
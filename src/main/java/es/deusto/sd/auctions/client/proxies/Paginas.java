@@ -0,0 +1,72 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+
+/**
+ * Paging protocol shared by the proxies. A page is requested with the query
+ * parameters page and size, or cursor and size when the server handed out its own
+ * cursor. A server that pages its answers replies with the X-Next-Cursor header
+ * on every page (empty on the last one). If the header is missing the server sent
+ * the whole list: everything from the requested position on is returned as the
+ * last page, larger than the size asked. Cutting one page out of it would make a
+ * walk over all the pages download the whole list once per page.
+ */
+final class Paginas {
+	static final String CABECERA_CURSOR = "X-Next-Cursor";
+
+	private Paginas() {
+	}
+
+	// Posicion del primer elemento pedido, o -1 si el cursor es del servidor
+	private static int desplazamiento(Paginacion paginacion) {
+		if (paginacion.cursor() == null) {
+			return paginacion.pagina() * paginacion.tamanio();
+		}
+		return -1;
+	}
+
+	/**
+	 * Query string (without the leading ? or &) that requests the page.
+	 */
+	static String consulta(Paginacion paginacion) {
+		if (paginacion.cursor() == null) {
+			return "page=" + paginacion.pagina() + "&size=" + paginacion.tamanio();
+		}
+		return "cursor=" + URLEncoder.encode(paginacion.cursor(), StandardCharsets.UTF_8)
+			+ "&size=" + paginacion.tamanio();
+	}
+
+	/**
+	 * Builds the page from the elements received and the X-Next-Cursor header
+	 * (null if the server did not send it).
+	 */
+	static <T> Pagina<T> construir(List<T> recibidos, String cabeceraCursor, Paginacion paginacion) {
+		if (cabeceraCursor != null) {
+			return new Pagina<>(recibidos, cabeceraCursor.isBlank() ? null : cabeceraCursor);
+		}
+		return desdeLista(recibidos, paginacion);
+	}
+
+	/**
+	 * Last page made of a complete list: the elements from the requested position
+	 * on (all of them for a cursor, which only the server can interpret).
+	 */
+	static <T> Pagina<T> desdeLista(List<T> lista, Paginacion paginacion) {
+		if (lista == null) {
+			return new Pagina<>(List.of(), null);
+		}
+		int desde = Math.min(Math.max(desplazamiento(paginacion), 0), lista.size());
+		return new Pagina<>(new ArrayList<>(lista.subList(desde, lista.size())), null);
+	}
+
+	// Añade la consulta de la pagina a una URL que puede tener ya parametros
+	static String url(String url, Paginacion paginacion) {
+		return url + (url.indexOf('?') >= 0 ? "&" : "?") + consulta(paginacion);
+	}
+}
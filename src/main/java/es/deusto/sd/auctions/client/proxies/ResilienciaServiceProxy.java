@@ -0,0 +1,441 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * ResilienciaServiceProxy is a decorator that protects the callers from a slow or
+ * failing backend:
+ *
+ * - Reads (the idempotent GETs) that fail with a transient error (an IOException
+ *   or a timeout anywhere in the cause chain, or a 502, 503 or 504 answer) are
+ *   retried with exponential backoff and full jitter, waiting at least what the
+ *   Retry-After header of the answer asks for. Each attempt is bounded by
+ *   timeoutIntento. Writes, login and logout are never retried.
+ * - Every operation, and so every endpoint, has its own Circuito: after a run of
+ *   transient failures it fails fast until the backend has had time to recover.
+ * - Optionally, a read that has not answered after the p95 latency of its
+ *   operation is hedged: a second identical request is sent and the first
+ *   successful answer wins; the other one is cancelled. Hedges are capped at a
+ *   fraction of the calls so they can't double the load on a struggling server.
+ *
+ * Each attempt runs in its own virtual thread, and cancelling it (the losing
+ * hedge, or an attempt that ran out of time) interrupts that thread. Blocking
+ * socket I/O in a virtual thread is aborted by the interrupt, and HttpServiceProxy
+ * cancels its HttpClient exchange, so the abandoned request does not keep its
+ * connection busy. The wrapped proxy must not share one call between callers
+ * (CoalescingServiceProxy goes outside this decorator, not inside): the hedge and
+ * the retries would join the same call and the interrupt would fail it for all.
+ *
+ * The counters of each operation (retries, hedges, circuit state and
+ * transitions) are available through operacion(nombre).
+ */
+public class ResilienciaServiceProxy implements IAuctionsServiceProxy {
+
+	/**
+	 * Thresholds of the decorator. retardoMinimoHedge is the lower bound of the
+	 * hedging delay, and muestrasMinimasHedge the number of successful calls of an
+	 * operation needed before its p95 is trusted.
+	 */
+	public record Configuracion(int maxReintentos, Duration esperaBase, Duration esperaMaxima, Duration timeoutIntento,
+			int umbralFallos, Duration tiempoAbierto, boolean hedging, Duration retardoMinimoHedge,
+			int muestrasMinimasHedge, double maxFraccionHedge) {
+
+		public static Configuracion porDefecto() {
+			return new Configuracion(3, Duration.ofMillis(100), Duration.ofSeconds(2), Duration.ofSeconds(10),
+				5, Duration.ofSeconds(10), false, Duration.ofMillis(20), 50, 0.1);
+		}
+	}
+
+	/**
+	 * Counters of one operation.
+	 */
+	public static class Operacion {
+		private final Circuito circuito;
+		private final HistogramaLatencia latencia = new HistogramaLatencia();
+		private final AtomicLong llamadas = new AtomicLong();
+		private final AtomicLong reintentos = new AtomicLong();
+		private final AtomicLong timeouts = new AtomicLong();
+		private final AtomicLong hedges = new AtomicLong();
+		private final AtomicLong hedgesGanados = new AtomicLong();
+
+		Operacion(String nombre, Configuracion configuracion) {
+			this.circuito = new Circuito(nombre, configuracion.umbralFallos(), configuracion.tiempoAbierto());
+		}
+
+		public Circuito getCircuito() {
+			return circuito;
+		}
+
+		public long getLlamadas() {
+			return llamadas.get();
+		}
+
+		public long getReintentos() {
+			return reintentos.get();
+		}
+
+		public long getTimeouts() {
+			return timeouts.get();
+		}
+
+		public long getHedges() {
+			return hedges.get();
+		}
+
+		// Hedges cuya respuesta llego antes que la de la peticion original
+		public long getHedgesGanados() {
+			return hedgesGanados.get();
+		}
+	}
+
+	private final IAuctionsServiceProxy delegado;
+	private final Configuracion configuracion;
+	private final Map<String, Operacion> operaciones = new ConcurrentHashMap<>();
+	// Cada intento va en su propio hilo virtual para poder acotarlo y duplicarlo
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	public ResilienciaServiceProxy(IAuctionsServiceProxy delegado) {
+		this(delegado, Configuracion.porDefecto());
+	}
+
+	public ResilienciaServiceProxy(IAuctionsServiceProxy delegado, Configuracion configuracion) {
+		this.delegado = delegado;
+		this.configuracion = configuracion;
+	}
+
+	public Operacion operacion(String nombre) {
+		return operaciones.computeIfAbsent(nombre, n -> new Operacion(n, configuracion));
+	}
+
+	/**
+	 * Transient errors: the server could not be reached, did not answer in time or
+	 * answered that it is temporarily unavailable (RespuestaHttpException). Other
+	 * error answers (4xx, 500) are not retried, nor are answers that can't be
+	 * parsed: Jackson's JsonProcessingException is an IOException, but it means the
+	 * server did answer, and asking again would get the same body.
+	 */
+	public static boolean esTransitorio(Throwable error) {
+		for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+			if (causa instanceof JsonProcessingException) {
+				// Solo cuenta si lo que fallo por debajo fue la conexion
+				continue;
+			}
+			if (causa instanceof IOException || causa instanceof TimeoutException
+					|| causa instanceof RespuestaHttpException) {
+				return true;
+			}
+			if (causa.getCause() == causa) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	private <T> T leer(String nombre, Supplier<T> llamada) {
+		Operacion op = operacion(nombre);
+		op.llamadas.incrementAndGet();
+
+		RuntimeException ultimoError = null;
+		for (int intento = 0; ; intento++) {
+			try {
+				op.circuito.permitir();
+			} catch (RuntimeException rechazo) {
+				// Si el circuito se ha abierto entre reintentos, se informa del error real
+				throw ultimoError != null ? ultimoError : rechazo;
+			}
+			try {
+				T resultado = intentar(op, llamada);
+				op.circuito.exito();
+				return resultado;
+			} catch (RuntimeException e) {
+				if (!esTransitorio(e)) {
+					// El servidor ha contestado: esta sano aunque la respuesta sea un error
+					op.circuito.exito();
+					throw e;
+				}
+				op.circuito.fallo();
+				ultimoError = e;
+				if (intento >= configuracion.maxReintentos()) {
+					throw e;
+				}
+				Duration pedida = reintentarTras(e);
+				if (pedida != null && pedida.compareTo(configuracion.esperaMaxima()) > 0) {
+					// El servidor pide esperar mas de lo que se esta dispuesto a retener al llamante
+					throw e;
+				}
+				op.reintentos.incrementAndGet();
+				esperar(intento, pedida);
+			}
+		}
+	}
+
+	private void escribir(String nombre, Runnable llamada) {
+		Operacion op = operacion(nombre);
+		op.llamadas.incrementAndGet();
+		op.circuito.permitir();
+		try {
+			llamada.run();
+			op.circuito.exito();
+		} catch (RuntimeException e) {
+			if (esTransitorio(e)) {
+				op.circuito.fallo();
+			} else {
+				op.circuito.exito();
+			}
+			throw e;
+		}
+	}
+
+	private static Duration reintentarTras(Throwable error) {
+		RespuestaHttpException respuesta = RespuestaHttpException.buscar(error);
+		return respuesta != null ? respuesta.getReintentarTras() : null;
+	}
+
+	// Backoff exponencial con jitter completo: un valor al azar entre 0 y base * 2^intento,
+	// y nunca menos de lo que haya pedido el servidor con Retry-After
+	private void esperar(int intento, Duration pedida) {
+		long techo = Math.min(configuracion.esperaMaxima().toNanos(),
+			configuracion.esperaBase().toNanos() << Math.min(intento, 20));
+		long espera = ThreadLocalRandom.current().nextLong(techo + 1);
+		if (pedida != null) {
+			espera = Math.max(espera, pedida.toNanos());
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(espera);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		}
+	}
+
+	private <T> T intentar(Operacion op, Supplier<T> llamada) {
+		long limite = System.nanoTime() + configuracion.timeoutIntento().toNanos();
+		CompletableFuture<T> primera = lanzar(op, llamada);
+
+		if (!usarHedge(op)) {
+			return esperarHasta(op, primera, null, limite);
+		}
+
+		long retardo = Math.max(op.latencia.getPercentilNanos(0.95), configuracion.retardoMinimoHedge().toNanos());
+		try {
+			return primera.get(Math.min(retardo, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// Sigue abajo con la segunda peticion
+		} catch (InterruptedException e) {
+			primera.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		} catch (ExecutionException e) {
+			throw relanzar(e.getCause());
+		}
+
+		if (System.nanoTime() - limite >= 0) {
+			return esperarHasta(op, primera, null, limite);
+		}
+		op.hedges.incrementAndGet();
+		CompletableFuture<T> segunda = lanzar(op, llamada);
+		CompletableFuture<T> ganadora = primeraCorrecta(primera, segunda);
+		segunda.thenRun(() -> {
+			if (!primera.isDone() || primera.isCompletedExceptionally()) {
+				op.hedgesGanados.incrementAndGet();
+			}
+		});
+		return esperarHasta(op, ganadora, List.of(primera, segunda), limite);
+	}
+
+	private boolean usarHedge(Operacion op) {
+		return configuracion.hedging()
+			&& op.latencia.getTotal() >= configuracion.muestrasMinimasHedge()
+			&& op.hedges.get() < configuracion.maxFraccionHedge() * op.llamadas.get();
+	}
+
+	// Cancelar el futuro devuelto interrumpe el hilo del intento, y con el la llamada real
+	private <T> CompletableFuture<T> lanzar(Operacion op, Supplier<T> llamada) {
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		Future<?> tarea = executor.submit(() -> {
+			long inicio = System.nanoTime();
+			try {
+				T valor = llamada.get();
+				op.latencia.registrar(System.nanoTime() - inicio);
+				resultado.complete(valor);
+			} catch (Throwable e) {
+				resultado.completeExceptionally(e);
+			}
+		});
+		resultado.whenComplete((valor, error) -> {
+			if (resultado.isCancelled()) {
+				tarea.cancel(true);
+			}
+		});
+		return resultado;
+	}
+
+	private <T> T esperarHasta(Operacion op, CompletableFuture<T> futuro, List<CompletableFuture<T>> intentos,
+			long limite) {
+		try {
+			return futuro.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			op.timeouts.incrementAndGet();
+			throw new RuntimeException("Tiempo de espera agotado tras " + configuracion.timeoutIntento(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		} catch (ExecutionException e) {
+			throw relanzar(e.getCause());
+		} finally {
+			// La peticion perdedora (o la que no llego a tiempo) ya no hace falta
+			futuro.cancel(true);
+			if (intentos != null) {
+				intentos.forEach(intento -> intento.cancel(true));
+			}
+		}
+	}
+
+	// Completa con la primera respuesta correcta, o con el primer error si fallan las dos
+	private static <T> CompletableFuture<T> primeraCorrecta(CompletableFuture<T> una, CompletableFuture<T> otra) {
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		AtomicInteger fallidas = new AtomicInteger();
+		for (CompletableFuture<T> intento : List.of(una, otra)) {
+			intento.whenComplete((valor, error) -> {
+				if (error == null) {
+					resultado.complete(valor);
+				} else if (fallidas.incrementAndGet() == 2) {
+					resultado.completeExceptionally(error);
+				}
+			});
+		}
+		return resultado;
+	}
+
+	private static RuntimeException relanzar(Throwable causa) {
+		if (causa instanceof java.util.concurrent.CompletionException && causa.getCause() != null) {
+			causa = causa.getCause();
+		}
+		if (causa instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		if (causa instanceof Error error) {
+			throw error;
+		}
+		return new RuntimeException(causa.getMessage(), causa);
+	}
+
+	@Override
+	public String login(Credendiales credenciales) {
+		String[] token = new String[1];
+		escribir("login", () -> token[0] = delegado.login(credenciales));
+		return token[0];
+	}
+
+	@Override
+	public void logout(String token) {
+		escribir("logout", () -> delegado.logout(token));
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		return leer("getMisRetos", () -> delegado.getMisRetos(token));
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		return leer("getTodosRetos", delegado::getTodosRetos);
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		return leer("getRetosXDeporte", () -> delegado.getRetosXDeporte(Deporte));
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		return leer("getDetallesDeReto", () -> delegado.getDetallesDeReto(IdReto));
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		return leer("getSesionesPorReto", () -> delegado.getSesionesPorReto(Id));
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		return leer("getTodasSesiones", () -> delegado.getTodasSesiones(token));
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		return leer("getDetalleSesion", () -> delegado.getDetalleSesion(idSesion));
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		escribir("guardarSesion", () -> delegado.guardarSesion(retoId, sesion, token));
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
+		escribir("guardarSesion", () -> delegado.guardarSesion(retoId, sesion, token, claveIdempotencia));
+	}
+
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		return leer("getMisRetos", () -> delegado.getMisRetos(token, paginacion));
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return leer("getTodosRetos", () -> delegado.getTodosRetos(paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long Id, Paginacion paginacion) {
+		return leer("getSesionesPorReto", () -> delegado.getSesionesPorReto(Id, paginacion));
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		return leer("getTodasSesiones", () -> delegado.getTodasSesiones(token, paginacion));
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return leer("getDetallesSesiones", () -> delegado.getDetallesSesiones(idsSesiones));
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return leer("getDetallesRetos", () -> delegado.getDetallesRetos(idsRetos));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ResilienciaServiceProxy[");
+		operaciones.forEach((nombre, op) -> sb.append(String.format("%s: circuito=%s, reintentos=%d, timeouts=%d, hedges=%d/%d; ",
+			nombre, op.circuito.getEstado(), op.getReintentos(), op.getTimeouts(), op.getHedgesGanados(), op.getHedges())));
+		return sb.append("]").toString();
+	}
+}
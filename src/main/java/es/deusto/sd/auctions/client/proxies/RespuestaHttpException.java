@@ -0,0 +1,77 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Error answer of the server that says it is temporarily unable to serve the
+ * request (502 Bad Gateway, 503 Service Unavailable, 504 Gateway Timeout). It
+ * keeps the status code and the Retry-After delay, if the server sent one, so
+ * that ResilienciaServiceProxy can retry it and count it as a circuit failure.
+ */
+public class RespuestaHttpException extends RuntimeException {
+
+	private final int estado;
+	private final Duration reintentarTras;
+
+	public RespuestaHttpException(String mensaje, int estado, Duration reintentarTras) {
+		super(mensaje + ". Código: " + estado);
+		this.estado = estado;
+		this.reintentarTras = reintentarTras;
+	}
+
+	/**
+	 * Whether the status code is one of the temporary server failures.
+	 */
+	public static boolean esTransitorio(int estado) {
+		return estado == 502 || estado == 503 || estado == 504;
+	}
+
+	/**
+	 * Delay of a Retry-After header, in seconds or as an HTTP date; null if there is
+	 * no header or it can't be parsed.
+	 */
+	public static Duration reintentarTras(String cabecera) {
+		if (cabecera == null || cabecera.isBlank()) {
+			return null;
+		}
+		String valor = cabecera.trim();
+		try {
+			return Duration.ofSeconds(Math.max(0, Long.parseLong(valor)));
+		} catch (NumberFormatException e) {
+			try {
+				Duration hasta = Duration.between(ZonedDateTime.now(),
+					ZonedDateTime.parse(valor, DateTimeFormatter.RFC_1123_DATE_TIME));
+				return hasta.isNegative() ? Duration.ZERO : hasta;
+			} catch (DateTimeParseException e2) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * The RespuestaHttpException in the cause chain of the error, or null.
+	 */
+	public static RespuestaHttpException buscar(Throwable error) {
+		for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+			if (causa instanceof RespuestaHttpException respuesta) {
+				return respuesta;
+			}
+			if (causa.getCause() == causa) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	public int getEstado() {
+		return estado;
+	}
+
+	// Null si el servidor no dijo cuando volver a intentarlo
+	public Duration getReintentarTras() {
+		return reintentarTras;
+	}
+}
@@ -7,14 +7,22 @@ package es.deusto.sd.auctions.client.proxies;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +35,8 @@ import org.springframework.web.client.RestTemplate;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
 import es.deusto.sd.auctions.client.data.Reto;
 import es.deusto.sd.auctions.client.data.Sesion;
 
@@ -39,6 +49,10 @@ public class RestTemplateServiceProxy implements IAuctionsServiceProxy{
     @Value("${api.base.url}")
     private String apiBaseUrl;
 
+    // Se desactivan al ver que el servidor no tiene el endpoint de lotes
+    private final AtomicBoolean loteSesiones = new AtomicBoolean(true);
+    private final AtomicBoolean loteRetos = new AtomicBoolean(true);
+
     public RestTemplateServiceProxy(RestTemplate restTemplate) {
         this.restTemplate = restTemplate;
     }
@@ -95,7 +109,7 @@ public class RestTemplateServiceProxy implements IAuctionsServiceProxy{
 	    try {
 	        List<Map<String, Object>> retosMaps = restTemplate.getForObject(url, List.class);
 	        
-	        ObjectMapper objectMapper = new ObjectMapper();
+	        ObjectMapper objectMapper = Serializacion.json();
 	        List<Reto> retos = retosMaps.stream()
 	            .map(retoMap -> objectMapper.convertValue(retoMap, Reto.class))
 	            .collect(Collectors.toList());
@@ -158,19 +172,131 @@ public class RestTemplateServiceProxy implements IAuctionsServiceProxy{
 
 	@Override
 	public List<Sesion> getTodasSesiones(String token) {
-		// TODO Auto-generated method stub
-		return null;
+		String url = apiBaseUrl + "/strava/sesion/usuario?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+		try {
+			// URI ya codificado, como en getPagina
+			List<Sesion> sesiones = restTemplate.exchange(URI.create(url), HttpMethod.GET, null,
+				new ParameterizedTypeReference<List<Sesion>>() {}).getBody();
+			return sesiones != null ? sesiones : List.of();
+		} catch (HttpStatusCodeException e) {
+			switch (e.getStatusCode().value()) {
+				case 401 -> throw new RuntimeException("Token no valido.");
+				default -> throw new RuntimeException("Error al obtener las sesiones del usuario: " + e.getStatusText(), e);
+			}
+		} catch (RestClientException e) {
+			throw new RuntimeException("Error al obtener las sesiones del usuario", e);
+		}
 	}
 
 	@Override
 	public Sesion getDetalleSesion(Long idSesion) {
-		// TODO Auto-generated method stub
-		return null;
+		try {
+			String url = apiBaseUrl + "/strava/sesion/" + idSesion;
+			return restTemplate.getForObject(url, Sesion.class);
+		} catch (HttpClientErrorException e) {
+			if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+				throw new RuntimeException("Sesion no encontrada con ID: " + idSesion);
+			}
+			throw new RuntimeException("Error al obtener los detalles de la sesion", e);
+		}
+	}
+
+
+	// Pide una sola pagina de una lista; el protocolo de paginacion está en Paginas
+	private <E> Pagina<E> getPagina(String url, Paginacion paginacion, ParameterizedTypeReference<List<E>> tipo,
+			String mensajeError) {
+		try {
+			// Se pasa un URI ya codificado para que RestTemplate no vuelva a codificar el cursor
+			ResponseEntity<List<E>> response = restTemplate.exchange(
+				URI.create(Paginas.url(url, paginacion)), HttpMethod.GET, null, tipo);
+
+			List<E> elementos = response.getBody() != null ? response.getBody() : List.of();
+			return Paginas.construir(elementos, response.getHeaders().getFirst(Paginas.CABECERA_CURSOR), paginacion);
+		} catch (RestClientException e) {
+			System.err.println(mensajeError + ": " + e.getMessage());
+			throw new RuntimeException(mensajeError, e);
+		}
 	}
 
+	@Override
+	public Pagina<Reto> getMisRetos(String token, Paginacion paginacion) {
+		String url = apiBaseUrl + "/strava/reto/retosAceptados?Token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+		return getPagina(url, paginacion, new ParameterizedTypeReference<List<Reto>>() {},
+			"No se pudieron recuperar los Retos");
+	}
+
+	@Override
+	public Pagina<Reto> getTodosRetos(Paginacion paginacion) {
+		return getPagina(apiBaseUrl + "/strava/retos", paginacion, new ParameterizedTypeReference<List<Reto>>() {},
+			"Error al obtener retos");
+	}
+
+	@Override
+	public Pagina<Sesion> getSesionesPorReto(Long id, Paginacion paginacion) {
+		return getPagina(apiBaseUrl + "/strava/retos/" + id + "/sesiones", paginacion,
+			new ParameterizedTypeReference<List<Sesion>>() {}, "No se pudieron recuperar las sesiones");
+	}
+
+	@Override
+	public Pagina<Sesion> getTodasSesiones(String token, Paginacion paginacion) {
+		String url = apiBaseUrl + "/strava/sesion/usuario?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+		return getPagina(url, paginacion, new ParameterizedTypeReference<List<Sesion>>() {},
+			"Error al obtener las sesiones del usuario");
+	}
+
+	// Detalles de varios ids con el endpoint de lotes (url?ids=1,2,3); si el servidor no lo tiene, uno a uno
+	private <E> Map<Long, E> getLote(Collection<Long> ids, String url, ParameterizedTypeReference<List<E>> tipo,
+			Function<E, Long> idDe, Function<Long, E> individual, AtomicBoolean soportado, String mensajeError) {
+		List<Long> unicos = Lotes.distintos(ids);
+		if (!soportado.get()) {
+			return Lotes.individuales(unicos, individual);
+		}
+
+		Map<Long, E> encontrados = new HashMap<>();
+		for (List<Long> trozo : Lotes.trocear(unicos)) {
+			try {
+				List<E> elementos = restTemplate.exchange(
+					URI.create(url + "?" + Lotes.consulta(trozo)), HttpMethod.GET, null, tipo).getBody();
+				if (elementos != null) {
+					for (E elemento : elementos) {
+						encontrados.put(idDe.apply(elemento), elemento);
+					}
+				}
+			} catch (HttpStatusCodeException e) {
+				switch (e.getStatusCode().value()) {
+					case 400, 404, 405, 501 -> {
+						soportado.set(false);
+						System.out.println("El servidor no tiene endpoint de lotes en " + url + "; se piden uno a uno");
+						return Lotes.individuales(unicos, individual);
+					}
+					default -> throw new RuntimeException(mensajeError + ": " + e.getStatusText());
+				}
+			} catch (RestClientException e) {
+				throw new RuntimeException(mensajeError, e);
+			}
+		}
+		return Lotes.ordenar(unicos, encontrados);
+	}
+
+	@Override
+	public Map<Long, Sesion> getDetallesSesiones(Collection<Long> idsSesiones) {
+		return getLote(idsSesiones, apiBaseUrl + "/strava/sesiones/lote", new ParameterizedTypeReference<List<Sesion>>() {},
+			Sesion::id, this::getDetalleSesion, loteSesiones, "Error al obtener los detalles de las sesiones");
+	}
+
+	@Override
+	public Map<Long, Reto> getDetallesRetos(Collection<Long> idsRetos) {
+		return getLote(idsRetos, apiBaseUrl + "/strava/retos/lote", new ParameterizedTypeReference<List<Reto>>() {},
+			Reto::id, this::getDetallesDeReto, loteRetos, "Error al obtener los detalles de los retos");
+	}
 
 	@Override
 	public void guardarSesion(Long retoId, Sesion sesion,String token) {
+	    guardarSesion(retoId, sesion, token, null);
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token, String claveIdempotencia) {
 	    try {
 	        System.out.println("RestTemplateProxy - Guardando sesión para reto: " + retoId);
 	        
@@ -183,13 +309,20 @@ public class RestTemplateServiceProxy implements IAuctionsServiceProxy{
 	        
 	        System.out.println("URL de la petición: " + url);
 	        
-	        restTemplate.postForObject(url, sesion, Void.class);
+	        HttpHeaders headers = new HttpHeaders();
+	        if (claveIdempotencia != null) {
+	            headers.set(AsyncHttpServiceProxy.CABECERA_IDEMPOTENCIA, claveIdempotencia);
+	        }
+	        restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(sesion, headers), Void.class);
 	        
 	        System.out.println("RestTemplateProxy - Sesión guardada exitosamente");
 	        
+	    } catch (HttpClientErrorException.Unauthorized e) {
+	        throw new TokenNoValidoException("Error al guardar la sesión: token no válido", e);
 	    } catch (Exception e) {
 	        System.err.println("RestTemplateProxy - Error al guardar la sesión: " + e.getMessage());
-	        throw new RuntimeException("Error al guardar la sesión: " + e.getMessage());
+	        // Se conserva la causa para distinguir un servidor caido de una respuesta de error
+	        throw new RuntimeException("Error al guardar la sesión: " + e.getMessage(), e);
 	    }
 	}
 
@@ -0,0 +1,168 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * RevalidacionInterceptor turns the GETs made through a RestTemplate into
+ * conditional requests. The body of every 200 answer that carries an ETag or
+ * Last-Modified header is kept, the next GET to the same URL sends
+ * If-None-Match / If-Modified-Since, and a 304 answer is replayed to the
+ * RestTemplate as the stored 200 so the message converters work as usual.
+ *
+ * The store is bounded by entries and by bytes (LRU). A body larger than
+ * MAX_BYTES_ENTRADA is passed through as it arrives instead of being buffered,
+ * and URLs with a token parameter are never stored: they are per-user answers
+ * that would fill the store with one copy per session and keep a credential in
+ * its keys.
+ */
+public class RevalidacionInterceptor implements ClientHttpRequestInterceptor {
+	private static final int MAX_ENTRADAS = 256;
+	private static final int MAX_BYTES_ENTRADA = 1024 * 1024;
+	private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+	private record RespuestaValidada(String etag, String ultimaModificacion, HttpHeaders headers, byte[] body) {}
+
+	private final CacheLRU<String, RespuestaValidada> validadores =
+		new CacheLRU<>(MAX_ENTRADAS, MAX_BYTES, respuesta -> respuesta.body().length);
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		if (request.getMethod() != HttpMethod.GET || AsyncHttpServiceProxy.llevaToken(request.getURI())) {
+			return execution.execute(request, body);
+		}
+
+		String url = request.getURI().toString();
+		RespuestaValidada previa = validadores.get(url);
+		if (previa != null) {
+			if (previa.etag() != null) {
+				request.getHeaders().setIfNoneMatch(previa.etag());
+			}
+			if (previa.ultimaModificacion() != null) {
+				request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, previa.ultimaModificacion());
+			}
+		}
+
+		ClientHttpResponse response = execution.execute(request, body);
+
+		if (response.getStatusCode().value() == 304 && previa != null) {
+			response.close();
+			return new RespuestaAlmacenada(previa.headers(), previa.body());
+		}
+
+		String etag = response.getHeaders().getETag();
+		String ultimaModificacion = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+		if (response.getStatusCode().value() != 200 || (etag == null && ultimaModificacion == null)
+				|| response.getHeaders().getContentLength() > MAX_BYTES_ENTRADA) {
+			validadores.remove(url);
+			return response;
+		}
+
+		// Se lee el cuerpo completo para poder reutilizarlo en la siguiente revalidación,
+		// salvo que pase del limite: entonces se devuelve lo leido seguido del resto sin guardarlo
+		byte[] contenido;
+		try {
+			contenido = response.getBody().readNBytes(MAX_BYTES_ENTRADA + 1);
+		} catch (IOException | RuntimeException e) {
+			response.close();
+			throw e;
+		}
+		if (contenido.length > MAX_BYTES_ENTRADA) {
+			validadores.remove(url);
+			return new RespuestaParcial(response, contenido);
+		}
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		response.close();
+		validadores.put(url, new RespuestaValidada(etag, ultimaModificacion, headers, contenido));
+		return new RespuestaAlmacenada(headers, contenido);
+	}
+
+	/**
+	 * A response whose first bytes have already been read: they are replayed before
+	 * the rest of the original body.
+	 */
+	private static class RespuestaParcial implements ClientHttpResponse {
+		private final ClientHttpResponse original;
+		private final byte[] leido;
+
+		RespuestaParcial(ClientHttpResponse original, byte[] leido) {
+			this.original = original;
+			this.leido = leido;
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return original.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return original.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return original.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return new SequenceInputStream(new ByteArrayInputStream(leido), original.getBody());
+		}
+
+		@Override
+		public void close() {
+			original.close();
+		}
+	}
+
+	/**
+	 * A 200 response whose body is already in memory.
+	 */
+	private static class RespuestaAlmacenada implements ClientHttpResponse {
+		private final HttpHeaders headers;
+		private final byte[] body;
+
+		RespuestaAlmacenada(HttpHeaders headers, byte[] body) {
+			this.headers = headers;
+			this.body = body;
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public String getStatusText() {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Serialization of the data records shared by both proxy implementations: the
+ * JSON and Smile (binary JSON) ObjectMappers, configured the same way, and the
+ * media types used to negotiate the format.
+ *
+ * With Formato.SMILE the proxies ask for Smile first and JSON as a fallback
+ * (Accept: application/x-jackson-smile, application/json;q=0.9); a server that
+ * can't write Smile just answers JSON. Smile encodes numbers in binary and
+ * writes repeated property names and short string values (deporte, fechaInicio...)
+ * once and then as back-references, so lists of retos and sessions are smaller and
+ * faster to parse. The readers returned by lector detect the format of each body
+ * from its first bytes, so they work with either answer.
+ *
+ * Request bodies are always sent as JSON: they are single records and every server
+ * accepts them.
+ */
+public final class Serializacion {
+	public static final String TIPO_JSON = "application/json";
+	public static final String TIPO_SMILE = "application/x-jackson-smile";
+
+	public enum Formato {
+		JSON, SMILE;
+
+		public static Formato de(String valor) {
+			if (valor == null || valor.isBlank()) {
+				return JSON;
+			}
+			return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+				case "json" -> JSON;
+				case "smile" -> SMILE;
+				default -> throw new IllegalArgumentException("Formato no válido: " + valor + " (json o smile)");
+			};
+		}
+
+		/**
+		 * Value of the Accept header of the requests that read data.
+		 */
+		public String aceptar() {
+			return this == SMILE ? TIPO_SMILE + ", " + TIPO_JSON + ";q=0.9" : TIPO_JSON;
+		}
+	}
+
+	// Los ObjectMapper son seguros entre hilos una vez configurados
+	private static final ObjectMapper JSON = configurar(new ObjectMapper());
+	private static final ObjectMapper SMILE = configurar(new ObjectMapper(SmileFactory.builder()
+		// Los valores cortos repetidos (deporte, fechas...) se escriben una vez y luego como referencia
+		.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+		.build()));
+
+	private Serializacion() {
+	}
+
+	private static ObjectMapper configurar(ObjectMapper objectMapper) {
+		return objectMapper
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+			.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
+	}
+
+	public static ObjectMapper json() {
+		return JSON;
+	}
+
+	public static ObjectMapper smile() {
+		return SMILE;
+	}
+
+	/**
+	 * Reader of the given type that accepts both JSON and Smile bodies.
+	 */
+	public static ObjectReader lector(Class<?> tipo) {
+		ObjectReader lectorJson = JSON.readerFor(tipo);
+		return lectorJson.withFormatDetection(lectorJson, SMILE.readerFor(tipo));
+	}
+}
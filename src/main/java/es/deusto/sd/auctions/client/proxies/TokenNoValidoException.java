@@ -0,0 +1,33 @@
+package es.deusto.sd.auctions.client.proxies;
+
+/**
+ * The server answered 401 to a request that carried a token: the token has
+ * expired or was closed with logout. EscrituraDiferidaServiceProxy keeps the
+ * sessions that get it until the same user logs in again, instead of counting
+ * it as a rejection.
+ */
+public class TokenNoValidoException extends RuntimeException {
+
+	public TokenNoValidoException(String mensaje) {
+		super(mensaje);
+	}
+
+	public TokenNoValidoException(String mensaje, Throwable causa) {
+		super(mensaje, causa);
+	}
+
+	/**
+	 * Whether there is a TokenNoValidoException in the cause chain of the error.
+	 */
+	public static boolean esCausaDe(Throwable error) {
+		for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+			if (causa instanceof TokenNoValidoException) {
+				return true;
+			}
+			if (causa.getCause() == causa) {
+				break;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,194 @@
+package es.deusto.sd.auctions.client.stub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * Synthetic data of ServidorStub, reproducible from a seed. The retos are kept
+ * in memory; the sessions are not stored at all: session i belongs to reto
+ * i / sesionesPorReto and to user i % usuarios, and its fields are generated from
+ * the seed and its id whenever it is read. Millions of sessions therefore cost
+ * no memory and are streamed to the client as they are generated.
+ *
+ * Sessions saved through the API are kept in memory on top of the generated ones,
+ * with ids after the last generated session. A save that repeats an Idempotency-Key
+ * returns the session stored the first time.
+ */
+public class DatosStub {
+	private static final String[] DEPORTES = {"running", "cycling"};
+	private static final long INICIO = 1_704_067_200_000L; // 2024-01-01
+	private static final long HORA = 3_600_000L;
+
+	private final long semilla;
+	private final int sesionesPorReto;
+	private final int usuarios;
+	private final List<Reto> retos;
+
+	// Sesiones guardadas por los clientes, por reto y por usuario
+	private final Map<Long, Sesion> guardadas = new ConcurrentHashMap<>();
+	private final Map<Long, List<Sesion>> guardadasPorReto = new ConcurrentHashMap<>();
+	private final Map<Integer, List<Sesion>> guardadasPorUsuario = new ConcurrentHashMap<>();
+	private final Map<String, Sesion> porClave = new ConcurrentHashMap<>();
+	private final AtomicLong siguienteId;
+
+	public DatosStub(long semilla, int retos, int sesionesPorReto, int usuarios) {
+		if (retos < 0 || sesionesPorReto < 0 || usuarios < 1) {
+			throw new IllegalArgumentException("Tamaños de datos no válidos");
+		}
+		this.semilla = semilla;
+		this.sesionesPorReto = sesionesPorReto;
+		this.usuarios = usuarios;
+		this.retos = generarRetos(semilla, retos);
+		this.siguienteId = new AtomicLong(getTotalGeneradas());
+	}
+
+	private static List<Reto> generarRetos(long semilla, int cantidad) {
+		SplittableRandom random = new SplittableRandom(semilla);
+		List<Reto> retos = new ArrayList<>(cantidad);
+		for (int i = 0; i < cantidad; i++) {
+			String deporte = DEPORTES[random.nextInt(DEPORTES.length)];
+			retos.add(new Reto((long) i, "Reto " + i, "2024-01-01", "2024-12-31", "distancia", deporte,
+				String.valueOf(10 + random.nextInt(50)), String.valueOf(100 + random.nextInt(900))));
+		}
+		return Collections.unmodifiableList(retos);
+	}
+
+	public long getTotalGeneradas() {
+		return (long) retos.size() * sesionesPorReto;
+	}
+
+	public int getUsuarios() {
+		return usuarios;
+	}
+
+	public List<Reto> retos() {
+		return retos;
+	}
+
+	public Reto reto(long id) {
+		return id >= 0 && id < retos.size() ? retos.get((int) id) : null;
+	}
+
+	public List<Reto> retosDeDeporte(String deporte) {
+		return retos.stream().filter(reto -> reto.deporte().equalsIgnoreCase(deporte)).toList();
+	}
+
+	// Un tercio de los retos, distinto para cada usuario
+	public List<Reto> retosAceptados(int usuario) {
+		return retos.stream().filter(reto -> (reto.id() + usuario) % 3 == 0).toList();
+	}
+
+	/**
+	 * Generated or saved session with that id, or null.
+	 */
+	public Sesion sesion(long id) {
+		if (id >= 0 && id < getTotalGeneradas()) {
+			return generar(id);
+		}
+		return guardadas.get(id);
+	}
+
+	private Sesion generar(long id) {
+		// Cada sesion sale siempre igual de la semilla y su id, sin depender de las demas
+		SplittableRandom random = new SplittableRandom(semilla * 0x9E3779B97F4A7C15L + id);
+		Reto reto = retos.get((int) (id / sesionesPorReto));
+		long horaInicio = INICIO + (id % (24 * 366)) * HORA + random.nextInt(60) * 60_000L;
+		float duracion = 0.5f + (float) random.nextDouble() * 3;
+		float velocidad = reto.deporte().equals("cycling") ? 15 + random.nextInt(20) : 8 + random.nextInt(6);
+		return new Sesion(id, "Sesion " + id, reto.deporte(), duracion * velocidad, horaInicio,
+			horaInicio + (long) (duracion * HORA), duracion);
+	}
+
+	/**
+	 * Number of sessions of a reto, generated and saved.
+	 */
+	public long contarSesionesDeReto(long retoId) {
+		if (reto(retoId) == null) {
+			return 0;
+		}
+		return sesionesPorReto + guardadasPorReto.getOrDefault(retoId, List.of()).size();
+	}
+
+	/**
+	 * Sessions of a reto from position desde, at most max, generated lazily.
+	 */
+	public Stream<Sesion> sesionesDeReto(long retoId, long desde, long max) {
+		if (reto(retoId) == null) {
+			return Stream.empty();
+		}
+		long primera = retoId * sesionesPorReto;
+		Stream<Sesion> generadas = LongStream.range(Math.min(desde, sesionesPorReto), sesionesPorReto)
+			.mapToObj(i -> generar(primera + i));
+		List<Sesion> propias = copia(guardadasPorReto.get(retoId));
+		Stream<Sesion> guardadasReto = propias.stream().skip(Math.max(0, desde - sesionesPorReto));
+		return Stream.concat(generadas, guardadasReto).limit(max);
+	}
+
+	public long contarSesionesDeUsuario(int usuario) {
+		long total = getTotalGeneradas();
+		long generadas = total > usuario ? (total - usuario - 1) / usuarios + 1 : 0;
+		return generadas + guardadasPorUsuario.getOrDefault(usuario, List.of()).size();
+	}
+
+	/**
+	 * Sessions of a user from position desde, at most max, generated lazily.
+	 */
+	public Stream<Sesion> sesionesDeUsuario(int usuario, long desde, long max) {
+		long total = getTotalGeneradas();
+		long generadas = total > usuario ? (total - usuario - 1) / usuarios + 1 : 0;
+		Stream<Sesion> propias = LongStream.range(Math.min(desde, generadas), generadas)
+			.mapToObj(i -> generar(usuario + i * usuarios));
+		Stream<Sesion> guardadasUsuario = copia(guardadasPorUsuario.get(usuario)).stream()
+			.skip(Math.max(0, desde - generadas));
+		return Stream.concat(propias, guardadasUsuario).limit(max);
+	}
+
+	private static List<Sesion> copia(List<Sesion> lista) {
+		if (lista == null) {
+			return List.of();
+		}
+		synchronized (lista) {
+			return new ArrayList<>(lista);
+		}
+	}
+
+	/**
+	 * Stores a session saved by a user and returns it with its new id. With a key
+	 * already seen, nothing is stored and the first session is returned.
+	 */
+	public Sesion guardar(long retoId, int usuario, Sesion sesion, String claveIdempotencia) {
+		if (claveIdempotencia != null) {
+			return porClave.computeIfAbsent(claveIdempotencia, clave -> almacenar(retoId, usuario, sesion));
+		}
+		return almacenar(retoId, usuario, sesion);
+	}
+
+	private Sesion almacenar(long retoId, int usuario, Sesion sesion) {
+		Sesion guardada = new Sesion(siguienteId.getAndIncrement(), sesion.titulo(), sesion.deporte(),
+			sesion.distancia(), sesion.horaInicio(), sesion.horaFin(), sesion.duracion());
+		guardadas.put(guardada.id(), guardada);
+		guardadasPorReto.computeIfAbsent(retoId, id -> Collections.synchronizedList(new ArrayList<>())).add(guardada);
+		guardadasPorUsuario.computeIfAbsent(usuario, id -> Collections.synchronizedList(new ArrayList<>()))
+			.add(guardada);
+		return guardada;
+	}
+
+	public int getGuardadas() {
+		return guardadas.size();
+	}
+
+	// Usuario al que pertenece un email
+	public int usuario(String email) {
+		return Math.floorMod(email == null ? 0 : email.hashCode(), usuarios);
+	}
+}
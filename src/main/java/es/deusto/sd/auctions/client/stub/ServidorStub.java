@@ -0,0 +1,535 @@
+package es.deusto.sd.auctions.client.stub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.ConfiguracionHttp;
+import es.deusto.sd.auctions.client.proxies.Serializacion;
+
+/**
+ * ServidorStub is an in-process HTTP server that implements every endpoint the
+ * proxies call (/autorizacion/login|logout, /strava/retos, /strava/retos/{id}/sesiones,
+ * /strava/sesion/usuario, /strava/sesion/{id}, /strava/reto/retosAceptados, the
+ * reto details, the batch endpoints) over the synthetic data of DatosStub. The
+ * clients, the benchmarks and the integration tests can run against it without
+ * the real server, either starting it in-process or with its main method.
+ *
+ * It speaks the same protocol extensions as the proxies: page/size and cursor
+ * paging with X-Next-Cursor, ETag and If-None-Match, Idempotency-Key on saves,
+ * Smile when the Accept header asks for it first, and gzip answers and request
+ * bodies. Long lists are generated and written while they are sent.
+ *
+ * Every request can be delayed by a fixed time plus a random one, answered with
+ * a 503 or dropped without an answer, with the configured probabilities, to
+ * exercise the timeouts, retries and circuit breakers of the clients.
+ */
+public class ServidorStub implements AutoCloseable {
+	private static final Pattern RETO = Pattern.compile("/(?:strava/reto|auctions/retos)/(\\d+)");
+	private static final Pattern SESIONES_RETO = Pattern.compile("/strava/retos/(\\d+)/sesiones");
+	private static final Pattern SESION = Pattern.compile("/strava/sesion/(\\d+)");
+	private static final Pattern RETOS_DEPORTE = Pattern.compile("/auctions/retos/([^/]+)");
+	private static final String CABECERA_CURSOR = "X-Next-Cursor";
+	private static final String PREFIJO_CURSOR = "s:";
+
+	/**
+	 * Port (0 for any free one), data seed and sizes, injected latency (fixed plus
+	 * a uniform random part), probabilities of answering 503 and of dropping the
+	 * connection, and whether answers are gzipped when the client accepts it.
+	 */
+	public record Configuracion(int puerto, long semilla, int retos, int sesionesPorReto, int usuarios,
+			Duration retardo, Duration variacionRetardo, double tasaErrores, double tasaCortes, boolean comprimir) {
+
+		public Configuracion {
+			if (tasaErrores < 0 || tasaErrores > 1 || tasaCortes < 0 || tasaCortes > 1) {
+				throw new IllegalArgumentException("Las tasas de error deben estar entre 0 y 1");
+			}
+		}
+
+		public static Configuracion porDefecto() {
+			return new Configuracion(8080, 42, 100, 1000, 50, Duration.ZERO, Duration.ZERO, 0, 0, true);
+		}
+
+		/**
+		 * Reads the stub.* properties (puerto, semilla, retos, sesiones-por-reto,
+		 * usuarios, retardo, variacion-retardo, tasa-errores, tasa-cortes, comprimir).
+		 */
+		public static Configuracion desde(Properties propiedades) {
+			Configuracion defecto = porDefecto();
+			return new Configuracion(
+				Integer.parseInt(propiedades.getProperty("stub.puerto", String.valueOf(defecto.puerto())).trim()),
+				Long.parseLong(propiedades.getProperty("stub.semilla", String.valueOf(defecto.semilla())).trim()),
+				Integer.parseInt(propiedades.getProperty("stub.retos", String.valueOf(defecto.retos())).trim()),
+				Integer.parseInt(propiedades.getProperty("stub.sesiones-por-reto",
+					String.valueOf(defecto.sesionesPorReto())).trim()),
+				Integer.parseInt(propiedades.getProperty("stub.usuarios", String.valueOf(defecto.usuarios())).trim()),
+				ConfiguracionHttp.duracion(propiedades.getProperty("stub.retardo"), defecto.retardo()),
+				ConfiguracionHttp.duracion(propiedades.getProperty("stub.variacion-retardo"),
+					defecto.variacionRetardo()),
+				Double.parseDouble(propiedades.getProperty("stub.tasa-errores",
+					String.valueOf(defecto.tasaErrores())).trim()),
+				Double.parseDouble(propiedades.getProperty("stub.tasa-cortes",
+					String.valueOf(defecto.tasaCortes())).trim()),
+				Boolean.parseBoolean(propiedades.getProperty("stub.comprimir",
+					String.valueOf(defecto.comprimir())).trim()));
+		}
+
+		public Configuracion conPuerto(int puerto) {
+			return new Configuracion(puerto, semilla, retos, sesionesPorReto, usuarios, retardo, variacionRetardo,
+				tasaErrores, tasaCortes, comprimir);
+		}
+
+		public Configuracion conRetardo(Duration retardo, Duration variacionRetardo) {
+			return new Configuracion(puerto, semilla, retos, sesionesPorReto, usuarios, retardo, variacionRetardo,
+				tasaErrores, tasaCortes, comprimir);
+		}
+
+		public Configuracion conErrores(double tasaErrores, double tasaCortes) {
+			return new Configuracion(puerto, semilla, retos, sesionesPorReto, usuarios, retardo, variacionRetardo,
+				tasaErrores, tasaCortes, comprimir);
+		}
+	}
+
+	// Respuesta que no se puede dar (token invalido, id inexistente...)
+	private static class ErrorPeticion extends RuntimeException {
+		final int estado;
+
+		ErrorPeticion(int estado, String mensaje) {
+			super(mensaje);
+			this.estado = estado;
+		}
+	}
+
+	private final Configuracion configuracion;
+	private final DatosStub datos;
+	private final HttpServer servidor;
+	// Cada peticion en su propio hilo virtual: el retardo inyectado no encola las demas
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Map<String, Integer> sesionesAbiertas = new ConcurrentHashMap<>();
+	// Tokens que el logout no invalida, para benchmarks que repiten siempre la misma llamada
+	private final Map<String, Integer> tokensFijos = new ConcurrentHashMap<>();
+	private final String etagRetos;
+
+	private final LongAdder peticiones = new LongAdder();
+	private final LongAdder erroresInyectados = new LongAdder();
+	private final LongAdder cortesInyectados = new LongAdder();
+
+	/**
+	 * Generates the data and starts listening on localhost.
+	 */
+	public ServidorStub(Configuracion configuracion) throws IOException {
+		this.configuracion = configuracion;
+		this.datos = new DatosStub(configuracion.semilla(), configuracion.retos(), configuracion.sesionesPorReto(),
+			configuracion.usuarios());
+		this.etagRetos = "\"retos-" + configuracion.semilla() + "-" + configuracion.retos() + "\"";
+		this.servidor = HttpServer.create(new InetSocketAddress("localhost", configuracion.puerto()), 4096);
+		this.servidor.createContext("/", this::responder);
+		this.servidor.setExecutor(executor);
+		this.servidor.start();
+	}
+
+	public static void main(String[] args) throws IOException {
+		Properties propiedades = new Properties();
+		for (String clave : System.getProperties().stringPropertyNames()) {
+			if (clave.startsWith("stub.")) {
+				propiedades.setProperty(clave, System.getProperty(clave));
+			}
+		}
+		// Argumentos clave=valor, p. ej. puerto=8080 sesiones-por-reto=10000 retardo=20ms
+		for (String argumento : args) {
+			int igual = argumento.indexOf('=');
+			if (igual <= 0) {
+				throw new IllegalArgumentException("Argumento no válido: " + argumento + " (se espera clave=valor)");
+			}
+			String clave = argumento.substring(0, igual).replaceFirst("^-+", "");
+			propiedades.setProperty(clave.startsWith("stub.") ? clave : "stub." + clave, argumento.substring(igual + 1));
+		}
+
+		ServidorStub stub = new ServidorStub(Configuracion.desde(propiedades));
+		Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+		System.out.println("Servidor stub en " + stub.getBaseUrl() + ": " + stub.datos.retos().size() + " retos, "
+			+ stub.datos.getTotalGeneradas() + " sesiones, " + stub.datos.getUsuarios() + " usuarios");
+	}
+
+	public Configuracion getConfiguracion() {
+		return configuracion;
+	}
+
+	public DatosStub getDatos() {
+		return datos;
+	}
+
+	public int getPuerto() {
+		return servidor.getAddress().getPort();
+	}
+
+	// URL base para ConfiguracionHttp o api.base.url
+	public String getBaseUrl() {
+		return "http://localhost:" + getPuerto();
+	}
+
+	/**
+	 * Registers a token of the user of that email that never expires, not even on
+	 * logout, so a benchmark can call the authenticated endpoints without logging in.
+	 */
+	public void registrarToken(String token, String email) {
+		tokensFijos.put(token, datos.usuario(email));
+	}
+
+	public long getPeticiones() {
+		return peticiones.sum();
+	}
+
+	public long getErroresInyectados() {
+		return erroresInyectados.sum();
+	}
+
+	public long getCortesInyectados() {
+		return cortesInyectados.sum();
+	}
+
+	@Override
+	public void close() {
+		servidor.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void responder(HttpExchange exchange) throws IOException {
+		peticiones.increment();
+		try (exchange) {
+			byte[] cuerpo = leerCuerpo(exchange);
+			if (!inyectar(exchange)) {
+				return;
+			}
+			try {
+				atender(exchange, cuerpo);
+			} catch (ErrorPeticion e) {
+				enviarTexto(exchange, e.estado, e.getMessage());
+			} catch (IllegalArgumentException e) {
+				enviarTexto(exchange, 400, e.getMessage());
+			}
+		}
+	}
+
+	// Retardo y fallos inyectados; false si la peticion ya no debe contestarse
+	private boolean inyectar(HttpExchange exchange) throws IOException {
+		long retardo = configuracion.retardo().toNanos();
+		long variacion = configuracion.variacionRetardo().toNanos();
+		if (variacion > 0) {
+			retardo += ThreadLocalRandom.current().nextLong(variacion + 1);
+		}
+		if (retardo > 0) {
+			try {
+				Thread.sleep(Duration.ofNanos(retardo));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		double azar = ThreadLocalRandom.current().nextDouble();
+		if (azar < configuracion.tasaCortes()) {
+			// Se cierra la conexion sin contestar: el cliente ve un error de E/S
+			cortesInyectados.increment();
+			exchange.close();
+			return false;
+		}
+		if (azar < configuracion.tasaCortes() + configuracion.tasaErrores()) {
+			erroresInyectados.increment();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			enviarTexto(exchange, 503, "Error inyectado por el servidor stub");
+			return false;
+		}
+		return true;
+	}
+
+	private void atender(HttpExchange exchange, byte[] cuerpo) throws IOException {
+		String metodo = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		Map<String, String> consulta = consulta(exchange.getRequestURI().getRawQuery());
+		Matcher m;
+
+		if (metodo.equals("POST")) {
+			if (path.equals("/autorizacion/login")) {
+				Credendiales credenciales = Serializacion.json().readValue(cuerpo, Credendiales.class);
+				if (credenciales.passward() == null || credenciales.passward().isEmpty()) {
+					throw new ErrorPeticion(401, "Credenciales no válidas");
+				}
+				String token = UUID.randomUUID().toString();
+				sesionesAbiertas.put(token, datos.usuario(credenciales.email()));
+				enviarTexto(exchange, 200, token);
+			} else if (path.equals("/autorizacion/logout")) {
+				String token = new String(cuerpo, StandardCharsets.UTF_8).trim();
+				// RestTemplate envia el token como cadena JSON
+				if (token.length() >= 2 && token.startsWith("\"") && token.endsWith("\"")) {
+					token = token.substring(1, token.length() - 1);
+				}
+				if (sesionesAbiertas.remove(token) == null && !tokensFijos.containsKey(token)) {
+					throw new ErrorPeticion(401, "Token no válido");
+				}
+				exchange.sendResponseHeaders(204, -1);
+			} else if ((m = SESIONES_RETO.matcher(path)).matches()) {
+				long retoId = Long.parseLong(m.group(1));
+				int usuario = usuario(consulta.get("token"));
+				if (datos.reto(retoId) == null) {
+					throw new ErrorPeticion(404, "Reto no encontrado");
+				}
+				Sesion sesion = Serializacion.json().readValue(cuerpo, Sesion.class);
+				datos.guardar(retoId, usuario, sesion, exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+				exchange.sendResponseHeaders(201, -1);
+			} else {
+				throw new ErrorPeticion(404, "No existe " + path);
+			}
+			return;
+		}
+		if (!metodo.equals("GET")) {
+			throw new ErrorPeticion(405, "Método no permitido");
+		}
+
+		if (path.equals("/strava/retos")) {
+			enviarLista(exchange, consulta, datos.retos().size(), (desde, max) -> datos.retos().stream()
+				.skip(desde).limit(max), etagRetos);
+		} else if (path.equals("/strava/retos/lote")) {
+			List<Reto> encontrados = new ArrayList<>();
+			for (long id : ids(consulta)) {
+				Reto reto = datos.reto(id);
+				if (reto != null) {
+					encontrados.add(reto);
+				}
+			}
+			enviarLista(exchange, Map.of(), encontrados.size(), (desde, max) -> encontrados.stream(), null);
+		} else if (path.equals("/strava/sesiones/lote")) {
+			List<Sesion> encontradas = new ArrayList<>();
+			for (long id : ids(consulta)) {
+				Sesion sesion = datos.sesion(id);
+				if (sesion != null) {
+					encontradas.add(sesion);
+				}
+			}
+			enviarLista(exchange, Map.of(), encontradas.size(), (desde, max) -> encontradas.stream(), null);
+		} else if (path.equals("/strava/reto/retosAceptados")) {
+			List<Reto> aceptados = datos.retosAceptados(usuario(consulta.get("Token")));
+			enviarLista(exchange, consulta, aceptados.size(), (desde, max) -> aceptados.stream().skip(desde)
+				.limit(max), null);
+		} else if (path.equals("/strava/sesion/usuario")) {
+			int usuario = usuario(consulta.get("token"));
+			enviarLista(exchange, consulta, datos.contarSesionesDeUsuario(usuario),
+				(desde, max) -> datos.sesionesDeUsuario(usuario, desde, max), null);
+		} else if ((m = SESIONES_RETO.matcher(path)).matches()) {
+			long retoId = Long.parseLong(m.group(1));
+			if (datos.reto(retoId) == null) {
+				throw new ErrorPeticion(404, "Reto no encontrado");
+			}
+			long total = datos.contarSesionesDeReto(retoId);
+			// Cambia cuando se guarda una sesion en el reto
+			String etag = "\"sesiones-" + configuracion.semilla() + "-" + retoId + "-" + total + "\"";
+			enviarLista(exchange, consulta, total, (desde, max) -> datos.sesionesDeReto(retoId, desde, max), etag);
+		} else if ((m = SESION.matcher(path)).matches()) {
+			Sesion sesion = datos.sesion(Long.parseLong(m.group(1)));
+			if (sesion == null) {
+				throw new ErrorPeticion(404, "Sesión no encontrada");
+			}
+			enviarObjeto(exchange, sesion, null);
+		} else if ((m = RETO.matcher(path)).matches()) {
+			Reto reto = datos.reto(Long.parseLong(m.group(1)));
+			if (reto == null) {
+				throw new ErrorPeticion(404, "Reto no encontrado");
+			}
+			enviarObjeto(exchange, reto, etagRetos);
+		} else if ((m = RETOS_DEPORTE.matcher(path)).matches()) {
+			List<Reto> retos = datos.retosDeDeporte(URLDecoder.decode(m.group(1), StandardCharsets.UTF_8));
+			enviarLista(exchange, consulta, retos.size(), (desde, max) -> retos.stream().skip(desde).limit(max), null);
+		} else {
+			throw new ErrorPeticion(404, "No existe " + path);
+		}
+	}
+
+	private int usuario(String token) {
+		Integer usuario = token != null ? sesionesAbiertas.getOrDefault(token, tokensFijos.get(token)) : null;
+		if (usuario == null) {
+			throw new ErrorPeticion(401, "Token no válido");
+		}
+		return usuario;
+	}
+
+	@FunctionalInterface
+	private interface Tramo<T> {
+		Stream<T> desde(long desde, long max);
+	}
+
+	/**
+	 * Answers a list. With page/size or cursor/size in the query only that page is
+	 * sent, with X-Next-Cursor (empty on the last page); otherwise the whole list.
+	 */
+	private <T> void enviarLista(HttpExchange exchange, Map<String, String> consulta, long total, Tramo<T> tramo,
+			String etag) throws IOException {
+		String tamanio = consulta.get("size");
+		if (tamanio == null) {
+			if (noModificado(exchange, etag)) {
+				return;
+			}
+			try (Stream<T> elementos = tramo.desde(0, Long.MAX_VALUE)) {
+				enviarElementos(exchange, elementos.iterator());
+			}
+			return;
+		}
+
+		int porPagina = Integer.parseInt(tamanio);
+		if (porPagina <= 0) {
+			throw new IllegalArgumentException("Tamaño de página no válido: " + tamanio);
+		}
+		long desde;
+		String cursor = consulta.get("cursor");
+		if (cursor != null) {
+			if (!cursor.startsWith(PREFIJO_CURSOR)) {
+				throw new IllegalArgumentException("Cursor no válido: " + cursor);
+			}
+			desde = Long.parseLong(cursor.substring(PREFIJO_CURSOR.length()));
+		} else {
+			desde = Long.parseLong(consulta.getOrDefault("page", "0")) * porPagina;
+		}
+		long hasta = Math.min(total, desde + porPagina);
+		exchange.getResponseHeaders().set(CABECERA_CURSOR, hasta < total ? PREFIJO_CURSOR + hasta : "");
+		try (Stream<T> elementos = tramo.desde(desde, porPagina)) {
+			enviarElementos(exchange, elementos.iterator());
+		}
+	}
+
+	private boolean noModificado(HttpExchange exchange, String etag) throws IOException {
+		if (etag == null) {
+			return false;
+		}
+		exchange.getResponseHeaders().set("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			exchange.sendResponseHeaders(304, -1);
+			return true;
+		}
+		return false;
+	}
+
+	private void enviarObjeto(HttpExchange exchange, Object objeto, String etag) throws IOException {
+		if (noModificado(exchange, etag)) {
+			return;
+		}
+		byte[] cuerpo = mapper(exchange).writeValueAsBytes(objeto);
+		exchange.getResponseHeaders().set("Content-Type", tipo(exchange));
+		exchange.sendResponseHeaders(200, cuerpo.length);
+		try (OutputStream salida = exchange.getResponseBody()) {
+			salida.write(cuerpo);
+		}
+	}
+
+	// La lista se escribe mientras se genera, con codificacion chunked
+	private void enviarElementos(HttpExchange exchange, Iterator<?> elementos) throws IOException {
+		ObjectMapper mapper = mapper(exchange);
+		exchange.getResponseHeaders().set("Content-Type", tipo(exchange));
+		boolean gzip = configuracion.comprimir() && aceptaGzip(exchange);
+		if (gzip) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream salida = exchange.getResponseBody();
+		if (gzip) {
+			salida = new GZIPOutputStream(salida, 64 * 1024);
+		}
+		// Sin vaciar tras cada elemento: cada flush seria un chunk HTTP de unos pocos bytes
+		ObjectWriter escritor = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (JsonGenerator generador = mapper.getFactory().createGenerator(salida)) {
+			generador.writeStartArray();
+			while (elementos.hasNext()) {
+				escritor.writeValue(generador, elementos.next());
+			}
+			generador.writeEndArray();
+		}
+	}
+
+	private static void enviarTexto(HttpExchange exchange, int estado, String texto) throws IOException {
+		byte[] cuerpo = texto.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(estado, cuerpo.length);
+		try (OutputStream salida = exchange.getResponseBody()) {
+			salida.write(cuerpo);
+		}
+	}
+
+	private static byte[] leerCuerpo(HttpExchange exchange) throws IOException {
+		InputStream entrada = exchange.getRequestBody();
+		if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+			entrada = new GZIPInputStream(entrada);
+		}
+		return entrada.readAllBytes();
+	}
+
+	private static boolean esSmile(HttpExchange exchange) {
+		String aceptados = exchange.getRequestHeaders().getFirst("Accept");
+		return aceptados != null && aceptados.startsWith(Serializacion.TIPO_SMILE);
+	}
+
+	private static ObjectMapper mapper(HttpExchange exchange) {
+		return esSmile(exchange) ? Serializacion.smile() : Serializacion.json();
+	}
+
+	private static String tipo(HttpExchange exchange) {
+		return esSmile(exchange) ? Serializacion.TIPO_SMILE : Serializacion.TIPO_JSON;
+	}
+
+	private static boolean aceptaGzip(HttpExchange exchange) {
+		String codificaciones = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		return codificaciones != null && codificaciones.toLowerCase().contains("gzip");
+	}
+
+	private static Map<String, String> consulta(String query) {
+		Map<String, String> parametros = new HashMap<>();
+		if (query == null || query.isEmpty()) {
+			return parametros;
+		}
+		for (String par : query.split("&")) {
+			int igual = par.indexOf('=');
+			String clave = URLDecoder.decode(igual >= 0 ? par.substring(0, igual) : par, StandardCharsets.UTF_8);
+			String valor = igual >= 0 ? URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8) : "";
+			parametros.putIfAbsent(clave, valor);
+		}
+		return parametros;
+	}
+
+	private static List<Long> ids(Map<String, String> consulta) {
+		List<Long> ids = new ArrayList<>();
+		for (String id : consulta.getOrDefault("ids", "").split(",")) {
+			if (!id.isBlank()) {
+				ids.add(Long.parseLong(id.trim()));
+			}
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,124 @@
+package es.deusto.sd.auctions.client.swing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * CargadorEnSegundoPlano runs the proxy calls of the Swing client on SwingWorker
+ * threads so the Event Dispatch Thread never waits on the network.
+ *
+ * Every load belongs to a named channel (e.g. "sesiones" or "detalle"). Starting
+ * a load on a channel cancels the one still pending or in flight on it, so quickly
+ * changing the selection never shows a stale answer. Loads can be debounced: the
+ * request is only sent once the channel has been quiet for the given delay.
+ * While any load is running the indicator callback receives true.
+ *
+ * All the methods must be called on the EDT, and all the callbacks run on it.
+ */
+public class CargadorEnSegundoPlano {
+	private final Map<String, Timer> pendientes = new HashMap<>();
+	private final Map<String, SwingWorker<?, ?>> enCurso = new HashMap<>();
+	private final Consumer<Boolean> indicadorCarga;
+	private int activas;
+
+	public CargadorEnSegundoPlano(Consumer<Boolean> indicadorCarga) {
+		this.indicadorCarga = indicadorCarga;
+	}
+
+	public <T> void cargar(String canal, Supplier<T> tarea, Consumer<T> alTerminar, Consumer<RuntimeException> alFallar) {
+		cargar(canal, 0, tarea, alTerminar, alFallar);
+	}
+
+	public <T> void cargar(String canal, int esperaMs, Supplier<T> tarea, Consumer<T> alTerminar,
+			Consumer<RuntimeException> alFallar) {
+		comprobarEdt();
+		cancelar(canal);
+
+		if (esperaMs <= 0) {
+			lanzar(canal, tarea, alTerminar, alFallar);
+			return;
+		}
+
+		Timer temporizador = new Timer(esperaMs, e -> {
+			pendientes.remove(canal);
+			lanzar(canal, tarea, alTerminar, alFallar);
+		});
+		temporizador.setRepeats(false);
+		pendientes.put(canal, temporizador);
+		temporizador.start();
+	}
+
+	/**
+	 * Cancels the pending or running load of the channel; its callbacks won't run.
+	 */
+	public void cancelar(String canal) {
+		comprobarEdt();
+		Timer temporizador = pendientes.remove(canal);
+		if (temporizador != null) {
+			temporizador.stop();
+		}
+		SwingWorker<?, ?> worker = enCurso.remove(canal);
+		if (worker != null) {
+			worker.cancel(true);
+		}
+	}
+
+	private <T> void lanzar(String canal, Supplier<T> tarea, Consumer<T> alTerminar, Consumer<RuntimeException> alFallar) {
+		SwingWorker<T, Void> worker = new SwingWorker<>() {
+			@Override
+			protected T doInBackground() {
+				return tarea.get();
+			}
+
+			@Override
+			protected void done() {
+				actualizarIndicador(-1);
+				if (enCurso.get(canal) == this) {
+					enCurso.remove(canal);
+				}
+				if (isCancelled()) {
+					return;
+				}
+
+				try {
+					alTerminar.accept(get());
+				} catch (CancellationException e) {
+					// Cancelada mientras terminaba: se descarta
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					Throwable causa = e.getCause();
+					alFallar.accept(causa instanceof RuntimeException runtimeException
+						? runtimeException : new RuntimeException(causa.getMessage(), causa));
+				}
+			}
+		};
+
+		enCurso.put(canal, worker);
+		actualizarIndicador(1);
+		worker.execute();
+	}
+
+	private void actualizarIndicador(int cambio) {
+		boolean antes = activas > 0;
+		activas += cambio;
+		boolean ahora = activas > 0;
+		if (antes != ahora) {
+			indicadorCarga.accept(ahora);
+		}
+	}
+
+	private static void comprobarEdt() {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			throw new IllegalStateException("CargadorEnSegundoPlano debe usarse desde el hilo de Swing");
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package es.deusto.sd.auctions.client.swing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.swing.table.AbstractTableModel;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * ModeloTablaSesiones is a read-only table model backed directly by the list of
+ * sessions returned by the proxy. Cells are read from the Sesion records only when
+ * the JTable paints them, so no row arrays are built and only the visible rows are
+ * ever touched.
+ *
+ * Sorting and filtering are expressed as a Vista: an array with the indices of the
+ * visible sessions in display order. calcularVista is a pure function meant to run
+ * on a background thread over an immutable copy of the sessions taken on the EDT
+ * (instantanea); the result is installed on the EDT with aplicarVista,
+ * which fires a single change event. Sessions that arrive in batches are appended
+ * with anadirLote, also with one event per batch.
+ */
+public class ModeloTablaSesiones extends AbstractTableModel {
+	private static final long serialVersionUID = 1L;
+
+	private static final String[] COLUMNAS = { "Id", "Titulo", "Deporte" };
+
+	/**
+	 * Visible rows of a list of sessions: indices into the list, in display order.
+	 * A null array means every session, in its original order. generacion is the
+	 * one of the list the view was computed from.
+	 */
+	public record Vista(long generacion, int[] indices) {}
+
+	/**
+	 * Immutable copy of the sessions of the model, to compute a view from it off
+	 * the EDT while the model keeps appending to its own list.
+	 */
+	public record Instantanea(long generacion, List<Sesion> sesiones) {}
+
+	private List<Sesion> sesiones = new ArrayList<>();
+	private int[] indices;
+	// Cambia cada vez que se sustituye la lista: las vistas calculadas antes dejan de valer
+	private long generacion;
+
+	@Override
+	public int getRowCount() {
+		return indices != null ? indices.length : sesiones.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNAS.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMNAS[column];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column) {
+		return column == 0 ? Long.class : String.class;
+	}
+
+	@Override
+	public boolean isCellEditable(int row, int column) {
+		return false;
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		Sesion sesion = getSesion(row);
+		return switch (column) {
+			case 0 -> sesion.id();
+			case 1 -> sesion.titulo();
+			case 2 -> sesion.deporte();
+			default -> null;
+		};
+	}
+
+	public Sesion getSesion(int row) {
+		return sesiones.get(indices != null ? indices[row] : row);
+	}
+
+	/**
+	 * Current sessions, unfiltered and in their original order.
+	 */
+	public List<Sesion> getSesiones() {
+		return sesiones;
+	}
+
+	/**
+	 * Copy of the sessions received so far. Must be called on the EDT.
+	 */
+	public Instantanea instantanea() {
+		return new Instantanea(generacion, List.copyOf(sesiones));
+	}
+
+	public void setSesiones(List<Sesion> sesiones) {
+		this.sesiones = sesiones != null ? new ArrayList<>(sesiones) : new ArrayList<>();
+		this.indices = null;
+		generacion++;
+		fireTableDataChanged();
+	}
+
+	public void limpiar() {
+		setSesiones(null);
+	}
+
+	/**
+	 * Appends a batch of sessions. While a sort or a filter is applied the new
+	 * sessions are kept but not shown until the next aplicarVista.
+	 */
+	public void anadirLote(List<Sesion> lote) {
+		if (lote.isEmpty()) {
+			return;
+		}
+		int primera = sesiones.size();
+		sesiones.addAll(lote);
+		if (indices == null) {
+			fireTableRowsInserted(primera, sesiones.size() - 1);
+		}
+	}
+
+	/**
+	 * Installs a view computed with calcularVista. It is ignored if the sessions
+	 * changed since the view was computed.
+	 */
+	public void aplicarVista(Vista vista) {
+		if (vista.generacion() != generacion) {
+			return;
+		}
+		this.indices = vista.indices();
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Computes the visible rows of a snapshot for the given filter and order. Runs
+	 * off the EDT: it only reads the immutable copy, never the list of the model,
+	 * and its indices stay valid because the model only appends to that list.
+	 */
+	public static Vista calcularVista(Instantanea instantanea, Predicate<Sesion> filtro, Comparator<Sesion> orden) {
+		long generacion = instantanea.generacion();
+		List<Sesion> sesiones = instantanea.sesiones();
+		int tamanio = sesiones.size();
+		if (filtro == null && orden == null) {
+			return new Vista(generacion, null);
+		}
+
+		int[] seleccion = new int[tamanio];
+		int visibles = 0;
+		for (int i = 0; i < tamanio; i++) {
+			if (filtro == null || filtro.test(sesiones.get(i))) {
+				seleccion[visibles++] = i;
+			}
+		}
+
+		if (orden == null) {
+			return new Vista(generacion, Arrays.copyOf(seleccion, visibles));
+		}
+
+		// Se ordenan los indices boxeados una sola vez y se vuelven a un array primitivo
+		Integer[] ordenados = new Integer[visibles];
+		for (int i = 0; i < visibles; i++) {
+			ordenados[i] = seleccion[i];
+		}
+		Arrays.sort(ordenados, (a, b) -> orden.compare(sesiones.get(a), sesiones.get(b)));
+
+		int[] resultado = new int[visibles];
+		for (int i = 0; i < visibles; i++) {
+			resultado[i] = ordenados[i];
+		}
+		return new Vista(generacion, resultado);
+	}
+
+	/**
+	 * Comparator for a column of the table, with nulls last.
+	 */
+	public static Comparator<Sesion> ordenPorColumna(int column, boolean ascendente) {
+		Comparator<Sesion> orden = switch (column) {
+			case 0 -> Comparator.comparing(Sesion::id, Comparator.nullsLast(Comparator.naturalOrder()));
+			case 1 -> Comparator.comparing(Sesion::titulo, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+			default -> Comparator.comparing(Sesion::deporte, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+		};
+		return ascendente ? orden : orden.reversed();
+	}
+}
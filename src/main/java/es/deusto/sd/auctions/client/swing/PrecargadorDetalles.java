@@ -0,0 +1,189 @@
+package es.deusto.sd.auctions.client.swing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * PrecargadorDetalles fetches getDetalleSesion in the background for the rows the
+ * user is looking at, so a click on a row usually finds the detail already loaded.
+ *
+ * Prefetches run on a small pool of low-priority daemon threads whose size bounds
+ * the requests sent to the server at the same time. Each call to precargar replaces
+ * the prefetches still waiting in the queue: after a scroll only the rows now on
+ * screen matter. Results, and requests in flight, are kept in a small LRU cache by
+ * session id; failed loads are not kept.
+ */
+public class PrecargadorDetalles {
+	private final Function<Long, Sesion> cargador;
+	private final ThreadPoolExecutor executor;
+	private final Map<Long, Entrada> cache;
+
+	/**
+	 * Detail of a session: finished, in flight or waiting in the prefetch queue.
+	 */
+	private static class Entrada {
+		final CompletableFuture<Sesion> futuro = new CompletableFuture<>();
+		final AtomicBoolean reclamada = new AtomicBoolean();
+	}
+
+	public PrecargadorDetalles(Function<Long, Sesion> cargador, int concurrencia, int maxEntradas) {
+		this.cargador = cargador;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entrada> eldest) {
+				return size() > maxEntradas;
+			}
+		};
+
+		AtomicInteger contador = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(concurrencia, concurrencia, 30, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), tarea -> {
+				Thread hilo = new Thread(tarea, "precarga-detalles-" + contador.incrementAndGet());
+				hilo.setDaemon(true);
+				hilo.setPriority(Thread.MIN_PRIORITY);
+				return hilo;
+			});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues the prefetch of the given sessions, in order, dropping the prefetches
+	 * that had not started yet. Sessions already cached or in flight are skipped.
+	 */
+	public void precargar(Collection<Long> ids) {
+		List<Runnable> descartadas = new ArrayList<>();
+		executor.getQueue().drainTo(descartadas);
+		for (Runnable tarea : descartadas) {
+			((Precarga) tarea).descartar();
+		}
+
+		for (Long id : ids) {
+			if (id == null) {
+				continue;
+			}
+			Entrada entrada;
+			synchronized (cache) {
+				if (cache.containsKey(id)) {
+					continue;
+				}
+				entrada = new Entrada();
+				cache.put(id, entrada);
+			}
+			executor.execute(new Precarga(id, entrada));
+		}
+	}
+
+	/**
+	 * Detail already loaded, or null if it is not cached or still loading.
+	 */
+	public Sesion getSiEstaCargado(Long id) {
+		Entrada entrada;
+		synchronized (cache) {
+			entrada = cache.get(id);
+		}
+		if (entrada == null || !entrada.futuro.isDone() || entrada.futuro.isCompletedExceptionally()) {
+			return null;
+		}
+		return entrada.futuro.join();
+	}
+
+	/**
+	 * Returns the detail of the session, blocking. It reuses a prefetch already in
+	 * flight; if the prefetch is still queued the session is loaded right away on
+	 * the calling thread instead of waiting its turn.
+	 */
+	public Sesion obtener(Long id) {
+		Entrada entrada;
+		synchronized (cache) {
+			entrada = cache.get(id);
+			if (entrada == null || entrada.futuro.isCompletedExceptionally()) {
+				entrada = new Entrada();
+				cache.put(id, entrada);
+			}
+		}
+
+		if (entrada.reclamada.compareAndSet(false, true)) {
+			cargar(id, entrada);
+		}
+		return esperar(entrada.futuro);
+	}
+
+	public void invalidar() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public void cerrar() {
+		executor.shutdownNow();
+	}
+
+	private void cargar(Long id, Entrada entrada) {
+		try {
+			entrada.futuro.complete(cargador.apply(id));
+		} catch (RuntimeException e) {
+			entrada.futuro.completeExceptionally(e);
+			// Un error no se guarda: la siguiente peticion lo vuelve a intentar
+			synchronized (cache) {
+				cache.remove(id, entrada);
+			}
+		}
+	}
+
+	private static Sesion esperar(CompletableFuture<Sesion> futuro) {
+		try {
+			return futuro.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("La operación fue interrumpida", e);
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(causa.getMessage(), causa);
+		}
+	}
+
+	private class Precarga implements Runnable {
+		private final Long id;
+		private final Entrada entrada;
+
+		Precarga(Long id, Entrada entrada) {
+			this.id = id;
+			this.entrada = entrada;
+		}
+
+		@Override
+		public void run() {
+			// Si ya la ha cargado quien la pidio directamente, no se repite la llamada
+			if (entrada.reclamada.compareAndSet(false, true)) {
+				cargar(id, entrada);
+			}
+		}
+
+		// La precarga no llego a empezar: se olvida la entrada salvo que alguien la este cargando
+		void descartar() {
+			if (!entrada.reclamada.get()) {
+				synchronized (cache) {
+					cache.remove(id, entrada);
+				}
+			}
+		}
+	}
+}
@@ -6,15 +6,27 @@
 package es.deusto.sd.auctions.client.swing;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 
 import es.deusto.sd.auctions.client.data.Credendiales;
 import es.deusto.sd.auctions.client.data.Reto;
 import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.estadisticas.ProgresoRetos;
+import es.deusto.sd.auctions.client.proxies.AlmacenDisco;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.BatchingServiceProxy;
+import es.deusto.sd.auctions.client.proxies.CachingServiceProxy;
 import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
 import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasServiceProxy;
+import es.deusto.sd.auctions.client.proxies.Paginador;
+import es.deusto.sd.auctions.client.proxies.ResilienciaServiceProxy;
 
 /**
  * SwingClientController class acts as a Controller in the Model-View-Controller 
@@ -33,13 +45,48 @@ import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
  * (Description generated with ChatGPT 4o mini)
  */
 public class SwingClientController {
-	// Service proxy for interacting with the AuctionsService using HTTP-based implementation
-	private IAuctionsServiceProxy serviceProxy = new HttpServiceProxy();
+	// Metrics of the proxy layer, published through JMX and printed on logout
+	private final MetricasProxy metricas = new MetricasProxy();
+	// Service proxy for interacting with the AuctionsService using HTTP-based implementation,
+	// with the challenge catalogue cached so list selections don't hit the server every time
+	// and concurrent detail requests (clicks and prefetches) merged into batches; reads that
+	// fail because the server is unreachable are retried and a failing endpoint fails fast.
+	// The HttpClient is the one shared by the process, configured in cliente.properties
+	private IAuctionsServiceProxy serviceProxy = new MetricasServiceProxy(
+			new CachingServiceProxy(new BatchingServiceProxy(new ResilienciaServiceProxy(
+					new HttpServiceProxy(new AsyncHttpServiceProxy(metricas))))),
+			metricas);
 	// Token to be used during the session
     private String token;
+	// Sessions are fetched one page at a time, with the next page requested in the background
+	public static final int TAMANIO_PAGINA = 100;
+	private final ExecutorService precargaPaginas = Executors.newVirtualThreadPerTaskExecutor();
+	// Last retos and sessions received, kept on disk to show them as soon as the client starts;
+	// the file is rewritten in the background, one write at a time
+	private final AlmacenDisco almacen = new AlmacenDisco(AlmacenDisco.ficheroPorDefecto("swing"));
+	private final ExecutorService escrituraAlmacen = Executors.newSingleThreadExecutor(tarea -> {
+		Thread hilo = new Thread(tarea, "almacen-local");
+		hilo.setDaemon(true);
+		return hilo;
+	});
+	// Session details prefetched for the rows on screen; -Dswing.precarga.hilos bounds the parallel requests
+	private final PrecargadorDetalles precargador = new PrecargadorDetalles(
+			id -> serviceProxy.getDetalleSesion(id), Integer.getInteger("swing.precarga.hilos", 2), 500);
+	// Progress of each reto, updated with every page of sessions received
+	private final ProgresoRetos progresoRetos = new ProgresoRetos();
 
     
-    
+	public SwingClientController() {
+		metricas.registrarJmx("es.deusto.sd.auctions.client:type=MetricasProxy,name=swing");
+	}
+
+	public ProgresoRetos getProgresoRetos() {
+		return progresoRetos;
+	}
+	public MetricasProxy getMetricas() {
+		return metricas;
+	}
+
 	public String getToken() {
 		return token;
 	}
@@ -76,7 +123,19 @@ public class SwingClientController {
    }
     
    public List<Reto> getTodosRetos(){
-	   return serviceProxy.getTodosRetos();
+	   List<Reto> retos = serviceProxy.getTodosRetos();
+	   escrituraAlmacen.execute(() -> almacen.guardarRetos(retos));
+	   return retos;
+   }
+   // Datos de la ultima ejecucion; la primera llamada lee el fichero, asi que no debe hacerse en el EDT
+   public List<Reto> getRetosGuardados(){
+	   return almacen.leer().retos();
+   }
+   public List<Sesion> getSesionesGuardadas(long idReto){
+	   return almacen.leer().sesionesDe(idReto);
+   }
+   public void guardarSesionesLocales(long idReto, List<Sesion> sesiones){
+	   escrituraAlmacen.execute(() -> almacen.guardarSesiones(idReto, sesiones));
    }
    public List<Reto> getRetosXDeporte(String Deporte){
 	   return serviceProxy.getRetosXDeporte(Deporte);
@@ -92,8 +151,19 @@ public class SwingClientController {
    public List<Sesion> getSesionesXReto(long idReto){
 	   return serviceProxy.getSesionesPorReto(idReto);
    }
+   public Paginador<Sesion> paginarSesionesXReto(long idReto){
+	   return new Paginador<>(paginacion -> serviceProxy.getSesionesPorReto(idReto, paginacion),
+			   TAMANIO_PAGINA, precargaPaginas);
+   }
    public Sesion getDetalleDeSesion(Long IdSesion){
-	   return serviceProxy.getDetalleSesion(IdSesion);
+	   return precargador.obtener(IdSesion);
+   }
+   // Detalle ya precargado, o null si hay que pedirlo
+   public Sesion getDetalleDeSesionEnCache(Long IdSesion){
+	   return precargador.getSiEstaCargado(IdSesion);
+   }
+   public void precargarDetalles(Collection<Long> idsSesiones){
+	   precargador.precargar(idsSesiones);
    }
    
 }
\ No newline at end of file
@@ -11,7 +11,13 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -19,6 +25,7 @@ import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPasswordField;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
@@ -26,11 +33,16 @@ import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 
 import es.deusto.sd.auctions.client.data.Reto;
 import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.estadisticas.ColumnasSesiones;
+import es.deusto.sd.auctions.client.estadisticas.ProgresoRetos;
+import es.deusto.sd.auctions.client.estadisticas.ResumenSesiones;
+import es.deusto.sd.auctions.client.proxies.Paginador;
 
 
 
@@ -54,11 +66,34 @@ public class SwingClientGUI extends JFrame {
 	private JList<Reto> ListaRetos;
 
 	
-	private DefaultTableModel modeloTablaSesiones;
+	private ModeloTablaSesiones modeloTablaSesiones;
+	private JTextField txtFiltroSesiones;
+	private int columnaOrden = -1;
+	private boolean ordenAscendente = true;
+	// Paginas de sesiones del reto seleccionado; la siguiente se pide al acercarse al final de la tabla
+	private static final int MARGEN_FILAS = 20;
+	// Filas por encima y por debajo de las visibles cuyos detalles tambien se precargan
+	private static final int FILAS_ADYACENTES = 10;
+	private Paginador.IteradorPaginas<Sesion> paginasSesiones;
+	private boolean cargandoPagina;
+	// Datos del almacen local mostrados mientras llegan los del servidor
+	private Long retoSesiones;
+	private boolean sesionesProvisionales;
+	private boolean retosDelServidor;
 	private JTable tablaSesiones;
+	// Copia en columnas de las sesiones de la tabla, para el resumen por deporte
+	private final ColumnasSesiones columnasSesiones = new ColumnasSesiones();
+	private JLabel lblResumenSesiones;
+	// Progreso del reto seleccionado, en milesimas
+	private JProgressBar barraProgreso;
 	private JScrollPane scrollTablaSesiones;
 	
 	private JLabel lblLogout;
+	private JLabel lblCargando;
+	
+	// Espera antes de pedir los datos de una seleccion, para no lanzar una peticion por cada fila recorrida
+	private static final int ESPERA_SELECCION_MS = 150;
+	private final CargadorEnSegundoPlano cargador;
 	private JLabel lblTitulo,lblDeporte,lblDistancia,lblHoraInicio,lblHoraFin,lblDuracion;
 	public SwingClientGUI(SwingClientController controller) {
 			this.controller = controller;
@@ -67,6 +102,14 @@ public class SwingClientGUI extends JFrame {
 				System.exit(0);
 		}
 		
+			lblCargando = new JLabel("Cargando...");
+			lblCargando.setVisible(false);
+			cargador = new CargadorEnSegundoPlano(cargando -> {
+				lblCargando.setVisible(cargando);
+				getContentPane().setCursor(cargando
+					? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+			});
+			
 			 if (token != null) {
 		            cargarMisRetos();
 		        }
@@ -96,6 +139,7 @@ public class SwingClientGUI extends JFrame {
 					performLogout();
 				}
 			});
+			pNorte.add(lblCargando);
 			pNorte.add(lblLogout);
 			
 			
@@ -132,18 +176,7 @@ public class SwingClientGUI extends JFrame {
 			
 			//JTable de sesiones
 			
-			String[] columnNames = {"Id", "Titulo", "Deporte"};
-			 modeloTablaSesiones = new DefaultTableModel(columnNames, 0) {
-				 	
-		            @Override
-		            public boolean isCellEditable(int row, int column) {
-		                return false; 
-		             
-		                
-		                
-		  
-		            }
-		        };
+			modeloTablaSesiones = new ModeloTablaSesiones();
 			tablaSesiones = new JTable(modeloTablaSesiones);
 	        tablaSesiones.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 			tablaSesiones.getSelectionModel().addListSelectionListener(e -> {
@@ -154,10 +187,57 @@ public class SwingClientGUI extends JFrame {
 			});
 		        
 		  
+			// Ordenar pulsando la cabecera: la ordenacion se calcula fuera del EDT
+			tablaSesiones.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+				public void mouseClicked(java.awt.event.MouseEvent evt) {
+					int columna = tablaSesiones.columnAtPoint(evt.getPoint());
+					if (columna != -1) {
+						ordenAscendente = columna != columnaOrden || !ordenAscendente;
+						columnaOrden = columna;
+						recalcularVistaSesiones(0);
+					}
+				}
+			});
+		  
 			scrollTablaSesiones = new JScrollPane(tablaSesiones);
 			scrollTablaSesiones.setBorder(new TitledBorder("Sesiones del reto"));
+			scrollTablaSesiones.getVerticalScrollBar().addAdjustmentListener(e -> {
+				comprobarSiguientePagina();
+				precargarDetallesVisibles();
+			});
+			// Tras cada cambio de filas (pagina nueva, orden, filtro) se precargan las que quedan a la vista
+			modeloTablaSesiones.addTableModelListener(e -> SwingUtilities.invokeLater(this::precargarDetallesVisibles));
 
-			pCentro.add(scrollTablaSesiones);
+			txtFiltroSesiones = new JTextField(20);
+			txtFiltroSesiones.getDocument().addDocumentListener(new DocumentListener() {
+				public void insertUpdate(DocumentEvent e) {
+					recalcularVistaSesiones(ESPERA_SELECCION_MS);
+				}
+
+				public void removeUpdate(DocumentEvent e) {
+					recalcularVistaSesiones(ESPERA_SELECCION_MS);
+				}
+
+				public void changedUpdate(DocumentEvent e) {
+					recalcularVistaSesiones(ESPERA_SELECCION_MS);
+				}
+			});
+
+			JPanel jPanelSesiones = new JPanel(new BorderLayout());
+			JPanel jPanelFiltro = new JPanel();
+			jPanelFiltro.add(new JLabel("Filtrar:"));
+			jPanelFiltro.add(txtFiltroSesiones);
+			barraProgreso = new JProgressBar(0, 1000);
+			barraProgreso.setStringPainted(true);
+			barraProgreso.setString("Sin reto");
+			jPanelFiltro.add(new JLabel("Progreso:"));
+			jPanelFiltro.add(barraProgreso);
+			jPanelSesiones.add(jPanelFiltro, BorderLayout.NORTH);
+			jPanelSesiones.add(scrollTablaSesiones, BorderLayout.CENTER);
+			lblResumenSesiones = new JLabel(" ");
+			jPanelSesiones.add(lblResumenSesiones, BorderLayout.SOUTH);
+
+			pCentro.add(jPanelSesiones);
 			
 			//detalles de la sesiones
 			
@@ -238,74 +318,71 @@ public class SwingClientGUI extends JFrame {
 	    }
 
 	private void performLogout() {
-		try {
+		cargador.cargar("logout", () -> {
 			controller.logout();
+			return null;
+		}, sinResultado -> {
+			System.out.println(controller.getMetricas().volcarTexto());
 			JOptionPane.showMessageDialog(this, "Cierre de sesión exitoso..");
 			System.exit(0);
-		} catch (RuntimeException e) {
-			JOptionPane.showMessageDialog(this, e.getMessage());
-		}
+		}, e -> JOptionPane.showMessageDialog(this, e.getMessage()));
 	}
 	
 	private void cargarMisRetos() {
-	    try {
-	        // Verificar que tenemos el token
-	        if (token == null) {
-	            System.err.println("No hay token disponible para cargar los retos");
-	            return;
-	        }
+	    // Verificar que tenemos el token
+	    if (token == null) {
+	        System.err.println("No hay token disponible para cargar los retos");
+	        return;
+	    }
 
-	        System.out.println("Cargando mis retos con token: " + token);
-	        List<Reto> misRetos = controller.getMisRetos(token);  // Pasar el token
-	        
-	        SwingUtilities.invokeLater(() -> {
-	            ListaRetos.setListData(misRetos.toArray(new Reto[0]));
-	            System.out.println("Retos cargados: " + misRetos.size());
-	        });
-	    } catch (RuntimeException e) {
+	    System.out.println("Cargando mis retos con token: " + token);
+	    // Comparte canal con CargarRetos: la lista muestra solo la ultima carga pedida
+	    cargador.cargar("retos", () -> controller.getMisRetos(token), misRetos -> {
+	        mostrarRetos(misRetos);
+	        System.out.println("Retos cargados: " + misRetos.size());
+	    }, e -> {
 	        System.err.println("Error al cargar mis retos: " + e.getMessage());
 	        JOptionPane.showMessageDialog(this, "Error al cargar tus retos: " + e.getMessage());
-	    }
+	    });
 	}
 	private void CargarRetos() {
-		try {
-			List<Reto> retos = controller.getTodosRetos();
+		// Primero lo guardado en disco, que se reemplaza en cuanto responde el servidor
+		cargador.cargar("retosLocales", controller::getRetosGuardados, guardados -> {
+			if (!retosDelServidor && !guardados.isEmpty()) {
+				ListaRetos.setListData(guardados.toArray(new Reto[0]));
+			}
+		}, e -> System.err.println("No se pudieron leer los retos guardados: " + e.getMessage()));
 
-			SwingUtilities.invokeLater(() -> {
-				ListaRetos.setListData(retos.toArray(new Reto[0]));
-			});
-		} catch (RuntimeException e) {
-			JOptionPane.showMessageDialog(this, e.getMessage());
+		cargador.cargar("retos", controller::getTodosRetos, retos -> {
+			retosDelServidor = true;
+			mostrarRetos(retos);
+		}, e -> JOptionPane.showMessageDialog(this, e.getMessage()));
+	}
+
+	// Reemplaza la lista conservando el reto seleccionado, si sigue estando
+	private void mostrarRetos(List<Reto> retos) {
+		Reto seleccionado = ListaRetos.getSelectedValue();
+		ListaRetos.setListData(retos.toArray(new Reto[0]));
+		if (seleccionado == null) {
+			return;
+		}
+		for (int i = 0; i < retos.size(); i++) {
+			if (seleccionado.id() != null && seleccionado.id().equals(retos.get(i).id())) {
+				ListaRetos.setSelectedIndex(i);
+				return;
+			}
 		}
 	}
 	
 	private void CargarSesiones(String token) {
 	    System.out.println("Cargando sesiones con token: " + token);
-	    	    try {
-	    	        List<Sesion> sesiones = controller.getTodasSesiones(token);
-	    	        System.out.println("Sesiones obtenidas: " + (sesiones != null ? sesiones.size(): null));
-	        SwingUtilities.invokeLater(() -> {
-	            // Limpiar la tabla actual
-	            DefaultTableModel model = (DefaultTableModel) tablaSesiones.getModel();
-	            model.setRowCount(0);
-
-	            // Añadir cada sesión a la tabla
-	            for (Sesion sesion : sesiones) {
-	                model.addRow(new Object[]{
-	                    sesion.id(),
-	                    sesion.titulo(),
-	                    sesion.deporte()
-	                });
-	            }
-	            
-	            // Refrescar la tabla
-	            tablaSesiones.repaint();
-	        });
-	    } catch (RuntimeException e) {
+	    cargador.cargar("sesiones", () -> controller.getTodasSesiones(token), sesiones -> {
+	        System.out.println("Sesiones obtenidas: " + (sesiones != null ? sesiones.size(): null));
+	        mostrarSesiones(sesiones);
+	    }, e -> {
 	        System.err.println("Error al cargar sesiones: " + e.getMessage());
-
 	        JOptionPane.showMessageDialog(this, e.getMessage());
-	    }
+	    });
 	}
 	
 	//Cargar
@@ -313,22 +390,183 @@ public class SwingClientGUI extends JFrame {
 	private void cargarSesionesXReto() {
 		Reto retoSeleccionado = ListaRetos.getSelectedValue();
 		System.out.println(retoSeleccionado);
-		if (retoSeleccionado != null) {
-			try {
-				List<Sesion> sesiones = controller.getSesionesXReto(retoSeleccionado.id());
 
-				SwingUtilities.invokeLater(() -> {
-					DefaultTableModel model = (DefaultTableModel) tablaSesiones.getModel();
-					model.setRowCount(0);
+		// Las sesiones y el detalle del reto anterior ya no sirven
+		cargador.cancelar("detalle");
+		limpiarSesiones();
 
-					for (Sesion sesion : sesiones ) {
-						model.addRow(new Object[] { sesion.id(), sesion.titulo(),sesion.deporte()});
-					}
-				});
-			} catch (RuntimeException e) {
-				JOptionPane.showMessageDialog(this, e.getMessage());
+		if (retoSeleccionado == null) {
+			retoSesiones = null;
+			mostrarProgreso();
+			return;
+		}
+
+		// Mientras llega la primera pagina se muestran las sesiones guardadas en disco
+		long retoId = retoSeleccionado.id();
+		retoSesiones = retoId;
+		// Lo contado en visitas anteriores se ve ya; las paginas que lleguen lo actualizan
+		controller.getProgresoRetos().definir(retoSeleccionado);
+		mostrarProgreso();
+		sesionesProvisionales = true;
+		cargador.cargar("sesionesLocales", () -> controller.getSesionesGuardadas(retoId), guardadas -> {
+			if (sesionesProvisionales && modeloTablaSesiones.getRowCount() == 0) {
+				anadirSesiones(guardadas);
+			}
+		}, e -> System.err.println("No se pudieron leer las sesiones guardadas: " + e.getMessage()));
+
+		// Solo se pide la primera pagina; el resto llega a medida que se baja por la tabla
+		paginasSesiones = controller.paginarSesionesXReto(retoId).paginas();
+		cargarPaginaSesiones(ESPERA_SELECCION_MS);
+	}
+
+	private void cargarPaginaSesiones(int esperaMs) {
+		Paginador.IteradorPaginas<Sesion> paginas = paginasSesiones;
+		cargandoPagina = true;
+		cargador.cargar("sesiones", esperaMs, paginas::next, pagina -> {
+			cargandoPagina = false;
+			boolean primera = sesionesProvisionales;
+			if (primera) {
+				cargador.cancelar("sesionesLocales");
+				sesionesProvisionales = false;
+				modeloTablaSesiones.limpiar();
+				columnasSesiones.limpiar();
+			}
+			anadirSesiones(pagina.elementos());
+			// Con la lista completa se recuenta; mientras, cada pagina suma solo sus sesiones nuevas
+			if (paginas.hasNext()) {
+				controller.getProgresoRetos().anadir(retoSesiones, pagina.elementos());
+			} else {
+				controller.getProgresoRetos().sincronizar(retoSesiones, modeloTablaSesiones.getSesiones());
 			}
+			mostrarProgreso();
+			// Se guarda lo recibido al llegar la primera pagina y al completar la lista
+			if (primera || !paginas.hasNext()) {
+				controller.guardarSesionesLocales(retoSesiones, new ArrayList<>(modeloTablaSesiones.getSesiones()));
+			}
+			// Si la pagina no llena la tabla se pide ya la siguiente
+			comprobarSiguientePagina();
+		}, e -> {
+			cargandoPagina = false;
+			paginasSesiones = null;
+			JOptionPane.showMessageDialog(this, e.getMessage());
+		});
+	}
+
+	private void comprobarSiguientePagina() {
+		if (paginasSesiones == null || cargandoPagina || !paginasSesiones.hasNext()) {
+			return;
+		}
+		Rectangle visible = tablaSesiones.getVisibleRect();
+		int ultimaVisible = tablaSesiones.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+		// -1: la tabla no llega al final de la vista
+		if (ultimaVisible == -1 || ultimaVisible >= tablaSesiones.getRowCount() - MARGEN_FILAS) {
+			cargarPaginaSesiones(0);
+		}
+	}
+
+	private void precargarDetallesVisibles() {
+		int filas = tablaSesiones.getRowCount();
+		if (filas == 0) {
+			return;
+		}
+		Rectangle visible = tablaSesiones.getVisibleRect();
+		int primera = tablaSesiones.rowAtPoint(new Point(0, visible.y));
+		int ultima = tablaSesiones.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+		primera = Math.max(0, (primera == -1 ? 0 : primera) - FILAS_ADYACENTES);
+		ultima = Math.min(filas - 1, (ultima == -1 ? filas - 1 : ultima) + FILAS_ADYACENTES);
+
+		List<Long> ids = new ArrayList<>(ultima - primera + 1);
+		for (int fila = primera; fila <= ultima; fila++) {
+			ids.add(modeloTablaSesiones.getSesion(tablaSesiones.convertRowIndexToModel(fila)).id());
+		}
+		controller.precargarDetalles(ids);
+	}
+
+	private void limpiarSesiones() {
+		cargador.cancelar("vista");
+		cargador.cancelar("sesionesLocales");
+		sesionesProvisionales = false;
+		cargador.cancelar("sesiones");
+		if (paginasSesiones != null) {
+			paginasSesiones.cancelar();
+			paginasSesiones = null;
+		}
+		cargandoPagina = false;
+		modeloTablaSesiones.limpiar();
+		cargador.cancelar("resumen");
+		columnasSesiones.limpiar();
+		lblResumenSesiones.setText(" ");
+		mostrarDetalleSesion(null);
+	}
+
+	private void anadirSesiones(List<Sesion> lote) {
+		modeloTablaSesiones.anadirLote(lote);
+		columnasSesiones.anadirTodas(retoSesiones, lote);
+		actualizarResumenSesiones();
+		if (columnaOrden != -1 || !txtFiltroSesiones.getText().isBlank()) {
+			recalcularVistaSesiones(ESPERA_SELECCION_MS);
+		}
+	}
+
+	private void mostrarSesiones(List<Sesion> sesiones) {
+		// Un unico evento para toda la lista; el orden y el filtro se aplican despues
+		modeloTablaSesiones.setSesiones(sesiones);
+		columnasSesiones.limpiar();
+		columnasSesiones.anadirTodas(null, sesiones);
+		actualizarResumenSesiones();
+		if (columnaOrden != -1 || !txtFiltroSesiones.getText().isBlank()) {
+			recalcularVistaSesiones(0);
+		}
+	}
+
+	private void mostrarProgreso() {
+		ProgresoRetos.Progreso progreso = retoSesiones != null
+			? controller.getProgresoRetos().progreso(retoSesiones) : null;
+		if (progreso == null) {
+			barraProgreso.setValue(0);
+			barraProgreso.setString("Sin reto");
+			return;
+		}
+		barraProgreso.setValue((int) Math.round(progreso.porcentaje() * 10));
+		barraProgreso.setString(progreso.tieneObjetivo()
+			? String.format("%.0f%% (%.1f de %.1f %s)", progreso.porcentaje(), progreso.realizado(),
+				progreso.objetivo().objetivo(), progreso.getUnidad())
+			: String.format("%.1f %s", progreso.realizado(), progreso.getUnidad()));
+	}
+
+	// Totales por deporte de las sesiones cargadas, calculados fuera del EDT
+	private void actualizarResumenSesiones() {
+		cargador.cargar("resumen", columnasSesiones::porDeporte, this::mostrarResumenSesiones,
+			e -> System.err.println("No se pudo calcular el resumen de sesiones: " + e.getMessage()));
+	}
+
+	private void mostrarResumenSesiones(Map<String, ResumenSesiones> porDeporte) {
+		StringBuilder texto = new StringBuilder();
+		for (Map.Entry<String, ResumenSesiones> entrada : porDeporte.entrySet()) {
+			ResumenSesiones resumen = entrada.getValue();
+			if (texto.length() > 0) {
+				texto.append("   |   ");
+			}
+			texto.append(String.format("%s: %d sesiones, %.1f km (media %.1f), %.1f h", entrada.getKey(),
+				resumen.sesiones(), resumen.distanciaTotal(), resumen.distanciaMedia(), resumen.duracionTotal()));
 		}
+		lblResumenSesiones.setText(texto.length() > 0 ? texto.toString() : " ");
+	}
+
+	private void recalcularVistaSesiones(int esperaMs) {
+		String texto = txtFiltroSesiones.getText().trim().toLowerCase();
+		Predicate<Sesion> filtro = texto.isEmpty() ? null : sesion ->
+			(sesion.titulo() != null && sesion.titulo().toLowerCase().contains(texto))
+				|| (sesion.deporte() != null && sesion.deporte().toLowerCase().contains(texto));
+		Comparator<Sesion> orden = columnaOrden == -1 ? null
+			: ModeloTablaSesiones.ordenPorColumna(columnaOrden, ordenAscendente);
+
+		// Copia tomada aqui, en el EDT: el hilo de fondo no lee la lista a la que se siguen añadiendo paginas
+		ModeloTablaSesiones.Instantanea instantanea = modeloTablaSesiones.instantanea();
+		cargador.cargar("vista", esperaMs,
+			() -> ModeloTablaSesiones.calcularVista(instantanea, filtro, orden),
+			modeloTablaSesiones::aplicarVista,
+			e -> JOptionPane.showMessageDialog(this, e.getMessage()));
 	}
 //	
 	
@@ -336,54 +574,54 @@ public class SwingClientGUI extends JFrame {
 	private void cargarDetallesSesion() {
 	    int selectedRow = tablaSesiones.getSelectedRow();
 
-	    if (selectedRow != -1) {
-	        try {
-	            // Obtener el ID de la sesión seleccionada
-	            Object idObj = tablaSesiones.getValueAt(selectedRow, 0);
-	            Long sesionId = null;
-	            
-	            // Convertir el ID al tipo correcto
-	            if (idObj instanceof Long) {
-	                sesionId = (Long) idObj;
-	            } else if (idObj instanceof Integer) {
-	                sesionId = ((Integer) idObj).longValue();
-	            } else if (idObj instanceof String) {
-	                sesionId = Long.parseLong((String) idObj);
-	            }
+	    if (selectedRow == -1) {
+	        cargador.cancelar("detalle");
+	        return;
+	    }
 
-	            if (sesionId != null) {
-	                Sesion sesion = controller.getDetalleDeSesion(sesionId);
-	                
-	                // Actualizar la UI con valores seguros
-	                SwingUtilities.invokeLater(() -> {
-	                    // Usar getters seguros que manejan nulls
-	                    lblTitulo.setText(sesion != null && sesion.titulo() != null ? sesion.titulo() : "N/A");
-	                    lblDeporte.setText(sesion != null && sesion.deporte() != null ? sesion.deporte() : "N/A");
-	                    lblDistancia.setText(sesion != null && sesion.distancia() != null ? 
-	                        sesion.distancia().toString() + " km" : "N/A");
-	                    lblHoraInicio.setText(sesion != null && sesion.horaInicio() != null ? 
-	                        sesion.horaInicio().toString() : "N/A");
-	                    lblHoraFin.setText(sesion != null && sesion.horaFin() != null ? 
-	                        sesion.horaFin().toString() : "N/A");
-	                    lblDuracion.setText(sesion != null && sesion.duracion() != null ? 
-	                        sesion.duracion().toString() + " min" : "N/A");
-	                });
-
-	                // Añadir log para debug
-	                System.out.println("Cargando detalles de sesión: " + sesionId);
-	                if (sesion != null) {
-	                    System.out.println("Sesión encontrada: " + sesion.titulo());
-	                }
-	            }
-	        } catch (RuntimeException e) {
-	            System.err.println("Error al cargar detalles de sesión: " + e.getMessage());
-	            e.printStackTrace();
-	            JOptionPane.showMessageDialog(this, 
-	                "Error al cargar detalles de la sesión: " + e.getMessage(), 
-	                "Error", 
-	                JOptionPane.ERROR_MESSAGE);
-	        }
+	    // Obtener el ID de la sesión seleccionada
+	    Long id = modeloTablaSesiones.getSesion(tablaSesiones.convertRowIndexToModel(selectedRow)).id();
+	    if (id == null) {
+	        return;
+	    }
+
+	    // Si ya se ha precargado se muestra sin esperar a nada
+	    Sesion precargada = controller.getDetalleDeSesionEnCache(id);
+	    if (precargada != null) {
+	        cargador.cancelar("detalle");
+	        mostrarDetalleSesion(precargada);
+	        return;
 	    }
+
+	    // Añadir log para debug
+	    System.out.println("Cargando detalles de sesión: " + id);
+	    cargador.cargar("detalle", ESPERA_SELECCION_MS, () -> controller.getDetalleDeSesion(id), sesion -> {
+	        mostrarDetalleSesion(sesion);
+	        if (sesion != null) {
+	            System.out.println("Sesión encontrada: " + sesion.titulo());
+	        }
+	    }, e -> {
+	        System.err.println("Error al cargar detalles de sesión: " + e.getMessage());
+	        e.printStackTrace();
+	        JOptionPane.showMessageDialog(this, 
+	            "Error al cargar detalles de la sesión: " + e.getMessage(), 
+	            "Error", 
+	            JOptionPane.ERROR_MESSAGE);
+	    });
+	}
+
+	private void mostrarDetalleSesion(Sesion sesion) {
+	    // Usar getters seguros que manejan nulls
+	    lblTitulo.setText(sesion != null && sesion.titulo() != null ? sesion.titulo() : "N/A");
+	    lblDeporte.setText(sesion != null && sesion.deporte() != null ? sesion.deporte() : "N/A");
+	    lblDistancia.setText(sesion != null && sesion.distancia() != null ? 
+	        sesion.distancia().toString() + " km" : "N/A");
+	    lblHoraInicio.setText(sesion != null && sesion.horaInicio() != null ? 
+	        sesion.horaInicio().toString() : "N/A");
+	    lblHoraFin.setText(sesion != null && sesion.horaFin() != null ? 
+	        sesion.horaFin().toString() : "N/A");
+	    lblDuracion.setText(sesion != null && sesion.duracion() != null ? 
+	        sesion.duracion().toString() + " min" : "N/A");
 	}
 	
 
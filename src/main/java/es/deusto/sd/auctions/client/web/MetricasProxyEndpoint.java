@@ -0,0 +1,29 @@
+package es.deusto.sd.auctions.client.web;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+
+/**
+ * Actuator endpoint (/actuator/proxy) with the full snapshot of the proxy
+ * metrics: every proxy method and every HTTP endpoint, with responses by status
+ * code, bytes received and latency percentiles.
+ */
+@Component
+@Endpoint(id = "proxy")
+public class MetricasProxyEndpoint {
+	private final MetricasProxy metricasProxy;
+
+	public MetricasProxyEndpoint(MetricasProxy metricasProxy) {
+		this.metricasProxy = metricasProxy;
+	}
+
+	@ReadOperation
+	public Map<String, Map<String, Object>> metricas() {
+		return metricasProxy.instantanea();
+	}
+}
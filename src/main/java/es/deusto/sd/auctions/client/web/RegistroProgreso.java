@@ -0,0 +1,40 @@
+package es.deusto.sd.auctions.client.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import es.deusto.sd.auctions.client.estadisticas.ProgresoRetos;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * RegistroProgreso keeps the ProgresoRetos of every user of the web client, keyed
+ * by the id of their HTTP session like RegistroTokens: the sessions one user has
+ * just saved only count in their own progress until the server lists them.
+ *
+ * The progress of a session is created on its first use and dropped on logout
+ * and when the servlet container destroys the session.
+ */
+@Component
+public class RegistroProgreso implements HttpSessionListener {
+
+	private final ConcurrentHashMap<String, ProgresoRetos> progresos = new ConcurrentHashMap<>();
+
+	public ProgresoRetos obtener(String sesionId) {
+		return progresos.computeIfAbsent(sesionId, id -> new ProgresoRetos());
+	}
+
+	public void eliminar(String sesionId) {
+		progresos.remove(sesionId);
+	}
+
+	public int getTamanio() {
+		return progresos.size();
+	}
+
+	@Override
+	public void sessionDestroyed(HttpSessionEvent se) {
+		eliminar(se.getSession().getId());
+	}
+}
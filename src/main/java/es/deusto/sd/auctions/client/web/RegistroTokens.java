@@ -0,0 +1,87 @@
+package es.deusto.sd.auctions.client.web;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * RegistroTokens keeps the login token of every user of the web client, keyed by
+ * the id of their HTTP session. The controller is a singleton shared by all the
+ * requests, so the token can't live in one of its fields.
+ *
+ * The map is a ConcurrentHashMap, so lookups never block. Tokens not used for
+ * web.token.ttl are dropped by a periodic sweep, and the token of a session is
+ * removed on logout and when the servlet container destroys the session.
+ */
+@Component
+public class RegistroTokens implements HttpSessionListener {
+
+	private record Entrada(String token, long ultimoAccesoNanos) {}
+
+	private final ConcurrentHashMap<String, Entrada> tokens = new ConcurrentHashMap<>();
+	private final long ttlNanos;
+	private final ScheduledExecutorService barrido;
+
+	public RegistroTokens(@Value("${web.token.ttl:30m}") Duration ttl) {
+		this.ttlNanos = ttl.toNanos();
+		this.barrido = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread hilo = new Thread(r, "barrido-tokens");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		long periodo = Math.max(1, ttl.toSeconds() / 4);
+		this.barrido.scheduleAtFixedRate(this::eliminarCaducados, periodo, periodo, TimeUnit.SECONDS);
+	}
+
+	public void guardar(String sesionId, String token) {
+		tokens.put(sesionId, new Entrada(token, System.nanoTime()));
+	}
+
+	/**
+	 * Token of the session, or null if it never logged in or the token expired.
+	 * Every successful lookup renews the expiry time.
+	 */
+	public String obtener(String sesionId) {
+		long ahora = System.nanoTime();
+		Entrada entrada = tokens.computeIfPresent(sesionId,
+			(id, actual) -> caducada(actual, ahora) ? null : new Entrada(actual.token(), ahora));
+		return entrada != null ? entrada.token() : null;
+	}
+
+	public String eliminar(String sesionId) {
+		Entrada entrada = tokens.remove(sesionId);
+		return entrada != null ? entrada.token() : null;
+	}
+
+	public int getTamanio() {
+		return tokens.size();
+	}
+
+	private boolean caducada(Entrada entrada, long ahora) {
+		return ahora - entrada.ultimoAccesoNanos() > ttlNanos;
+	}
+
+	void eliminarCaducados() {
+		long ahora = System.nanoTime();
+		tokens.entrySet().removeIf(e -> caducada(e.getValue(), ahora));
+	}
+
+	@Override
+	public void sessionDestroyed(HttpSessionEvent se) {
+		eliminar(se.getSession().getId());
+	}
+
+	@PreDestroy
+	public void parar() {
+		barrido.shutdownNow();
+	}
+}
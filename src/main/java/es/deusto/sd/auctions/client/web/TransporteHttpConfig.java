@@ -0,0 +1,133 @@
+package es.deusto.sd.auctions.client.web;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * HTTP transport used by the RestTemplate of the web client, configured from
+ * application.properties (proxy.http.*).
+ *
+ * The default transport ("apache") is Apache HttpClient 5 with a pool of
+ * persistent connections limited per route and in total, connect/read/pool
+ * timeouts and eviction of idle and expired connections; the pool statistics are
+ * published as proxy.http.pool.* meters. The "jdk" transport uses the JDK
+ * HttpClient with HTTP/2, which multiplexes the calls over one connection when
+ * the backend supports it and falls back to HTTP/1.1 otherwise; with it the
+ * Apache pool and its meters are not created.
+ */
+@Configuration
+public class TransporteHttpConfig {
+
+	@Value("${spring.threads.virtual.enabled:false}")
+	private boolean hilosVirtuales;
+
+	@Value("${proxy.http.transporte:apache}")
+	private String transporte;
+
+	@Value("${proxy.http.max-conexiones:200}")
+	private int maxConexiones;
+
+	@Value("${proxy.http.max-conexiones-por-ruta:50}")
+	private int maxConexionesPorRuta;
+
+	@Value("${proxy.http.timeout-conexion:2s}")
+	private Duration timeoutConexion;
+
+	@Value("${proxy.http.timeout-lectura:10s}")
+	private Duration timeoutLectura;
+
+	@Value("${proxy.http.timeout-pool:2s}")
+	private Duration timeoutPool;
+
+	@Value("${proxy.http.inactividad-maxima:30s}")
+	private Duration inactividadMaxima;
+
+	@Value("${proxy.http.vida-conexion:5m}")
+	private Duration vidaConexion;
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(name = "proxy.http.transporte", havingValue = "apache", matchIfMissing = true)
+	public PoolingHttpClientConnectionManager poolConexiones() {
+		return PoolingHttpClientConnectionManagerBuilder.create()
+			.setMaxConnTotal(maxConexiones)
+			.setMaxConnPerRoute(maxConexionesPorRuta)
+			.setDefaultConnectionConfig(ConnectionConfig.custom()
+				.setConnectTimeout(Timeout.of(timeoutConexion))
+				.setSocketTimeout(Timeout.of(timeoutLectura))
+				.setTimeToLive(TimeValue.of(vidaConexion))
+				// Comprueba las conexiones que llevan un rato sin usarse antes de reutilizarlas
+				.setValidateAfterInactivity(TimeValue.ofSeconds(2))
+				.build())
+			.build();
+	}
+
+	@Bean
+	public ClientHttpRequestFactory clientHttpRequestFactory(
+			ObjectProvider<PoolingHttpClientConnectionManager> poolConexiones) {
+		if ("jdk".equalsIgnoreCase(transporte)) {
+			HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(timeoutConexion);
+			if (hilosVirtuales) {
+				builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+			}
+			HttpClient httpClient = builder.build();
+			JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+			factory.setReadTimeout(timeoutLectura);
+			return factory;
+		}
+		if (!"apache".equalsIgnoreCase(transporte)) {
+			throw new IllegalArgumentException("Transporte HTTP no válido: " + transporte + " (apache o jdk)");
+		}
+
+		CloseableHttpClient httpClient = HttpClients.custom()
+			.setConnectionManager(poolConexiones.getObject())
+			.setDefaultRequestConfig(RequestConfig.custom()
+				.setConnectionRequestTimeout(Timeout.of(timeoutPool))
+				.setResponseTimeout(Timeout.of(timeoutLectura))
+				.build())
+			// La compresion la negocia CompresionInterceptor, que mide lo que ocupa en la red
+			.disableContentCompression()
+			.evictExpiredConnections()
+			.evictIdleConnections(TimeValue.of(inactividadMaxima))
+			.build();
+		return new HttpComponentsClientHttpRequestFactory(httpClient);
+	}
+
+	// Estado del pool de conexiones (/actuator/metrics/proxy.http.pool.*)
+	@Bean
+	@ConditionalOnProperty(name = "proxy.http.transporte", havingValue = "apache", matchIfMissing = true)
+	public MeterBinder poolConexionesBinder(PoolingHttpClientConnectionManager poolConexiones) {
+		return registry -> {
+			Gauge.builder("proxy.http.pool.ocupadas", poolConexiones, p -> p.getTotalStats().getLeased())
+				.description("Conexiones en uso").register(registry);
+			Gauge.builder("proxy.http.pool.libres", poolConexiones, p -> p.getTotalStats().getAvailable())
+				.description("Conexiones abiertas sin usar").register(registry);
+			Gauge.builder("proxy.http.pool.esperando", poolConexiones, p -> p.getTotalStats().getPending())
+				.description("Peticiones esperando una conexion").register(registry);
+			Gauge.builder("proxy.http.pool.maximo", poolConexiones, p -> p.getTotalStats().getMax())
+				.description("Tamaño maximo del pool").register(registry);
+		};
+	}
+}
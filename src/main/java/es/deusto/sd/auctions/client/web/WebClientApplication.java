@@ -5,11 +5,45 @@
  */
 package es.deusto.sd.auctions.client.web;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import es.deusto.sd.auctions.client.proxies.CachingServiceProxy;
+import es.deusto.sd.auctions.client.proxies.Circuito;
+import es.deusto.sd.auctions.client.proxies.CoalescingServiceProxy;
+import es.deusto.sd.auctions.client.proxies.CompresionInterceptor;
+import es.deusto.sd.auctions.client.proxies.DiarioSesiones;
+import es.deusto.sd.auctions.client.proxies.DisponibilidadInterceptor;
+import es.deusto.sd.auctions.client.proxies.EscrituraDiferidaServiceProxy;
+import es.deusto.sd.auctions.client.proxies.FormatoInterceptor;
+import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasInterceptor;
+import es.deusto.sd.auctions.client.proxies.MetricasOperacion;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ResilienciaServiceProxy;
+import es.deusto.sd.auctions.client.proxies.RestTemplateServiceProxy;
+import es.deusto.sd.auctions.client.proxies.RevalidacionInterceptor;
+import es.deusto.sd.auctions.client.proxies.Serializacion;
+
 /**
  * WebClientApplication class is the main class for the web client application.
  */
@@ -22,8 +56,156 @@ public class WebClientApplication {
         SpringApplication.run(WebClientApplication.class, args);
     }
 
+    // Hilos para lanzar en paralelo las llamadas independientes de una página. Siempre
+    // virtuales: una llamada que la página deja de esperar se cancela interrumpiendo su
+    // hilo, y solo en un hilo virtual la interrupción aborta la lectura bloqueada del socket
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService proxyExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public MetricasProxy metricasProxy() {
+        return new MetricasProxy();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(ClientHttpRequestFactory clientHttpRequestFactory, MetricasProxy metricasProxy,
+            @Value("${proxy.http.compresion.peticiones:false}") boolean comprimirPeticiones,
+            @Value("${proxy.http.compresion.umbral:1024}") int umbralCompresion,
+            @Value("${proxy.http.formato:json}") String formato) {
+        // Transporte con pool de conexiones y timeouts, ver TransporteHttpConfig
+        RestTemplate restTemplate = new RestTemplate(clientHttpRequestFactory);
+        // Mismos ObjectMapper JSON y Smile que el proxy HTTP; JSON primero para los cuerpos enviados
+        restTemplate.getMessageConverters().removeIf(conversor -> conversor instanceof AbstractJackson2HttpMessageConverter);
+        restTemplate.getMessageConverters().add(new MappingJackson2HttpMessageConverter(Serializacion.json()));
+        restTemplate.getMessageConverters().add(new MappingJackson2SmileHttpMessageConverter(Serializacion.smile()));
+        // 502, 503 y 504 como RespuestaHttpException, para que la resiliencia los reintente
+        restTemplate.getInterceptors().add(new DisponibilidadInterceptor());
+        // Formato preferido de las respuestas (Accept), con JSON como alternativa
+        restTemplate.getInterceptors().add(new FormatoInterceptor(Serializacion.Formato.de(formato)));
+        // Las peticiones GET se revalidan con If-None-Match / If-Modified-Since
+        restTemplate.getInterceptors().add(new RevalidacionInterceptor());
+        // Respuestas gzip/deflate descomprimidas al leerlas; la revalidacion guarda el cuerpo ya descomprimido
+        restTemplate.getInterceptors().add(new CompresionInterceptor(metricasProxy, comprimirPeticiones, umbralCompresion));
+        // Ultimo de la cadena para medir lo que realmente llega por la red
+        restTemplate.getInterceptors().add(new MetricasInterceptor(metricasProxy));
+        return restTemplate;
+    }
+
+    // Reintentos, circuito por operacion y hedging directamente sobre el proxy REST: cada
+    // reintento y cada hedge es una peticion nueva al servidor, no la misma llamada agrupada
+    @Bean
+    public ResilienciaServiceProxy resilienciaProxy(RestTemplateServiceProxy restTemplateServiceProxy,
+            @Value("${proxy.resiliencia.reintentos:3}") int maxReintentos,
+            @Value("${proxy.resiliencia.espera-base:100ms}") Duration esperaBase,
+            @Value("${proxy.resiliencia.espera-maxima:2s}") Duration esperaMaxima,
+            @Value("${proxy.resiliencia.timeout-intento:10s}") Duration timeoutIntento,
+            @Value("${proxy.resiliencia.circuito.umbral-fallos:5}") int umbralFallos,
+            @Value("${proxy.resiliencia.circuito.tiempo-abierto:10s}") Duration tiempoAbierto,
+            @Value("${proxy.resiliencia.hedging:false}") boolean hedging,
+            @Value("${proxy.resiliencia.hedging.retardo-minimo:20ms}") Duration retardoMinimoHedge,
+            @Value("${proxy.resiliencia.hedging.muestras-minimas:50}") int muestrasMinimasHedge,
+            @Value("${proxy.resiliencia.hedging.max-fraccion:0.1}") double maxFraccionHedge) {
+        return new ResilienciaServiceProxy(restTemplateServiceProxy, new ResilienciaServiceProxy.Configuracion(maxReintentos,
+            esperaBase, esperaMaxima, timeoutIntento, umbralFallos, tiempoAbierto, hedging, retardoMinimoHedge,
+            muestrasMinimasHedge, maxFraccionHedge));
+    }
+
+    // guardarSesion contesta en cuanto la sesión está en el diario local; un hilo la envía
+    // después al servidor, en lotes, y al arrancar reenvía lo que quedó pendiente
+    @Bean(destroyMethod = "close")
+    public EscrituraDiferidaServiceProxy escrituraDiferidaProxy(ResilienciaServiceProxy resilienciaProxy,
+            @Value("${proxy.escritura.diario:${user.home}/.strava-cliente/web-sesiones.diario}") String fichero,
+            @Value("${proxy.escritura.sincronizacion:siempre}") String sincronizacion,
+            @Value("${proxy.escritura.intervalo-sincronizacion:1s}") Duration intervaloSincronizacion,
+            @Value("${proxy.escritura.lote:32}") int maxLote,
+            @Value("${proxy.escritura.max-intentos:8}") int maxIntentos,
+            @Value("${proxy.escritura.espera-base:200ms}") Duration esperaBase,
+            @Value("${proxy.escritura.espera-maxima:1m}") Duration esperaMaxima) throws IOException {
+        // Las lecturas identicas concurrentes comparten una sola llamada, con sus reintentos
+        CoalescingServiceProxy agrupador = new CoalescingServiceProxy(resilienciaProxy);
+        return new EscrituraDiferidaServiceProxy(agrupador, new EscrituraDiferidaServiceProxy.Configuracion(
+            Path.of(fichero), DiarioSesiones.Sincronizacion.de(sincronizacion), intervaloSincronizacion, maxLote,
+            maxIntentos, esperaBase, esperaMaxima));
+    }
+
+    // El controlador recibe el proxy REST envuelto en la caché del catálogo de retos,
+    // y las métricas miden lo que ve el controlador (incluidos los aciertos de caché)
+    @Bean
+    @Primary
+    public IAuctionsServiceProxy auctionsServiceProxy(EscrituraDiferidaServiceProxy escrituraDiferidaProxy,
+            MetricasProxy metricasProxy,
+            @Value("${proxy.cache.max-entradas:512}") int maxEntradas,
+            @Value("${proxy.cache.ttl.todos-retos:30s}") Duration ttlTodosRetos,
+            @Value("${proxy.cache.ttl.detalle-reto:2m}") Duration ttlDetalleReto,
+            @Value("${proxy.cache.ttl.retos-deporte:1m}") Duration ttlRetosXDeporte) {
+        CachingServiceProxy cache = new CachingServiceProxy(escrituraDiferidaProxy,
+            new CachingServiceProxy.Configuracion(maxEntradas, ttlTodosRetos, ttlDetalleReto, ttlRetosXDeporte));
+        return new MetricasServiceProxy(cache, metricasProxy);
+    }
+
+    // Publica en Micrometer las series de cada metodo del proxy (/actuator/metrics/proxy.*)
+    @Bean
+    public MeterBinder metricasProxyBinder(MetricasProxy metricasProxy) {
+        return registry -> {
+            for (String nombre : MetricasServiceProxy.OPERACIONES) {
+                MetricasOperacion op = metricasProxy.operacion(nombre);
+                FunctionCounter.builder("proxy.llamadas", op, MetricasOperacion::getLlamadas)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.errores", op, MetricasOperacion::getErrores)
+                    .tag("operacion", nombre).register(registry);
+                Gauge.builder("proxy.en_curso", op, MetricasOperacion::getEnCurso)
+                    .tag("operacion", nombre).register(registry);
+                for (double percentil : new double[] {0.5, 0.99, 0.999}) {
+                    Gauge.builder("proxy.latencia", op, o -> o.getLatencia().getPercentilNanos(percentil) / 1e9)
+                        .tag("operacion", nombre).tag("percentil", String.valueOf(percentil))
+                        .baseUnit("seconds").register(registry);
+                }
+            }
+        };
+    }
+
+    // Sesiones a la espera en el diario y resultado de los envíos en segundo plano
+    @Bean
+    public MeterBinder escrituraDiferidaBinder(EscrituraDiferidaServiceProxy escrituraDiferidaProxy) {
+        return registry -> {
+            Gauge.builder("proxy.escritura.pendientes", escrituraDiferidaProxy,
+                EscrituraDiferidaServiceProxy::getPendientes).register(registry);
+            FunctionCounter.builder("proxy.escritura.enviadas", escrituraDiferidaProxy,
+                EscrituraDiferidaServiceProxy::getEnviadas).register(registry);
+            FunctionCounter.builder("proxy.escritura.descartadas", escrituraDiferidaProxy,
+                EscrituraDiferidaServiceProxy::getDescartadas).register(registry);
+            FunctionCounter.builder("proxy.escritura.reintentos", escrituraDiferidaProxy,
+                EscrituraDiferidaServiceProxy::getReintentos).register(registry);
+            FunctionCounter.builder("proxy.escritura.lotes", escrituraDiferidaProxy,
+                EscrituraDiferidaServiceProxy::getLotes).register(registry);
+        };
+    }
+
+    // Estado de los circuitos y contadores de reintentos y hedging de cada operacion
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder resilienciaProxyBinder(ResilienciaServiceProxy resilienciaProxy) {
+        return registry -> {
+            for (String nombre : MetricasServiceProxy.OPERACIONES) {
+                ResilienciaServiceProxy.Operacion op = resilienciaProxy.operacion(nombre);
+                Circuito circuito = op.getCircuito();
+                // 0 cerrado, 1 abierto, 2 semiabierto
+                Gauge.builder("proxy.circuito.estado", circuito, c -> c.getEstado().ordinal())
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.circuito.aperturas", circuito, Circuito::getAperturas)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.circuito.rechazadas", circuito, Circuito::getRechazadas)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.reintentos", op, ResilienciaServiceProxy.Operacion::getReintentos)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.timeouts", op, ResilienciaServiceProxy.Operacion::getTimeouts)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.hedge.enviados", op, ResilienciaServiceProxy.Operacion::getHedges)
+                    .tag("operacion", nombre).register(registry);
+                FunctionCounter.builder("proxy.hedge.ganados", op, ResilienciaServiceProxy.Operacion::getHedgesGanados)
+                    .tag("operacion", nombre).register(registry);
+            }
+        };
     }
 }
\ No newline at end of file
@@ -5,10 +5,23 @@
  */
 package es.deusto.sd.auctions.client.web;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,10 +34,17 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import com.fasterxml.jackson.annotation.JsonCreator.Mode;
 
 import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
 import es.deusto.sd.auctions.client.data.Reto;
 import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.estadisticas.ColumnasSesiones;
+import es.deusto.sd.auctions.client.estadisticas.ProgresoRetos;
 import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasOperacion;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
 
 
 
@@ -33,7 +53,26 @@ public class WebClientController {
 
   @Autowired
   private IAuctionsServiceProxy auctionServiceProxy;
-  private String token;
+  @Autowired
+  private MetricasProxy metricasProxy;
+  // Ejecuta en paralelo, en hilos virtuales, las llamadas independientes de una misma página
+  @Autowired
+  @Qualifier("proxyExecutor")
+  private ExecutorService proxyExecutor;
+  @Value("${web.pagina.deadline:3s}")
+  private Duration deadlinePagina;
+  // Sesiones por página en la vista de un reto; el resto se pide con el cursor de la página
+  @Value("${web.sesiones.tamanio:50}")
+  private int tamanioPaginaSesiones;
+  // Token de cada usuario, por sesión HTTP (el controlador es compartido por todos)
+  @Autowired
+  private RegistroTokens registroTokens;
+  // Progreso de los retos de cada usuario, por sesión HTTP, actualizado con cada página de sesiones
+  // y cada sesión guardada
+  @Autowired
+  private RegistroProgreso registroProgreso;
+  @Value("${web.progreso.resincronizar:5m}")
+  private Duration resincronizarProgreso;
   
   @GetMapping("/")
   public String mostrarHome() {
@@ -49,6 +88,7 @@ public class WebClientController {
   public String procesarLogin(
 		      @RequestParam(value = "email") String email, 
 		      @RequestParam(value = "password") String password, 
+		      HttpSession session,
 		      Model model
 		  )
   {
@@ -57,7 +97,8 @@ public class WebClientController {
           Credendiales credenciales = new Credendiales(email, password);
           
           // Intentar hacer login a través del proxy
-          token = auctionServiceProxy.login(credenciales);
+          String token = auctionServiceProxy.login(credenciales);
+          registroTokens.guardar(session.getId(), token);
           
           // Si el login es exitoso, redirigir a la página de retos
           return "redirect:/reto";
@@ -68,6 +109,21 @@ public class WebClientController {
       }
   }
       
+  @PostMapping("/logout")
+  public String procesarLogout(HttpSession session) {
+      String token = registroTokens.eliminar(session.getId());
+      registroProgreso.eliminar(session.getId());
+      try {
+          if (token != null) {
+              auctionServiceProxy.logout(token);
+          }
+      } catch (RuntimeException e) {
+          System.err.println("Error al hacer logout: " + e.getMessage());
+      }
+      session.invalidate();
+      return "redirect:/login";
+  }
+      
   @GetMapping("/reto")
   public String mostrarRetos(Model model) {
       try {
@@ -100,14 +156,35 @@ public class WebClientController {
       }
   }
   
+  @GetMapping("/estadisticas")
+  public String mostrarEstadisticas(HttpSession session, Model model) {
+      String token = registroTokens.obtener(session.getId());
+      if (token == null) {
+          return "redirect:/login";
+      }
+      try {
+          // Las agregaciones se hacen sobre una copia en columnas de las sesiones del usuario
+          ColumnasSesiones columnas = ColumnasSesiones.de(auctionServiceProxy.getTodasSesiones(token));
+          ZoneOffset zona = ZoneId.systemDefault().getRules().getOffset(Instant.now());
+          model.addAttribute("total", columnas.resumen());
+          model.addAttribute("porDeporte", columnas.porDeporte());
+          model.addAttribute("porSemana", columnas.porSemana(zona));
+      } catch (RuntimeException e) {
+          System.err.println("Error al obtener las estadísticas: " + e.getMessage());
+          model.addAttribute("errorMessage", "No se pudieron cargar las estadísticas: " + e.getMessage());
+      }
+      return "estadisticas";
+  }
+
   @GetMapping("/reto/{id}/detalles")
-  public String mostrarDetallesReto(@PathVariable("id") Long IdReto, Model model) {
+  public String mostrarDetallesReto(@PathVariable("id") Long IdReto, HttpSession session, Model model) {
 	  try {
 		  System.out.println("Entra aqui"+ IdReto);
 
 	        Reto reto = auctionServiceProxy.getDetallesDeReto(IdReto);
 			  System.out.println("Entra aqui"  );
 	        model.addAttribute("reto", reto);
+	        model.addAttribute("progreso", reto != null ? progreso(registroProgreso.obtener(session.getId()), reto) : null);
 			  System.out.println("Entra aqui2");
 	        return "detalleReto";
 	    } catch (RuntimeException e) {
@@ -117,33 +194,118 @@ public class WebClientController {
   }
   
   @GetMapping("/reto/{retoId}/sesiones")
-  public String sesionesReto(@PathVariable("retoId") Long id, Model model) {
+  public String sesionesReto(@PathVariable("retoId") Long id,
+		  @RequestParam(value = "cursor", required = false) String cursor,
+		  HttpSession session,
+		  Model model) {
+      MetricasOperacion pagina = metricasProxy.operacion("pagina:sesionesReto");
+      long inicio = pagina.empezar();
+      long limite = inicio + deadlinePagina.toNanos();
+      boolean error = true;
       try {
-    	  System.out.println("id" + id);
-          // Obtener las sesiones del reto específico
-          List<Sesion> sesiones = auctionServiceProxy.getSesionesPorReto(id);
-          System.out.println("Sesiones" + sesiones);
-          // Obtener los detalles del reto para contexto adicional
-          Reto reto = auctionServiceProxy.getDetallesDeReto(id);
-          
+          // Las dos llamadas son independientes: se lanzan a la vez y la página tarda lo que la más lenta
+          Paginacion paginacion = cursor != null
+              ? Paginacion.cursor(cursor, tamanioPaginaSesiones) : Paginacion.primera(tamanioPaginaSesiones);
+          CompletableFuture<Pagina<Sesion>> sesionesFuturo = enParalelo(() -> auctionServiceProxy.getSesionesPorReto(id, paginacion));
+          CompletableFuture<Reto> retoFuturo = enParalelo(() -> auctionServiceProxy.getDetallesDeReto(id));
+
+          Pagina<Sesion> sesiones = esperarHasta(sesionesFuturo, limite, "sesiones del reto " + id);
+          Reto reto = esperarHasta(retoFuturo, limite, "detalles del reto " + id);
+
+          if (sesiones == null && reto == null) {
+              model.addAttribute("errorMessage", "No se pudieron cargar las sesiones del reto " + id);
+              return "reto"; // Redirigir a la página de retos en caso de error
+          }
+
+          // Las sesiones recibidas se suman al progreso del reto (las ya contadas se ignoran)
+          if (sesiones != null && reto != null) {
+              ProgresoRetos progresoRetos = registroProgreso.obtener(session.getId());
+              progresoRetos.definir(reto);
+              progresoRetos.anadir(id, sesiones.elementos());
+          }
+
+          // Render parcial: se muestra lo que haya llegado a tiempo y un aviso con lo que falta
+          if (sesiones == null) {
+              sesiones = new Pagina<>(List.of(), null);
+              model.addAttribute("avisoMessage", "Las sesiones del reto no están disponibles en este momento.");
+          }
+          if (reto == null) {
+              reto = new Reto(id, "Reto " + id, null, null, null, null, null, null);
+              model.addAttribute("avisoMessage", "Los detalles del reto no están disponibles en este momento.");
+          }
+
           // Agregar las sesiones y los detalles del reto al modelo
-          model.addAttribute("sesiones", sesiones);
+          model.addAttribute("sesiones", sesiones.elementos());
+          model.addAttribute("siguienteCursor", sesiones.siguienteCursor());
           model.addAttribute("reto", reto);
-          
+          error = false;
+
           // Devolver la vista de sesiones
-          return "sesiones"; // Asegúrate de tener un template llamado sesiones.html
+          return "sesiones";
+      } finally {
+          pagina.terminar(inicio, error);
+      }
+  }
+
+  // Progreso del reto; solo se descarga la lista de sesiones si nunca se ha contado o hace mucho
+  private ProgresoRetos.Progreso progreso(ProgresoRetos progresoRetos, Reto reto) {
+      try {
+          progresoRetos.definir(reto);
+          if (progresoRetos.necesitaSincronizar(reto.id(), resincronizarProgreso)) {
+              progresoRetos.sincronizar(reto.id(), auctionServiceProxy.getSesionesPorReto(reto.id()));
+          }
       } catch (RuntimeException e) {
-          // Manejo de errores
-          model.addAttribute("errorMessage", "No se pudieron cargar las sesiones del reto: " + e.getMessage());
-          return "reto"; // Redirigir a la página de retos en caso de error
+          // Sin la lista se muestra lo que se haya contado hasta ahora
+          System.err.println("No se pudo actualizar el progreso del reto " + reto.id() + ": " + e.getMessage());
       }
-  
+      return progresoRetos.progreso(reto.id());
+  }
+
+  // Cancelar el futuro interrumpe el hilo virtual de la llamada, que aborta la petición en curso
+  private <T> CompletableFuture<T> enParalelo(Supplier<T> llamada) {
+      CompletableFuture<T> resultado = new CompletableFuture<>();
+      Future<?> tarea = proxyExecutor.submit(() -> {
+          try {
+              resultado.complete(llamada.get());
+          } catch (Throwable e) {
+              resultado.completeExceptionally(e);
+          }
+      });
+      resultado.whenComplete((valor, error) -> {
+          if (resultado.isCancelled()) {
+              tarea.cancel(true);
+          }
+      });
+      return resultado;
+  }
+
+  // Espera como mucho hasta el limite de la página; si no llega a tiempo o falla, devuelve null.
+  // La llamada que no ha llegado a tiempo se cancela: nadie va a usar su respuesta
+  private static <T> T esperarHasta(CompletableFuture<T> futuro, long limiteNanos, String descripcion) {
+      try {
+          return futuro.get(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+          futuro.cancel(true);
+          System.err.println("Tiempo agotado esperando " + descripcion);
+      } catch (ExecutionException e) {
+          System.err.println("Error al obtener " + descripcion + ": " + e.getCause().getMessage());
+      } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+      }
+      return null;
   }
   
   @PostMapping("/reto/{retoId}/sesiones")
   public String guardarSesion(@PathVariable("retoId") Long retoId, 
                              @ModelAttribute Sesion sesion, 
+                             HttpSession session,
                              Model model) {
+      // Sin token (no ha hecho login o ha caducado) no se puede guardar la sesión
+      String token = registroTokens.obtener(session.getId());
+      if (token == null) {
+          return "redirect:/login";
+      }
+
       try {
           System.out.println("Guardando nueva sesión para reto: " + retoId);
           System.out.println("Datos de la sesión: " + sesion);
@@ -181,6 +343,7 @@ public class WebClientController {
 
           // Guardar la sesión usando el proxy
           auctionServiceProxy.guardarSesion(retoId, sesion, token);
+          registroProgreso.obtener(session.getId()).registrar(retoId, sesion);
           
           // Redirigir a la vista de sesiones del reto
           return "redirect:/reto/" + retoId + "/sesiones";
@@ -191,7 +354,7 @@ public class WebClientController {
           
           // En caso de error, volver a la página de sesiones con mensaje de error
           model.addAttribute("errorMessage", "Error al guardar la sesión: " + e.getMessage());
-          return sesionesReto(retoId, model);
+          return sesionesReto(retoId, null, session, model);
       }
   }
   
@@ -0,0 +1,164 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+
+class ColumnasSesionesTest {
+	private static final long DIA = 86_400_000L;
+	private static final long INICIO_2024 = 1_704_067_200_000L;
+	private static final String[] DEPORTES = {"running", "Cycling", " cycling ", null, "", "swimming"};
+	private static final ZoneOffset ZONA = ZoneOffset.ofHours(2);
+
+	// Distancias y duraciones en cuartos: las sumas en double son exactas en cualquier orden
+	private static List<Sesion> sesiones(long semilla, int cantidad, long rangoDias) {
+		Random azar = new Random(semilla);
+		List<Sesion> sesiones = new ArrayList<>(cantidad);
+		for (int i = 0; i < cantidad; i++) {
+			Long inicio = switch (azar.nextInt(10)) {
+				case 0 -> null;
+				// Solo la hora del dia, como las que guarda el formulario web
+				case 1 -> (long) azar.nextInt(24) * 3_600_000L;
+				// Antes de 1970
+				case 2 -> -azar.nextLong(rangoDias * DIA) - DIA;
+				default -> INICIO_2024 + azar.nextLong(rangoDias * DIA);
+			};
+			Float distancia = azar.nextInt(8) == 0 ? null : azar.nextInt(400) / 4f;
+			Float duracion = azar.nextInt(8) == 0 ? null : azar.nextInt(40) / 4f;
+			sesiones.add(new Sesion((long) i, "s" + i, DEPORTES[azar.nextInt(DEPORTES.length)], distancia, inicio,
+				null, duracion));
+		}
+		return sesiones;
+	}
+
+	private static String deporte(Sesion sesion) {
+		return sesion.deporte() == null || sesion.deporte().isBlank()
+			? ColumnasSesiones.SIN_DEPORTE : sesion.deporte().trim().toLowerCase();
+	}
+
+	// Agregacion directa sobre los objetos, para comparar
+	private static <K> Map<K, ResumenSesiones> agrupar(List<Sesion> sesiones, Function<Sesion, K> clave,
+			Map<K, ResumenSesiones> resultado) {
+		Map<K, double[]> totales = new HashMap<>();
+		for (Sesion sesion : sesiones) {
+			K grupo = clave.apply(sesion);
+			if (grupo == null) {
+				continue;
+			}
+			double[] t = totales.computeIfAbsent(grupo, g -> {
+				resultado.put(g, null);
+				return new double[5];
+			});
+			t[0]++;
+			if (sesion.distancia() != null) {
+				t[1] += sesion.distancia();
+				t[2]++;
+			}
+			if (sesion.duracion() != null) {
+				t[3] += sesion.duracion();
+				t[4]++;
+			}
+		}
+		totales.forEach((grupo, t) -> resultado.put(grupo,
+			new ResumenSesiones((long) t[0], t[1], (long) t[2], t[3], (long) t[4])));
+		return resultado;
+	}
+
+	private static LocalDate dia(Sesion sesion) {
+		Long inicio = sesion.horaInicio();
+		if (inicio == null || (inicio >= 0 && inicio < DIA)) {
+			return null;
+		}
+		return Instant.ofEpochMilli(inicio).atOffset(ZONA).toLocalDate();
+	}
+
+	private static LocalDate lunes(Sesion sesion) {
+		LocalDate dia = dia(sesion);
+		return dia == null ? null : dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+	}
+
+	private static void comprobar(List<Sesion> lista) {
+		ColumnasSesiones columnas = ColumnasSesiones.de(lista);
+		assertEquals(lista.size(), columnas.getFilas());
+
+		assertEquals(agrupar(lista, s -> "todas", new HashMap<>()).get("todas"), columnas.resumen());
+		// porDeporte conserva el orden de aparicion
+		Map<String, ResumenSesiones> porDeporte = agrupar(lista, ColumnasSesionesTest::deporte, new LinkedHashMap<>());
+		assertEquals(List.copyOf(porDeporte.entrySet()), List.copyOf(columnas.porDeporte().entrySet()));
+		assertEquals(agrupar(lista, ColumnasSesionesTest::dia, new TreeMap<>()), columnas.porDia(ZONA));
+		assertEquals(agrupar(lista, ColumnasSesionesTest::lunes, new TreeMap<>()), columnas.porSemana(ZONA));
+	}
+
+	@Test
+	void coincideConLaAgregacionDirecta() {
+		comprobar(sesiones(1, 5_000, 400));
+	}
+
+	@Test
+	void coincideConLaAgregacionDirectaEnParalelo() {
+		comprobar(sesiones(2, ColumnasSesiones.UMBRAL_PARALELO * 2 + 17, 400));
+	}
+
+	@Test
+	void coincideConLaAgregacionDirectaConUnRangoDeDiasGrande() {
+		// Mas de 2^16 dias entre la primera y la ultima: los dias se agrupan ordenandolos
+		comprobar(sesiones(3, 3_000, 40_000));
+	}
+
+	@Test
+	void porRetoSoloCuentaLasSesionesCargadasDesdeUnReto() {
+		List<Sesion> uno = sesiones(4, 100, 30);
+		List<Sesion> dos = sesiones(5, 50, 30);
+		ColumnasSesiones columnas = new ColumnasSesiones();
+		columnas.anadirTodas(2L, dos);
+		columnas.anadirTodas(null, sesiones(6, 70, 30));
+		columnas.anadirTodas(1L, uno);
+		columnas.anadir(2L, dos.get(0));
+
+		List<Sesion> dosConRepetida = new ArrayList<>(dos);
+		dosConRepetida.add(dos.get(0));
+		Map<Long, ResumenSesiones> esperado = new LinkedHashMap<>();
+		esperado.put(2L, agrupar(dosConRepetida, s -> 0, new HashMap<>()).get(0));
+		esperado.put(1L, agrupar(uno, s -> 0, new HashMap<>()).get(0));
+		assertEquals(List.copyOf(esperado.entrySet()), List.copyOf(columnas.porReto().entrySet()));
+		assertEquals(221, columnas.resumen().sesiones());
+	}
+
+	@Test
+	void lasSesionesConSoloLaHoraNoTienenDia() {
+		ColumnasSesiones columnas = ColumnasSesiones.de(List.of(
+			new Sesion(1L, "web", "running", 5f, 9 * 3_600_000L, null, 0.5f),
+			new Sesion(2L, "sin hora", "running", 5f, null, null, 0.5f)));
+
+		assertTrue(columnas.porDia(ZoneOffset.UTC).isEmpty());
+		assertTrue(columnas.porSemana(ZoneOffset.UTC).isEmpty());
+		assertEquals(2, columnas.resumen().sesiones());
+	}
+
+	@Test
+	void limpiarEmpiezaDeCero() {
+		ColumnasSesiones columnas = ColumnasSesiones.de(sesiones(7, 100, 30));
+		columnas.limpiar();
+
+		assertEquals(0, columnas.getFilas());
+		assertEquals(ResumenSesiones.VACIO, columnas.resumen());
+		assertTrue(columnas.porDeporte().isEmpty());
+	}
+}
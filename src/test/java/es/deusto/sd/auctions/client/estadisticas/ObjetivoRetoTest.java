@@ -0,0 +1,112 @@
+package es.deusto.sd.auctions.client.estadisticas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.estadisticas.ObjetivoReto.Medida;
+
+class ObjetivoRetoTest {
+	private static final ZoneId ZONA = ZoneOffset.UTC;
+
+	private static Reto reto(String fechaInicio, String fechaFin, String tipo, String deporte, String duracion,
+			String distancia) {
+		return new Reto(1L, "Reto", fechaInicio, fechaFin, tipo, deporte, duracion, distancia);
+	}
+
+	private static Sesion sesion(String deporte, Long horaInicio, Float distancia, Float duracion) {
+		return new Sesion(1L, "Sesion", deporte, distancia, horaInicio, null, duracion);
+	}
+
+	private static long millis(LocalDate fecha) {
+		return fecha.atStartOfDay(ZONA).toInstant().toEpochMilli();
+	}
+
+	@Test
+	void elTipoDecideLaMedida() {
+		assertEquals(Medida.DISTANCIA, ObjetivoReto.de(reto(null, null, "Distancia", null, "2", "50"), ZONA).medida());
+		assertEquals(Medida.DURACION, ObjetivoReto.de(reto(null, null, "Duración", null, "2", "50"), ZONA).medida());
+		assertEquals(Medida.DURACION, ObjetivoReto.de(reto(null, null, "tiempo", null, "2", "50"), ZONA).medida());
+	}
+
+	@Test
+	void sinTipoSeUsaLaMedidaQueTieneObjetivo() {
+		ObjetivoReto soloDuracion = ObjetivoReto.de(reto(null, null, null, null, "3 h", null), ZONA);
+		assertEquals(Medida.DURACION, soloDuracion.medida());
+		assertEquals(3.0, soloDuracion.objetivo());
+
+		ObjetivoReto ambas = ObjetivoReto.de(reto(null, null, "", null, "3", "42"), ZONA);
+		assertEquals(Medida.DISTANCIA, ambas.medida());
+		assertEquals(42.0, ambas.objetivo());
+	}
+
+	@Test
+	void elObjetivoEsElPrimerNumeroDelTexto() {
+		assertEquals(10.5, ObjetivoReto.de(reto(null, null, "distancia", null, null, "10.5 km"), ZONA).objetivo());
+		assertEquals(10.5, ObjetivoReto.de(reto(null, null, "distancia", null, null, "unos 10,5"), ZONA).objetivo());
+
+		ObjetivoReto sinNumero = ObjetivoReto.de(reto(null, null, "distancia", null, null, "mucho"), ZONA);
+		assertTrue(Double.isNaN(sinNumero.objetivo()));
+		assertFalse(sinNumero.tieneObjetivo());
+	}
+
+	@Test
+	void fechasIsoYEspanolasConElDiaDeFinCompleto() {
+		ObjetivoReto iso = ObjetivoReto.de(reto("2024-03-01", "2024-03-31T23:59:00", "distancia", null, null, "1"),
+			ZONA);
+		assertEquals(millis(LocalDate.of(2024, 3, 1)), iso.inicioMillis());
+		assertEquals(millis(LocalDate.of(2024, 4, 1)), iso.finMillis());
+
+		ObjetivoReto espaniol = ObjetivoReto.de(reto("1/3/2024", "31/03/2024", "distancia", null, null, "1"), ZONA);
+		assertEquals(iso.inicioMillis(), espaniol.inicioMillis());
+		assertEquals(iso.finMillis(), espaniol.finMillis());
+	}
+
+	@Test
+	void unaFechaIlegibleDejaLaVentanaAbierta() {
+		ObjetivoReto objetivo = ObjetivoReto.de(reto("pronto", "", "distancia", " ", null, "1"), ZONA);
+		assertEquals(Long.MIN_VALUE, objetivo.inicioMillis());
+		assertEquals(Long.MAX_VALUE, objetivo.finMillis());
+		assertNull(objetivo.deporte());
+	}
+
+	@Test
+	void cuentaLasSesionesDelDeporteDentroDeLaVentana() {
+		ObjetivoReto objetivo = ObjetivoReto.de(reto("2024-03-01", "2024-03-31", "distancia", " Running", null,
+			"100"), ZONA);
+		long marzo = millis(LocalDate.of(2024, 3, 15));
+
+		assertEquals("running", objetivo.deporte());
+		assertTrue(objetivo.cuenta(sesion("RUNNING", marzo, 5f, 1f)));
+		assertTrue(objetivo.cuenta(sesion(null, marzo, 5f, 1f)));
+		assertFalse(objetivo.cuenta(sesion("cycling", marzo, 5f, 1f)));
+		// El ultimo dia entra entero; el siguiente ya no
+		assertTrue(objetivo.cuenta(sesion("running", millis(LocalDate.of(2024, 4, 1)) - 1, 5f, 1f)));
+		assertFalse(objetivo.cuenta(sesion("running", millis(LocalDate.of(2024, 4, 1)), 5f, 1f)));
+		assertFalse(objetivo.cuenta(sesion("running", millis(LocalDate.of(2024, 2, 29)), 5f, 1f)));
+		// Sin hora, o solo con la hora del dia: se da por dentro
+		assertTrue(objetivo.cuenta(sesion("running", null, 5f, 1f)));
+		assertTrue(objetivo.cuenta(sesion("running", 8 * 3_600_000L, 5f, 1f)));
+	}
+
+	@Test
+	void elValorEsLaMedidaDelObjetivo() {
+		ObjetivoReto distancia = ObjetivoReto.de(reto(null, null, "distancia", null, "2", "10"), ZONA);
+		ObjetivoReto duracion = ObjetivoReto.de(reto(null, null, "duracion", null, "2", "10"), ZONA);
+		Sesion sesion = sesion("running", null, 7.5f, 0.75f);
+
+		assertEquals(7.5, distancia.valor(sesion));
+		assertEquals(0.75, duracion.valor(sesion));
+		assertEquals(0.0, distancia.valor(sesion("running", null, null, 1f)));
+		assertEquals(0.0, distancia.valor(sesion("running", null, Float.NaN, 1f)));
+	}
+}
@@ -0,0 +1,94 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class CacheLRUTest {
+
+	@Test
+	void expulsaLaMenosUsadaAlPasarDelMaximo() {
+		CacheLRU<String, Integer> cache = new CacheLRU<>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		// Leer "a" la hace la mas reciente: sale "b"
+		assertEquals(1, cache.get("a"));
+		cache.put("c", 3);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(3, cache.get("c"));
+		assertEquals(1, cache.getExpulsiones());
+	}
+
+	@Test
+	void reemplazarNoCuentaComoExpulsion() {
+		CacheLRU<String, Integer> cache = new CacheLRU<>(2);
+		cache.put("a", 1);
+		cache.put("a", 2);
+
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.get("a"));
+		assertEquals(0, cache.getExpulsiones());
+	}
+
+	@Test
+	void expulsaPorPesoSinQuitarLaEntradaRecienPuesta() {
+		CacheLRU<String, byte[]> cache = new CacheLRU<>(100, 10, valor -> valor.length);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		assertEquals(8, cache.getPesoTotal());
+
+		cache.put("c", new byte[4]);
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+		assertEquals(8, cache.getPesoTotal());
+
+		// Una sola entrada mayor que el maximo se queda: es la unica
+		cache.put("d", new byte[20]);
+		assertEquals(1, cache.size());
+		assertEquals(20, cache.getPesoTotal());
+		assertEquals(3, cache.getExpulsiones());
+	}
+
+	@Test
+	void llevaLaCuentaDelPesoAlQuitar() {
+		CacheLRU<String, byte[]> cache = new CacheLRU<>(100, 1000, valor -> valor.length);
+		cache.put("reto:1", new byte[10]);
+		cache.put("reto:2", new byte[20]);
+		cache.put("sesion:1", new byte[30]);
+		cache.put("reto:1", new byte[5]);
+		assertEquals(55, cache.getPesoTotal());
+
+		cache.removeIf(clave -> clave.startsWith("reto:"));
+		assertEquals(30, cache.getPesoTotal());
+		assertEquals(1, cache.size());
+
+		cache.remove("sesion:1");
+		assertEquals(0, cache.getPesoTotal());
+
+		cache.put("x", new byte[7]);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getPesoTotal());
+	}
+
+	@Test
+	void laExpulsionPorNumeroDescuentaElPeso() {
+		CacheLRU<String, byte[]> cache = new CacheLRU<>(2, 1000, valor -> valor.length);
+		cache.put("a", new byte[10]);
+		cache.put("b", new byte[20]);
+		cache.put("c", new byte[30]);
+		assertEquals(50, cache.getPesoTotal());
+	}
+
+	@Test
+	void rechazaTamaniosNoPositivos() {
+		assertThrows(IllegalArgumentException.class, () -> new CacheLRU<String, String>(0));
+		assertThrows(IllegalArgumentException.class, () -> new CacheLRU<String, String>(10, 0, String::length));
+	}
+}
@@ -0,0 +1,76 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitoTest {
+	private static final Duration ABIERTO = Duration.ofMillis(50);
+
+	@Test
+	void seAbreTrasElUmbralDeFallosSeguidos() {
+		Circuito circuito = new Circuito("prueba", 3, Duration.ofMinutes(1));
+		circuito.fallo();
+		circuito.fallo();
+		assertEquals(Circuito.Estado.CERRADO, circuito.getEstado());
+		assertDoesNotThrow(circuito::permitir);
+
+		circuito.fallo();
+		assertEquals(Circuito.Estado.ABIERTO, circuito.getEstado());
+		assertThrows(Circuito.AbiertoException.class, circuito::permitir);
+		assertThrows(Circuito.AbiertoException.class, circuito::permitir);
+		assertEquals(1, circuito.getAperturas());
+		assertEquals(2, circuito.getRechazadas());
+	}
+
+	@Test
+	void unExitoReiniciaLaCuentaDeFallos() {
+		Circuito circuito = new Circuito("prueba", 3, Duration.ofMinutes(1));
+		circuito.fallo();
+		circuito.fallo();
+		circuito.exito();
+		circuito.fallo();
+		circuito.fallo();
+		assertEquals(Circuito.Estado.CERRADO, circuito.getEstado());
+	}
+
+	@Test
+	void semiabiertoDejaPasarUnaSolaPruebaYSeCierraSiVaBien() throws InterruptedException {
+		Circuito circuito = abierto();
+		Thread.sleep(ABIERTO.toMillis() + 20);
+
+		assertDoesNotThrow(circuito::permitir);
+		assertEquals(Circuito.Estado.SEMIABIERTO, circuito.getEstado());
+		// Mientras la prueba esta en curso, el resto se rechaza
+		assertThrows(Circuito.AbiertoException.class, circuito::permitir);
+
+		circuito.exito();
+		assertEquals(Circuito.Estado.CERRADO, circuito.getEstado());
+		assertEquals(1, circuito.getCierres());
+		assertDoesNotThrow(circuito::permitir);
+		assertDoesNotThrow(circuito::permitir);
+	}
+
+	@Test
+	void semiabiertoVuelveAAbrirseSiLaPruebaFalla() throws InterruptedException {
+		Circuito circuito = abierto();
+		Thread.sleep(ABIERTO.toMillis() + 20);
+
+		circuito.permitir();
+		circuito.fallo();
+		assertEquals(Circuito.Estado.ABIERTO, circuito.getEstado());
+		assertEquals(2, circuito.getAperturas());
+		assertThrows(Circuito.AbiertoException.class, circuito::permitir);
+	}
+
+	private static Circuito abierto() {
+		Circuito circuito = new Circuito("prueba", 1, ABIERTO);
+		circuito.fallo();
+		assertEquals(Circuito.Estado.ABIERTO, circuito.getEstado());
+		return circuito;
+	}
+}
@@ -0,0 +1,180 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import es.deusto.sd.auctions.client.data.Reto;
+
+class CoalescingServiceProxyTest {
+	private static final int SEGUIDORES = 4;
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@AfterEach
+	void parar() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Backend whose getTodosRetos waits for the test to release it and then runs
+	 * the answer of that call number (from 1).
+	 */
+	private static class Retenido extends ProxyFalso {
+		final AtomicInteger llamadas = new AtomicInteger();
+		final CountDownLatch empezada = new CountDownLatch(1);
+		final CountDownLatch soltar = new CountDownLatch(1);
+		final IntFunction<List<Reto>> respuesta;
+
+		Retenido(IntFunction<List<Reto>> respuesta) {
+			this.respuesta = respuesta;
+		}
+
+		@Override
+		public List<Reto> getTodosRetos() {
+			int llamada = llamadas.incrementAndGet();
+			empezada.countDown();
+			try {
+				soltar.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("La operación fue interrumpida", e);
+			}
+			return respuesta.apply(llamada);
+		}
+
+		@Override
+		public List<Reto> getRetosXDeporte(String Deporte) {
+			llamadas.incrementAndGet();
+			return List.of();
+		}
+	}
+
+	// Lanza la primera llamada y, cuando ya esta en el backend, las de los seguidores
+	private List<Future<List<Reto>>> lanzar(CoalescingServiceProxy proxy, Retenido backend) throws Exception {
+		List<Future<List<Reto>>> llamadas = new ArrayList<>();
+		llamadas.add(executor.submit(() -> proxy.getTodosRetos()));
+		assertTrue(backend.empezada.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < SEGUIDORES; i++) {
+			llamadas.add(executor.submit(() -> proxy.getTodosRetos()));
+		}
+		esperarAgrupadas(proxy, SEGUIDORES);
+		return llamadas;
+	}
+
+	private static void esperarAgrupadas(CoalescingServiceProxy proxy, int agrupadas) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (proxy.getAgrupadas() < agrupadas) {
+			if (System.nanoTime() - limite > 0) {
+				fail("Solo se agruparon " + proxy.getAgrupadas() + " llamadas");
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	void lasLlamadasSimultaneasRecibenElMismoResultado() throws Exception {
+		List<Reto> retos = List.of(new Reto(1L, "Reto", null, null, null, "running", null, "10"));
+		Retenido backend = new Retenido(llamada -> retos);
+		CoalescingServiceProxy proxy = new CoalescingServiceProxy(backend);
+
+		List<Future<List<Reto>>> llamadas = lanzar(proxy, backend);
+		backend.soltar.countDown();
+
+		for (Future<List<Reto>> llamada : llamadas) {
+			assertSame(retos, llamada.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, backend.llamadas.get());
+		assertEquals(1, proxy.getLlamadas());
+		assertEquals(SEGUIDORES, proxy.getAgrupadas());
+
+		// Terminada la llamada, la siguiente vuelve al backend
+		proxy.getTodosRetos();
+		assertEquals(2, backend.llamadas.get());
+	}
+
+	@Test
+	void elErrorSePropagaATodosLosQueEsperaban() throws Exception {
+		IllegalStateException error = new IllegalStateException("Error al obtener los retos");
+		Retenido backend = new Retenido(llamada -> {
+			throw error;
+		});
+		CoalescingServiceProxy proxy = new CoalescingServiceProxy(backend);
+
+		List<Future<List<Reto>>> llamadas = lanzar(proxy, backend);
+		backend.soltar.countDown();
+
+		for (Future<List<Reto>> llamada : llamadas) {
+			try {
+				llamada.get(5, TimeUnit.SECONDS);
+				fail("Se esperaba el error del backend");
+			} catch (ExecutionException e) {
+				assertSame(error, e.getCause());
+			}
+		}
+		assertEquals(1, backend.llamadas.get());
+	}
+
+	@Test
+	void siQuienLlamaEsInterrumpidoLosDemasVuelvenAPedirlo() throws Exception {
+		List<Reto> retos = List.of();
+		Retenido backend = new Retenido(llamada -> retos);
+		CoalescingServiceProxy proxy = new CoalescingServiceProxy(backend);
+
+		CompletableFuture<Thread> primerHilo = new CompletableFuture<>();
+		Future<List<Reto>> primera = executor.submit(() -> {
+			primerHilo.complete(Thread.currentThread());
+			return proxy.getTodosRetos();
+		});
+		assertTrue(backend.empezada.await(5, TimeUnit.SECONDS));
+		List<Future<List<Reto>>> seguidores = new ArrayList<>();
+		for (int i = 0; i < SEGUIDORES; i++) {
+			seguidores.add(executor.submit(() -> proxy.getTodosRetos()));
+		}
+		esperarAgrupadas(proxy, SEGUIDORES);
+
+		// Se interrumpe la primera (sigue esperando en el backend) y luego se suelta el backend
+		primerHilo.get().interrupt();
+		try {
+			primera.get(5, TimeUnit.SECONDS);
+			fail("La primera llamada debia fallar al ser interrumpida");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getCause() instanceof InterruptedException);
+		}
+		// Uno de los seguidores repite la llamada y los demas esperan ahora a la suya
+		esperarAgrupadas(proxy, SEGUIDORES + SEGUIDORES - 1);
+		backend.soltar.countDown();
+
+		for (Future<List<Reto>> seguidor : seguidores) {
+			assertSame(retos, seguidor.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(2, backend.llamadas.get());
+	}
+
+	@Test
+	void lasClavesDistintasNoSeAgrupan() {
+		Retenido backend = new Retenido(llamada -> List.of());
+		CoalescingServiceProxy proxy = new CoalescingServiceProxy(backend);
+
+		proxy.getRetosXDeporte("running");
+		proxy.getRetosXDeporte("cycling");
+		assertEquals(2, backend.llamadas.get());
+		assertEquals(0, proxy.getAgrupadas());
+	}
+}
@@ -0,0 +1,143 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.DiarioSesiones.Entrada;
+import es.deusto.sd.auctions.client.proxies.DiarioSesiones.Sincronizacion;
+
+class DiarioSesionesTest {
+
+	@TempDir
+	Path directorio;
+
+	private static Sesion sesion(String titulo) {
+		return new Sesion(null, titulo, "running", 10.5f, 1_704_067_200_000L, 1_704_070_800_000L, 1f);
+	}
+
+	@Test
+	void alAbrirSeRecuperanLasEntradasSinCerrar() throws IOException {
+		Path fichero = directorio.resolve("diario.bin");
+		Entrada primera;
+		Entrada tercera;
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.SIEMPRE)) {
+			primera = diario.anadir(1L, sesion("uno"), "token-1", "uno@deusto.es");
+			Entrada segunda = diario.anadir(2L, sesion("dos"), "token-2");
+			tercera = diario.anadir(null, sesion("tres"), null);
+			diario.confirmar(List.of(segunda.secuencia()));
+		}
+
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.SIEMPRE)) {
+			List<Entrada> pendientes = diario.pendientes(10);
+			assertEquals(List.of(primera, tercera), pendientes);
+			assertNull(pendientes.get(1).retoId());
+			assertNull(pendientes.get(1).token());
+			assertEquals("uno@deusto.es", pendientes.get(0).usuario());
+			assertNull(pendientes.get(1).usuario());
+
+			// La secuencia sigue donde se quedo: la clave nunca se repite
+			Entrada cuarta = diario.anadir(1L, sesion("cuatro"), "token-1");
+			assertEquals(4, cuarta.secuencia());
+			assertTrue(cuarta.clave().endsWith("-4"));
+
+			diario.descartar(List.of(primera.secuencia()));
+			assertEquals(2, diario.getPendientes());
+			assertEquals(1, diario.pendientes(1).size());
+		}
+	}
+
+	@Test
+	void seCortaUnRegistroAMedioEscribir() throws IOException {
+		Path fichero = directorio.resolve("diario.bin");
+		Entrada entrada;
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.NUNCA)) {
+			entrada = diario.anadir(7L, sesion("entera"), "token");
+		}
+		long tamanioValido = Files.size(fichero);
+
+		// Una entrada que se quedo a medias al caerse el proceso: tipo, longitud y parte del contenido
+		Files.write(fichero, new byte[] {1, 0, 0, 0, 100, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.NUNCA)) {
+			assertEquals(List.of(entrada), diario.pendientes(10));
+			assertEquals(tamanioValido, Files.size(fichero));
+
+			// Lo que se escribe despues se recupera con normalidad
+			diario.anadir(7L, sesion("despues"), "token");
+		}
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.NUNCA)) {
+			assertEquals(2, diario.getPendientes());
+		}
+	}
+
+	@Test
+	void unRegistroConElCrcMalSeDescartaConTodoLoQueVieneDetras() throws IOException {
+		Path fichero = directorio.resolve("diario.bin");
+		Entrada primera;
+		long finPrimera;
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.SIEMPRE)) {
+			primera = diario.anadir(1L, sesion("buena"), "token");
+			finPrimera = Files.size(fichero);
+			diario.anadir(1L, sesion("dañada"), "token");
+			diario.anadir(1L, sesion("detras"), "token");
+		}
+
+		// Se cambia un byte del contenido de la segunda entrada
+		try (RandomAccessFile acceso = new RandomAccessFile(fichero.toFile(), "rw")) {
+			long posicion = finPrimera + 1 + 4 + 3;
+			acceso.seek(posicion);
+			int valor = acceso.read();
+			acceso.seek(posicion);
+			acceso.write(valor ^ 0xFF);
+		}
+
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.SIEMPRE)) {
+			assertEquals(List.of(primera), diario.pendientes(10));
+			assertEquals(finPrimera, Files.size(fichero));
+		}
+	}
+
+	@Test
+	void unFicheroQueNoEsUnDiarioSeApartaSinBorrarlo() throws IOException {
+		Path fichero = directorio.resolve("diario.bin");
+		byte[] ajeno = "esto no es un diario de sesiones".getBytes();
+		Files.write(fichero, ajeno);
+
+		try (DiarioSesiones diario = new DiarioSesiones(fichero, Sincronizacion.SIEMPRE)) {
+			assertEquals(0, diario.getPendientes());
+		}
+		try (var ficheros = Files.list(directorio)) {
+			Path apartado = ficheros.filter(f -> f.getFileName().toString().endsWith(".antiguo")).findFirst()
+				.orElseThrow();
+			assertEquals(new String(ajeno), Files.readString(apartado));
+		}
+	}
+
+	@Test
+	void lasClavesDeDosDiariosNoCoinciden() throws IOException {
+		try (DiarioSesiones a = new DiarioSesiones(directorio.resolve("a.bin"), Sincronizacion.NUNCA);
+				DiarioSesiones b = new DiarioSesiones(directorio.resolve("b.bin"), Sincronizacion.NUNCA)) {
+			assertNotEquals(a.anadir(1L, sesion("x"), "t").clave(), b.anadir(1L, sesion("x"), "t").clave());
+		}
+	}
+
+	@Test
+	void sincronizacionDesdeTexto() {
+		assertEquals(Sincronizacion.SIEMPRE, Sincronizacion.de(null));
+		assertEquals(Sincronizacion.PERIODICA, Sincronizacion.de(" Periodica "));
+		assertEquals(Sincronizacion.NUNCA, Sincronizacion.de("nunca"));
+	}
+}
@@ -0,0 +1,146 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+class EscrituraDiferidaServiceProxyTest {
+	private static final Credendiales CREDENCIALES = new Credendiales("prueba@deusto.es", "1");
+	private static final Sesion SESION = new Sesion(null, "Nueva", "running", 12.5f, 1_704_153_600_000L,
+		1_704_157_200_000L, 1f);
+
+	@TempDir
+	Path directorio;
+
+	private EscrituraDiferidaServiceProxy proxy;
+
+	@AfterEach
+	void cerrar() {
+		if (proxy != null) {
+			proxy.close();
+		}
+	}
+
+	private EscrituraDiferidaServiceProxy abrir(IAuctionsServiceProxy delegado) throws IOException {
+		proxy = new EscrituraDiferidaServiceProxy(delegado, new EscrituraDiferidaServiceProxy.Configuracion(
+			directorio.resolve("sesiones.diario"), DiarioSesiones.Sincronizacion.NUNCA, Duration.ofMillis(10), 8, 2,
+			Duration.ofMillis(1), Duration.ofMillis(10)));
+		return proxy;
+	}
+
+	private static void esperarHasta(BooleanSupplier condicion, String mensaje) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condicion.getAsBoolean()) {
+			if (System.nanoTime() - limite > 0) {
+				fail(mensaje);
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Backend whose tokens come from login and stop being valid when the test
+	 * says so; it records the token of every session it stores.
+	 */
+	private static class Servidor extends ProxyFalso {
+		final Set<String> validos = ConcurrentHashMap.newKeySet();
+		final List<String> guardadas = new CopyOnWriteArrayList<>();
+		final AtomicInteger rechazadas = new AtomicInteger();
+		final AtomicInteger logins = new AtomicInteger();
+
+		@Override
+		public String login(Credendiales credenciales) {
+			String token = "token-" + logins.incrementAndGet();
+			validos.add(token);
+			return token;
+		}
+
+		@Override
+		public void guardarSesion(Long retoId, Sesion sesion, String token) {
+			if (!validos.contains(token)) {
+				rechazadas.incrementAndGet();
+				throw new TokenNoValidoException("Error al guardar la sesión: token no válido");
+			}
+			guardadas.add(token);
+		}
+	}
+
+	@Test
+	void unaSesionQueNoSePuedeSerializarSeDescartaTrasMaxIntentos() throws Exception {
+		AtomicInteger llamadas = new AtomicInteger();
+		abrir(new ProxyFalso() {
+			@Override
+			public void guardarSesion(Long retoId, Sesion sesion, String token) {
+				llamadas.incrementAndGet();
+				throw new RuntimeException("Error al serializar la sesión",
+					new JsonMappingException(null, "No serializer found"));
+			}
+		});
+
+		proxy.guardarSesion(1L, SESION, "token");
+
+		esperarHasta(() -> proxy.getDescartadas() == 1, "La sesión no se descartó");
+		assertEquals(0, proxy.getPendientes());
+		assertEquals(2, llamadas.get());
+		assertEquals(1, proxy.getReintentos());
+	}
+
+	@Test
+	void conElTokenCaducadoLaSesionEsperaAlSiguienteLogin() throws Exception {
+		Servidor servidor = new Servidor();
+		abrir(servidor);
+		String token = proxy.login(CREDENCIALES);
+		servidor.validos.remove(token);
+
+		proxy.guardarSesion(1L, SESION, token);
+		esperarHasta(() -> servidor.rechazadas.get() == 1, "La sesión no llegó al servidor");
+		// Sigue pendiente sin volver a intentarlo con el mismo token
+		Thread.sleep(50);
+		assertEquals(1, servidor.rechazadas.get());
+		assertEquals(1, proxy.getPendientes());
+		assertEquals(0, proxy.getDescartadas());
+
+		String nuevo = proxy.login(CREDENCIALES);
+		esperarHasta(() -> proxy.getEnviadas() == 1, "La sesión no se envió tras el login");
+		assertEquals(List.of(nuevo), servidor.guardadas);
+		assertEquals(0, proxy.getPendientes());
+	}
+
+	@Test
+	void trasReiniciarLaSesionSeEnviaConElTokenDelNuevoLogin() throws Exception {
+		Servidor servidor = new Servidor();
+		abrir(servidor);
+		String token = proxy.login(CREDENCIALES);
+		servidor.validos.remove(token);
+		proxy.guardarSesion(1L, SESION, token);
+		esperarHasta(() -> servidor.rechazadas.get() == 1, "La sesión no llegó al servidor");
+		proxy.close();
+
+		// El diario recuerda el usuario de la sesion
+		abrir(servidor);
+		assertEquals(1, proxy.getPendientes());
+		String nuevo = proxy.login(CREDENCIALES);
+
+		esperarHasta(() -> proxy.getEnviadas() == 1, "La sesión no se envió tras el login");
+		assertEquals(List.of(nuevo), servidor.guardadas);
+	}
+}
@@ -0,0 +1,88 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramaLatenciaTest {
+
+	@Test
+	void sinValoresTodoEsCero() {
+		HistogramaLatencia histograma = new HistogramaLatencia();
+		assertEquals(0, histograma.getTotal());
+		assertEquals(0, histograma.getPercentilNanos(0.99));
+		assertEquals(0.0, histograma.getMediaNanos());
+	}
+
+	@Test
+	void elLimiteDelBucketCubreElValorConMenosDeUnOctavoDeError() {
+		Random azar = new Random(7);
+		for (int i = 0; i < 100_000; i++) {
+			long valor = azar.nextLong(Long.MAX_VALUE >> 2);
+			long limite = HistogramaLatencia.limiteSuperior(HistogramaLatencia.indice(valor));
+			assertTrue(limite >= valor, "limite " + limite + " < " + valor);
+			assertTrue(limite - valor <= valor / 8, "limite " + limite + " lejos de " + valor);
+		}
+		for (long valor = 0; valor < 1024; valor++) {
+			long limite = HistogramaLatencia.limiteSuperior(HistogramaLatencia.indice(valor));
+			assertTrue(limite >= valor && limite - valor <= valor / 8);
+		}
+	}
+
+	@Test
+	void percentilesDentroDelErrorRelativo() {
+		HistogramaLatencia histograma = new HistogramaLatencia();
+		// 1 us .. 1 ms, uno de cada
+		for (int i = 1; i <= 1000; i++) {
+			histograma.registrar(i * 1000L);
+		}
+
+		assertEquals(1000, histograma.getTotal());
+		assertEquals(1_000_000, histograma.getMaximoNanos());
+		assertEquals(500_500.0, histograma.getMediaNanos(), 0.001);
+		comprobarPercentil(histograma, 0.50, 500_000);
+		comprobarPercentil(histograma, 0.95, 950_000);
+		comprobarPercentil(histograma, 0.99, 990_000);
+		// Nunca por encima del maximo registrado
+		assertEquals(1_000_000, histograma.getPercentilNanos(1.0));
+	}
+
+	private static void comprobarPercentil(HistogramaLatencia histograma, double fraccion, long exacto) {
+		long aproximado = histograma.getPercentilNanos(fraccion);
+		assertTrue(aproximado >= exacto && aproximado <= exacto + exacto / 8,
+			"p" + (int) (fraccion * 100) + " = " + aproximado + ", exacto " + exacto);
+	}
+
+	@Test
+	void registrarDesdeVariosHilosNoPierdeValores() throws InterruptedException {
+		HistogramaLatencia histograma = new HistogramaLatencia();
+		List<Thread> hilos = new ArrayList<>();
+		for (int h = 0; h < 8; h++) {
+			hilos.add(Thread.ofPlatform().start(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					histograma.registrar(i);
+				}
+			}));
+		}
+		for (Thread hilo : hilos) {
+			hilo.join();
+		}
+
+		assertEquals(80_000, histograma.getTotal());
+		assertEquals(9_999, histograma.getMaximoNanos());
+		assertEquals(4_999.5, histograma.getMediaNanos(), 0.001);
+	}
+
+	@Test
+	void losNegativosCuentanComoCero() {
+		HistogramaLatencia histograma = new HistogramaLatencia();
+		histograma.registrar(-5);
+		assertEquals(1, histograma.getTotal());
+		assertEquals(0, histograma.getPercentilNanos(0.5));
+	}
+}
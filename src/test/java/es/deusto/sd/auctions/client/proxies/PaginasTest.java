@@ -0,0 +1,75 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+
+class PaginasTest {
+	private static final List<Integer> LISTA = List.of(0, 1, 2, 3, 4, 5, 6);
+
+	@Test
+	void consultaPorNumeroOPorCursor() {
+		assertEquals("page=2&size=10", Paginas.consulta(Paginacion.pagina(2, 10)));
+		assertEquals("cursor=s%3A20+x&size=10", Paginas.consulta(Paginacion.cursor("s:20 x", 10)));
+	}
+
+	@Test
+	void urlAnadeLaConsultaConElSeparadorCorrecto() {
+		assertEquals("http://h/strava/retos?page=0&size=5",
+			Paginas.url("http://h/strava/retos", Paginacion.primera(5)));
+		assertEquals("http://h/strava/sesion/usuario?token=abc&page=1&size=5",
+			Paginas.url("http://h/strava/sesion/usuario?token=abc", Paginacion.pagina(1, 5)));
+	}
+
+	@Test
+	void conCabeceraSeDevuelveLoRecibidoYElCursor() {
+		Pagina<Integer> pagina = Paginas.construir(List.of(0, 1), "s:2", Paginacion.primera(2));
+		assertEquals(List.of(0, 1), pagina.elementos());
+		assertEquals("s:2", pagina.siguienteCursor());
+		assertTrue(pagina.hayMas());
+
+		// Cabecera vacia: ultima pagina
+		Pagina<Integer> ultima = Paginas.construir(List.of(6), "", Paginacion.cursor("s:6", 2));
+		assertEquals(List.of(6), ultima.elementos());
+		assertFalse(ultima.hayMas());
+	}
+
+	@Test
+	void sinCabeceraLaListaEnteraEsLaUltimaPaginaDesdeLaPosicionPedida() {
+		Pagina<Integer> primera = Paginas.construir(LISTA, null, Paginacion.primera(3));
+		assertEquals(LISTA, primera.elementos());
+		assertNull(primera.siguienteCursor());
+
+		Pagina<Integer> segunda = Paginas.construir(LISTA, null, Paginacion.pagina(1, 3));
+		assertEquals(List.of(3, 4, 5, 6), segunda.elementos());
+		assertFalse(segunda.hayMas());
+	}
+
+	@Test
+	void desdeListaFueraDeRangoOSinListaDaUnaPaginaVacia() {
+		assertEquals(List.of(), Paginas.desdeLista(LISTA, Paginacion.pagina(5, 3)).elementos());
+		Pagina<Integer> nula = Paginas.desdeLista(null, Paginacion.primera(3));
+		assertEquals(List.of(), nula.elementos());
+		assertNull(nula.siguienteCursor());
+	}
+
+	@Test
+	void desdeListaConCursorDevuelveTodo() {
+		// El cursor solo lo entiende el servidor: no se puede saber por donde iba
+		assertEquals(LISTA, Paginas.desdeLista(LISTA, Paginacion.cursor("s:3", 3)).elementos());
+	}
+
+	@Test
+	void recorrerTodasLasPaginasDeUnaListaSinPaginarNoRepiteElementos() {
+		Paginador<Integer> paginador = new Paginador<>(paginacion -> Paginas.desdeLista(LISTA, paginacion), 3);
+		assertEquals(LISTA, paginador.stream().toList());
+	}
+}
@@ -0,0 +1,64 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import java.util.List;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+
+/**
+ * Backend for the decorator tests: every operation fails unless the test
+ * overrides it.
+ */
+class ProxyFalso implements IAuctionsServiceProxy {
+
+	@Override
+	public String login(Credendiales credenciales) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void logout(String token) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Reto> getMisRetos(String token) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Reto> getTodosRetos() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Reto> getRetosXDeporte(String Deporte) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Reto getDetallesDeReto(Long IdReto) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Sesion> getSesionesPorReto(Long Id) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Sesion> getTodasSesiones(String token) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Sesion getDetalleSesion(Long idSesion) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void guardarSesion(Long retoId, Sesion sesion, String token) {
+		throw new UnsupportedOperationException();
+	}
+}
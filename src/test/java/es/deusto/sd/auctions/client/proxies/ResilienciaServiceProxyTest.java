@@ -0,0 +1,91 @@
+package es.deusto.sd.auctions.client.proxies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import es.deusto.sd.auctions.client.data.Reto;
+
+class ResilienciaServiceProxyTest {
+	private static final ResilienciaServiceProxy.Configuracion CONFIGURACION = new ResilienciaServiceProxy.Configuracion(
+		3, Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofSeconds(5), 10, Duration.ofSeconds(10), false,
+		Duration.ofMillis(20), 50, 0.1);
+
+	@Test
+	void losErroresDeConexionYLos503SonTransitorios() {
+		assertTrue(ResilienciaServiceProxy.esTransitorio(new RuntimeException(new ConnectException("rechazada"))));
+		assertTrue(ResilienciaServiceProxy.esTransitorio(new RuntimeException(new HttpTimeoutException("lenta"))));
+		assertTrue(ResilienciaServiceProxy.esTransitorio(new RuntimeException(new TimeoutException())));
+		assertTrue(ResilienciaServiceProxy.esTransitorio(new RespuestaHttpException("No disponible", 503, null)));
+		assertFalse(ResilienciaServiceProxy.esTransitorio(new RuntimeException("Token no válido")));
+	}
+
+	@Test
+	void unaRespuestaQueNoSePuedeInterpretarNoEsTransitoria() {
+		JsonParseException sintaxis = new JsonParseException(null, "Unexpected character");
+		assertFalse(ResilienciaServiceProxy.esTransitorio(new RuntimeException("Error al obtener los retos", sintaxis)));
+		assertFalse(ResilienciaServiceProxy.esTransitorio(new UncheckedIOException(
+			MismatchedInputException.from(null, Reto.class, "Cannot deserialize"))));
+
+		// Salvo que por debajo haya fallado la conexion
+		JsonParseException cortada = new JsonParseException(null, "Unexpected end-of-input", null,
+			new IOException("Connection reset"));
+		assertTrue(ResilienciaServiceProxy.esTransitorio(new RuntimeException(cortada)));
+	}
+
+	@Test
+	void unaRespuestaQueNoSePuedeInterpretarNoSeReintentaNiAbreElCircuito() {
+		AtomicInteger llamadas = new AtomicInteger();
+		RuntimeException error = new RuntimeException("Error al obtener los retos",
+			new JsonParseException(null, "Unexpected character"));
+		ResilienciaServiceProxy proxy = new ResilienciaServiceProxy(new ProxyFalso() {
+			@Override
+			public List<Reto> getTodosRetos() {
+				llamadas.incrementAndGet();
+				throw error;
+			}
+		}, CONFIGURACION);
+
+		for (int i = 0; i < 15; i++) {
+			assertSame(error, assertThrows(RuntimeException.class, proxy::getTodosRetos));
+		}
+		assertEquals(15, llamadas.get());
+		assertEquals(0, proxy.operacion("getTodosRetos").getReintentos());
+		assertEquals(Circuito.Estado.CERRADO, proxy.operacion("getTodosRetos").getCircuito().getEstado());
+	}
+
+	@Test
+	void unErrorDeConexionSeReintenta() {
+		AtomicInteger llamadas = new AtomicInteger();
+		List<Reto> retos = List.of();
+		ResilienciaServiceProxy proxy = new ResilienciaServiceProxy(new ProxyFalso() {
+			@Override
+			public List<Reto> getTodosRetos() {
+				if (llamadas.incrementAndGet() < 3) {
+					throw new RuntimeException(new ConnectException("rechazada"));
+				}
+				return retos;
+			}
+		}, CONFIGURACION);
+
+		assertSame(retos, proxy.getTodosRetos());
+		assertEquals(3, llamadas.get());
+		assertEquals(2, proxy.operacion("getTodosRetos").getReintentos());
+	}
+}
@@ -0,0 +1,180 @@
+package es.deusto.sd.auctions.client.stub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import es.deusto.sd.auctions.client.data.Credendiales;
+import es.deusto.sd.auctions.client.data.Pagina;
+import es.deusto.sd.auctions.client.data.Paginacion;
+import es.deusto.sd.auctions.client.data.Reto;
+import es.deusto.sd.auctions.client.data.Sesion;
+import es.deusto.sd.auctions.client.proxies.AsyncHttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.ConfiguracionHttp;
+import es.deusto.sd.auctions.client.proxies.FabricaClienteHttp;
+import es.deusto.sd.auctions.client.proxies.HttpServiceProxy;
+import es.deusto.sd.auctions.client.proxies.IAuctionsServiceProxy;
+import es.deusto.sd.auctions.client.proxies.MetricasProxy;
+import es.deusto.sd.auctions.client.proxies.Paginador;
+import es.deusto.sd.auctions.client.proxies.ResilienciaServiceProxy;
+import es.deusto.sd.auctions.client.proxies.RespuestaHttpException;
+
+/**
+ * The HTTP proxies against an in-process ServidorStub on a free port.
+ */
+class ServidorStubIntegracionTest {
+	private static final Credendiales CREDENCIALES = new Credendiales("prueba@deusto.es", "1");
+
+	private ServidorStub servidor;
+	private ExecutorService executorHttp;
+
+	@AfterEach
+	void parar() {
+		if (servidor != null) {
+			servidor.close();
+		}
+		if (executorHttp != null) {
+			executorHttp.shutdown();
+		}
+	}
+
+	// Puerto 0: el sistema elige uno libre
+	private IAuctionsServiceProxy arrancar(double tasaErrores) throws Exception {
+		servidor = new ServidorStub(new ServidorStub.Configuracion(0, 42, 12, 40, 5, Duration.ZERO, Duration.ZERO,
+			tasaErrores, 0, true));
+		ConfiguracionHttp configuracion = new ConfiguracionHttp(servidor.getBaseUrl(), HttpClient.Version.HTTP_1_1,
+			Duration.ofSeconds(2), Duration.ofSeconds(10), 2, false, 1024, ConfiguracionHttp.porDefecto().formato());
+		executorHttp = FabricaClienteHttp.crearExecutor(configuracion);
+		return new HttpServiceProxy(new AsyncHttpServiceProxy(FabricaClienteHttp.crear(configuracion, executorHttp),
+			new MetricasProxy(), configuracion));
+	}
+
+	@Test
+	void loginSesionesYLogout() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		DatosStub datos = servidor.getDatos();
+		int usuario = datos.usuario(CREDENCIALES.email());
+
+		String token = proxy.login(CREDENCIALES);
+		assertNotNull(token);
+		assertEquals(datos.sesionesDeUsuario(usuario, 0, Long.MAX_VALUE).toList(), proxy.getTodasSesiones(token));
+		assertEquals(datos.retosAceptados(usuario), proxy.getMisRetos(token));
+
+		proxy.logout(token);
+		assertThrows(RuntimeException.class, () -> proxy.getTodasSesiones(token));
+		assertThrows(RuntimeException.class, () -> proxy.login(new Credendiales(CREDENCIALES.email(), "")));
+	}
+
+	@Test
+	void unTokenFijoSigueValiendoTrasElLogout() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		servidor.registrarToken("fijo", CREDENCIALES.email());
+		List<Reto> retos = proxy.getMisRetos("fijo");
+
+		proxy.logout("fijo");
+		assertEquals(retos, proxy.getMisRetos("fijo"));
+	}
+
+	@Test
+	void recorrerLasPaginasDaLaListaCompleta() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		DatosStub datos = servidor.getDatos();
+		List<Sesion> esperadas = datos.sesionesDeReto(3, 0, Long.MAX_VALUE).toList();
+
+		// 40 sesiones en paginas de 7: la ultima lleva 5 y ya no tiene cursor
+		Pagina<Sesion> primera = proxy.getSesionesPorReto(3L, Paginacion.primera(7));
+		assertEquals(esperadas.subList(0, 7), primera.elementos());
+		assertTrue(primera.hayMas());
+		Pagina<Sesion> ultima = proxy.getSesionesPorReto(3L, Paginacion.pagina(5, 7));
+		assertEquals(esperadas.subList(35, 40), ultima.elementos());
+		assertFalse(ultima.hayMas());
+
+		assertEquals(esperadas, new Paginador<>(p -> proxy.getSesionesPorReto(3L, p), 7).stream().toList());
+		assertEquals(datos.retos(), new Paginador<>(proxy::getTodosRetos, 5).stream().toList());
+	}
+
+	@Test
+	void laListaRevalidadaEsLaMisma() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		List<Sesion> primera = proxy.getSesionesPorReto(2L);
+		List<Sesion> segunda = proxy.getSesionesPorReto(2L);
+
+		assertEquals(40, primera.size());
+		assertEquals(primera, segunda);
+		assertEquals(servidor.getDatos().retos(), proxy.getTodosRetos());
+	}
+
+	@Test
+	void detallesSueltosYEnLote() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		DatosStub datos = servidor.getDatos();
+
+		assertEquals(datos.reto(4), proxy.getDetallesDeReto(4L));
+		assertEquals(datos.sesion(123), proxy.getDetalleSesion(123L));
+		assertThrows(RuntimeException.class, () -> proxy.getDetalleSesion(1_000_000L));
+
+		Map<Long, Sesion> sesiones = proxy.getDetallesSesiones(List.of(1L, 2L, 479L));
+		assertEquals(Map.of(1L, datos.sesion(1), 2L, datos.sesion(2), 479L, datos.sesion(479)), sesiones);
+		Map<Long, Reto> retos = proxy.getDetallesRetos(List.of(0L, 11L));
+		assertEquals(Map.of(0L, datos.reto(0), 11L, datos.reto(11)), retos);
+	}
+
+	@Test
+	void guardarConLaMismaClaveSoloGuardaUnaVez() throws Exception {
+		IAuctionsServiceProxy proxy = arrancar(0);
+		String token = proxy.login(CREDENCIALES);
+		Sesion sesion = new Sesion(null, "Nueva", "running", 12.5f, 1_704_153_600_000L, 1_704_157_200_000L, 1f);
+
+		proxy.guardarSesion(1L, sesion, token, "clave-1");
+		proxy.guardarSesion(1L, sesion, token, "clave-1");
+		proxy.guardarSesion(1L, sesion, token, "clave-2");
+
+		assertEquals(2, servidor.getDatos().getGuardadas());
+		List<Sesion> delReto = proxy.getSesionesPorReto(1L);
+		assertEquals(42, delReto.size());
+		assertEquals("Nueva", delReto.get(41).titulo());
+	}
+
+	@Test
+	void un503SeReintentaRespetandoRetryAfter() throws Exception {
+		IAuctionsServiceProxy proxy = new ResilienciaServiceProxy(arrancar(1), new ResilienciaServiceProxy.Configuracion(
+			1, Duration.ofMillis(1), Duration.ofSeconds(2), Duration.ofSeconds(5), 10, Duration.ofSeconds(10), false,
+			Duration.ofMillis(20), 50, 0.1));
+
+		long inicio = System.nanoTime();
+		RuntimeException error = assertThrows(RuntimeException.class, proxy::getTodosRetos);
+		long transcurrido = System.nanoTime() - inicio;
+
+		RespuestaHttpException respuesta = RespuestaHttpException.buscar(error);
+		assertNotNull(respuesta);
+		assertEquals(503, respuesta.getEstado());
+		assertEquals(Duration.ofSeconds(1), respuesta.getReintentarTras());
+		// Un reintento, tras el segundo que pide el servidor
+		assertEquals(2, servidor.getErroresInyectados());
+		assertTrue(transcurrido >= Duration.ofSeconds(1).toNanos());
+	}
+
+	@Test
+	void unRetryAfterMayorQueLaEsperaMaximaNoSeReintenta() throws Exception {
+		ResilienciaServiceProxy proxy = new ResilienciaServiceProxy(arrancar(1), new ResilienciaServiceProxy.Configuracion(
+			3, Duration.ofMillis(1), Duration.ofMillis(200), Duration.ofSeconds(5), 10, Duration.ofSeconds(10), false,
+			Duration.ofMillis(20), 50, 0.1));
+
+		RuntimeException error = assertThrows(RuntimeException.class, proxy::getTodosRetos);
+
+		assertEquals(503, RespuestaHttpException.buscar(error).getEstado());
+		assertEquals(1, servidor.getErroresInyectados());
+		assertEquals(0, proxy.operacion("getTodosRetos").getReintentos());
+	}
+}